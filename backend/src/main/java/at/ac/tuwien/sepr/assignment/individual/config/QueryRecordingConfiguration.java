@@ -0,0 +1,43 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import at.ac.tuwien.sepr.assignment.individual.persistence.QueryRecorder;
+import at.ac.tuwien.sepr.assignment.individual.persistence.impl.QueryRecordingDataSource;
+
+/**
+ * Configuration that wraps the data source, so that every statement sent to the persistent data store
+ * is reported to the {@link QueryRecorder}.
+ * Only enabled if {@code app.query-recording.enabled} is set to {@code true}, since wrapping every statement
+ * costs time on each execution, and slow queries are run a second time to capture their plans.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.query-recording.enabled", havingValue = "true")
+public class QueryRecordingConfiguration {
+
+  /**
+   * Wraps every data source in a {@link QueryRecordingDataSource}.
+   * The recorder is only looked up once a data source is created, since post-processors are created before regular beans.
+   *
+   * @param recorder the provider of the recorder to report statements to
+   * @return the post-processor wrapping the data sources
+   */
+  @Bean
+  public static BeanPostProcessor queryRecordingDataSourcePostProcessor(ObjectProvider<QueryRecorder> recorder) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof QueryRecordingDataSource)) {
+          return new QueryRecordingDataSource(dataSource, recorder.getObject());
+        }
+        return bean;
+      }
+    };
+  }
+}
@@ -5,6 +5,8 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import at.ac.tuwien.sepr.assignment.individual.rest.HorseEndpoint;
+
 /**
  * CORS configuration that effectively disables restrictions for cross-origin requests.
  * This configuration is active in all profiles except "prod" and is useful during development.
@@ -13,14 +15,15 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Profile("!prod")
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
-
   /**
-   * Configures CORS to allow all origins and HTTP methods.
+   * Configures CORS to allow all origins and HTTP methods, and to let clients read the paging header.
    *
    * @param registry the {@link CorsRegistry} to configure
    */
   @Override
   public void addCorsMappings(CorsRegistry registry) {
-    registry.addMapping("/**").allowedMethods("GET", "POST", "OPTIONS", "HEAD", "DELETE", "PUT", "PATCH");
+    registry.addMapping("/**")
+        .allowedMethods("GET", "POST", "OPTIONS", "HEAD", "DELETE", "PUT", "PATCH")
+        .exposedHeaders(HorseEndpoint.NEXT_CURSOR_HEADER);
   }
 }
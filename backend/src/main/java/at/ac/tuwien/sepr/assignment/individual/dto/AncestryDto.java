@@ -0,0 +1,11 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the check whether one horse is an ancestor of another one.
+ */
+public record AncestryDto(
+    long ancestorId,
+    long horseId,
+    boolean ancestor
+) {
+}
@@ -0,0 +1,11 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the result of rebuilding the stored ancestry of all horses.
+ * Every horse is counted as a pair with itself.
+ */
+public record AncestryRebuildDto(
+    int pairs,
+    long durationMillis
+) {
+}
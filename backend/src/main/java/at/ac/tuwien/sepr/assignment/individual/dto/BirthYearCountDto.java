@@ -0,0 +1,12 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the number of horses born in a range of years
+ * among the matches of a search. Both years are inclusive.
+ */
+public record BirthYearCountDto(
+    int fromYear,
+    int toYear,
+    long count
+) {
+}
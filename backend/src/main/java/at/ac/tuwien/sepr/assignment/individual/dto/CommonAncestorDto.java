@@ -0,0 +1,17 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * Represents a Data Transfer Object (DTO) for a common ancestor of two horses.
+ * Each path starts with the respective horse and ends with the ancestor,
+ * so if one horse is an ancestor of the other, its path consists of itself only.
+ */
+public record CommonAncestorDto(
+    HorseListDto ancestor,
+    int generationsFromHorse,
+    int generationsFromOtherHorse,
+    List<Long> pathFromHorse,
+    List<Long> pathFromOtherHorse
+) {
+}
@@ -0,0 +1,10 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the number of distinct descendants of a horse, over all generations.
+ */
+public record DescendantCountDto(
+    long horseId,
+    long count
+) {
+}
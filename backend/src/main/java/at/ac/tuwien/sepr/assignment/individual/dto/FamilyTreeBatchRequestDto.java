@@ -0,0 +1,18 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * Represents a Data Transfer Object (DTO) for requesting the family trees of many horses at once.
+ * If {@code generations} is not given, five generations are included.
+ */
+public record FamilyTreeBatchRequestDto(
+    List<Long> ids,
+    Integer generations
+) {
+  private static final int DEFAULT_GENERATIONS = 5;
+
+  public int generationsOrDefault() {
+    return generations == null ? DEFAULT_GENERATIONS : generations;
+  }
+}
@@ -0,0 +1,10 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the ID generated for a horse created in a batch.
+ */
+public record HorseBatchCreatedDto(
+    String tempId,
+    long id
+) {
+}
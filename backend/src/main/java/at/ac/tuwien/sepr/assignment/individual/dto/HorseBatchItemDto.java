@@ -0,0 +1,19 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for one horse to create in a batch.
+ * Besides the horse itself, it may carry a temporary ID chosen by the client, by which later horses
+ * of the same batch can refer to it as their parent, before it has an ID of its own.
+ *
+ * @param tempId the temporary ID of the horse within the batch, may be null if no other horse refers to it
+ * @param horse the horse to create, whose parent IDs refer to horses that exist already
+ * @param parentFemaleTempId the temporary ID of the female parent, if it is created earlier in the same batch
+ * @param parentMaleTempId the temporary ID of the male parent, if it is created earlier in the same batch
+ */
+public record HorseBatchItemDto(
+    String tempId,
+    HorseCreateDto horse,
+    String parentFemaleTempId,
+    String parentMaleTempId
+) {
+}
@@ -0,0 +1,22 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.time.LocalDate;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * Represents a Data Transfer Object (DTO) for a descendant of a horse.
+ * The generation tells how far the descendant is removed from the horse:
+ * {@code 1} for its children, {@code 2} for its grandchildren, and so on.
+ */
+public record HorseDescendantDto(
+    int generation,
+    Long id,
+    String name,
+    LocalDate dateOfBirth,
+    Sex sex,
+    OwnerDto owner,
+    Long parentFemaleId,
+    Long parentMaleId
+) {
+}
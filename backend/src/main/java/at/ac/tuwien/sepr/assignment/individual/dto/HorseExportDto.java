@@ -0,0 +1,21 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.time.LocalDate;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * Represents a Data Transfer Object (DTO) for exporting a horse, e.g. to be analyzed elsewhere.
+ * Unlike the other horse DTOs, it refers to the owner only by its ID, and leaves out the image.
+ */
+public record HorseExportDto(
+    Long id,
+    String name,
+    String description,
+    LocalDate dateOfBirth,
+    Sex sex,
+    Long ownerId,
+    Long parentFemaleId,
+    Long parentMaleId
+) {
+}
@@ -0,0 +1,21 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the counts of the horses matching a search,
+ * broken down by sex, by range of birth years, and by owner.
+ * Only the owners with the most horses are included, so their counts need not add up to the total.
+ *
+ * @param total the number of matching horses
+ * @param sexes the counts per sex, for every sex that occurs
+ * @param birthYears the counts per range of birth years that occurs, ordered by year
+ * @param owners the counts of the owners with the most horses, in descending order of the count
+ */
+public record HorseFacetsDto(
+    long total,
+    List<SexCountDto> sexes,
+    List<BirthYearCountDto> birthYears,
+    List<OwnerCountDto> owners
+) {
+}
@@ -0,0 +1,21 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.time.LocalDate;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * Represents a Data Transfer Object (DTO) for a node in the family tree of a horse.
+ * Each node links to the nodes of its parents, as far as they are known
+ * and within the requested number of generations.
+ */
+public record HorseFamilyTreeDto(
+    Long id,
+    String name,
+    LocalDate dateOfBirth,
+    Sex sex,
+    OwnerDto owner,
+    HorseFamilyTreeDto parentFemale,
+    HorseFamilyTreeDto parentMale
+) {
+}
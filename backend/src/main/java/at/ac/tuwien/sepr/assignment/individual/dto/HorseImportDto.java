@@ -0,0 +1,26 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the outcome of an import of horses.
+ * Horses that fail validation are skipped and reported, the others are imported.
+ *
+ * @param completed whether the whole input was processed, rather than the import being aborted
+ * @param rows the number of horses read from the input
+ * @param imported the number of horses created
+ * @param failed the number of horses skipped because of errors
+ * @param durationMillis the time the import took
+ * @param rowsPerSecond the number of horses created per second
+ * @param errors the errors, each starting with the line of the input it refers to, up to a maximum number
+ */
+public record HorseImportDto(
+    boolean completed,
+    long rows,
+    long imported,
+    long failed,
+    long durationMillis,
+    double rowsPerSecond,
+    List<String> errors
+) {
+}
@@ -0,0 +1,36 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.time.LocalDate;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * Represents a Data Transfer Object (DTO) for one horse in an import, i.e. one line of NDJSON or one record of CSV,
+ * whose columns are named like the components of this record.
+ * Like in a {@link HorseBatchItemDto batch}, a horse may refer to a horse imported earlier as its parent,
+ * by that horse's temporary ID.
+ */
+public record HorseImportRowDto(
+    String tempId,
+    String name,
+    String description,
+    LocalDate dateOfBirth,
+    Sex sex,
+    String image,
+    Long ownerId,
+    Long parentFemaleId,
+    Long parentMaleId,
+    String parentFemaleTempId,
+    String parentMaleTempId
+) {
+  /**
+   * Convert the row to an item of a batch of horses to create.
+   *
+   * @return the batch item
+   */
+  public HorseBatchItemDto toBatchItem() {
+    return new HorseBatchItemDto(tempId,
+        new HorseCreateDto(name, description, dateOfBirth, sex, image, ownerId, parentFemaleId, parentMaleId),
+        parentFemaleTempId, parentMaleTempId);
+  }
+}
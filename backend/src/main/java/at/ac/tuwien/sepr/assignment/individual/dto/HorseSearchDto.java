@@ -1,14 +1,20 @@
 package at.ac.tuwien.sepr.assignment.individual.dto;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 import org.springframework.format.annotation.DateTimeFormat;
 
+import at.ac.tuwien.sepr.assignment.individual.type.HorseSort;
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
 
 /**
  * DTO to bundle the query parameters used in searching horses.
  * Each field can be null, in which case this field is not filtered by.
+ * Name and description are matched case-insensitively, by prefix unless {@code substring} is set.
+ * The owner is matched by any part of their full name, or only by a prefix of their full name or last name
+ * if {@code ownerPrefix} is set. The parents are matched by ID.
+ * Results are ordered by {@code sort}, and paged by {@code limit} and {@code cursor}.
  */
 public record HorseSearchDto(
     String name,
@@ -19,6 +25,66 @@ public record HorseSearchDto(
     String ownerName,
     Integer limit,
     Long parentFemaleId,
-    Long parentMaleId
+    Long parentMaleId,
+    Boolean substring,
+    Boolean ownerPrefix,
+    HorseSort sort,
+    String cursor
 ) {
+  /**
+   * Whether name and description have to contain the given text anywhere,
+   * rather than start with it (which is the default, and can be answered with an index).
+   *
+   * @return {@code true} if substring matching was requested
+   */
+  public boolean substringMatch() {
+    return Boolean.TRUE.equals(substring);
+  }
+
+  /**
+   * Whether the owner has to match by a prefix of their full name or last name, which can be answered with an index,
+   * rather than by any part of their full name (which is the default).
+   *
+   * @return {@code true} if prefix matching of the owner was requested
+   */
+  public boolean ownerPrefixMatch() {
+    return Boolean.TRUE.equals(ownerPrefix);
+  }
+
+  /**
+   * The order in which to list the matching horses.
+   *
+   * @return the requested order, by ID if none was requested
+   */
+  public HorseSort sortOrDefault() {
+    return sort == null ? HorseSort.ID : sort;
+  }
+
+  /**
+   * Copy these criteria with a different limit.
+   *
+   * @param newLimit the limit of the copy
+   * @return the copy
+   */
+  public HorseSearchDto withLimit(Integer newLimit) {
+    return new HorseSearchDto(name, description, bornBefore, sex, ownerName, newLimit,
+        parentFemaleId, parentMaleId, substring, ownerPrefix, sort, cursor);
+  }
+
+  /**
+   * Bring these criteria into a canonical form, in which criteria that match the same horses in the same order
+   * are equal, as far as possible: texts are trimmed and lower-cased, blank texts are dropped,
+   * and default values are replaced by {@code null}.
+   *
+   * @return the normalized criteria
+   */
+  public HorseSearchDto normalized() {
+    return new HorseSearchDto(normalize(name), normalize(description), bornBefore, sex, normalize(ownerName), limit,
+        parentFemaleId, parentMaleId, substringMatch() ? Boolean.TRUE : null, ownerPrefixMatch() ? Boolean.TRUE : null,
+        sortOrDefault() == HorseSort.ID ? null : sort, cursor);
+  }
+
+  private static String normalize(String text) {
+    return text == null || text.isBlank() ? null : text.strip().toLowerCase(Locale.ROOT);
+  }
 }
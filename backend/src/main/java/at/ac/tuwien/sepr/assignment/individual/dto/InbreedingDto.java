@@ -0,0 +1,12 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the inbreeding coefficient of a horse.
+ * Ancestors more than {@code generations} generations back are treated as unrelated founders.
+ */
+public record InbreedingDto(
+    long horseId,
+    int generations,
+    double coefficient
+) {
+}
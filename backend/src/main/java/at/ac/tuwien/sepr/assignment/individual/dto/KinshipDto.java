@@ -0,0 +1,14 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the kinship coefficient of two horses.
+ * This is also the expected inbreeding coefficient of a foal of the two.
+ * Ancestors more than {@code generations} generations back are treated as unrelated founders.
+ */
+public record KinshipDto(
+    long horseId,
+    long otherHorseId,
+    int generations,
+    double coefficient
+) {
+}
@@ -0,0 +1,11 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for a stallion suggested as mate for a mare.
+ * The expected inbreeding coefficient is the one of a foal of the two, i.e. their kinship coefficient.
+ */
+public record MateSuggestionDto(
+    HorseListDto stallion,
+    double expectedInbreeding
+) {
+}
@@ -0,0 +1,11 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the number of horses of one owner among the matches of a search.
+ * The owner is {@code null} for the horses without owner.
+ */
+public record OwnerCountDto(
+    OwnerDto owner,
+    long count
+) {
+}
@@ -1,14 +1,50 @@
 package at.ac.tuwien.sepr.assignment.individual.dto;
 
+import at.ac.tuwien.sepr.assignment.individual.type.OwnerSort;
+
 /**
  * DTO to encapsulate parameters for Owner search.
- * An owner, whose name has {@code name} as a substring is considered matched.
+ * An owner, whose full name contains {@code name} (ignoring case) is considered matched.
+ * If {@code prefix} is set, the full name or the last name has to start with it instead, which can be answered with an index.
  *
- * @param name substring of the owner's name
+ * @param name part of the owner's full name, or prefix of their full name or last name
+ * @param prefix whether {@code name} only matches at the start of the full name or last name
  * @param maxAmount the maximum number of owners to return, even if there are more matches
+ * @param sort the order in which to list the owners, by ID if {@code null}
+ * @param cursor the cursor of the page to get, as returned with the previous page, or {@code null} for the first page
  */
 public record OwnerSearchDto(
     String name,
-    Integer maxAmount // needs to be present always
+    Boolean prefix,
+    Integer maxAmount, // needs to be present always
+    OwnerSort sort,
+    String cursor
 ) {
+  /**
+   * Whether the name has to match at the start of the full name or last name.
+   *
+   * @return {@code true} if prefix matching was requested
+   */
+  public boolean prefixMatch() {
+    return Boolean.TRUE.equals(prefix);
+  }
+
+  /**
+   * The order in which to list the matching owners.
+   *
+   * @return the requested order, by ID if none was requested
+   */
+  public OwnerSort sortOrDefault() {
+    return sort == null ? OwnerSort.ID : sort;
+  }
+
+  /**
+   * Copy these criteria with a different maximum amount.
+   *
+   * @param newMaxAmount the maximum amount of the copy
+   * @return the copy
+   */
+  public OwnerSearchDto withMaxAmount(Integer newMaxAmount) {
+    return new OwnerSearchDto(name, prefix, newMaxAmount, sort, cursor);
+  }
 }
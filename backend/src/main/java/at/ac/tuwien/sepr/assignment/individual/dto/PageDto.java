@@ -0,0 +1,17 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * One page of a listing that is paged by cursors.
+ *
+ * @param items the items on this page
+ * @param nextCursor the opaque cursor to pass in order to get the next page,
+ *     or {@code null} if this is the last page
+ * @param <T> the type of the items
+ */
+public record PageDto<T>(
+    List<T> items,
+    String nextCursor
+) {
+}
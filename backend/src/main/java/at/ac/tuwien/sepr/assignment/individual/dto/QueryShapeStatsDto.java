@@ -0,0 +1,14 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the aggregated executions of all statements of the same shape,
+ * i.e. the same SQL apart from literals, parameters and the length of {@code IN} lists.
+ */
+public record QueryShapeStatsDto(
+    String shape,
+    long executions,
+    long rows,
+    double totalMillis,
+    double maxMillis
+) {
+}
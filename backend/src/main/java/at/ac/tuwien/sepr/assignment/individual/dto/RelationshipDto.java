@@ -0,0 +1,17 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the relationship between two horses,
+ * given by their nearest common ancestors and a human-readable description, e.g. "half-siblings via mare Bella".
+ * Ancestors more than {@code generations} generations back are not considered.
+ */
+public record RelationshipDto(
+    long horseId,
+    long otherHorseId,
+    int generations,
+    String description,
+    List<CommonAncestorDto> commonAncestors
+) {
+}
@@ -0,0 +1,12 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the number of horses of one sex among the matches of a search.
+ */
+public record SexCountDto(
+    Sex sex,
+    long count
+) {
+}
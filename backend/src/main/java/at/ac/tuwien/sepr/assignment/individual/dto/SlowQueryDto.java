@@ -0,0 +1,21 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.time.Instant;
+
+/**
+ * Represents a Data Transfer Object (DTO) for an execution of a statement that took longer than the configured threshold.
+ *
+ * @param shape the shape under which the statement is aggregated
+ * @param executedAt when the execution finished
+ * @param durationMillis the time the execution took
+ * @param rows the number of rows returned or changed
+ * @param plan the plan of the statement, or {@code null} if it has not been captured (yet)
+ */
+public record SlowQueryDto(
+    String shape,
+    Instant executedAt,
+    double durationMillis,
+    long rows,
+    String plan
+) {
+}
@@ -0,0 +1,13 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * DTO for a name suggested while the user is typing, e.g. in an autocomplete field.
+ *
+ * @param id the ID of the suggested horse or owner
+ * @param name the name to show
+ */
+public record SuggestionDto(
+    long id,
+    String name
+) {
+}
@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepr.assignment.individual.exception;
+
+/**
+ * Exception that signals, that a computation was cancelled,
+ * because it did not finish within the time granted to it.
+ */
+public class DeadlineExceededException extends Exception {
+  public DeadlineExceededException(String message) {
+    super(message);
+  }
+
+  public DeadlineExceededException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
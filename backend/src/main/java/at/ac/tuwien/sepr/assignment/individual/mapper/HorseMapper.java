@@ -7,7 +7,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseDescendantDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseExportDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFamilyTreeDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
@@ -48,6 +51,30 @@ public class HorseMapper {
     );
   }  
 
+  /**
+   * Converts a {@link Horse} entity into a {@link HorseExportDto}, which refers to the owner only by its ID.
+   *
+   * @param horse the horse entity to convert
+   * @return the converted {@link HorseExportDto}
+   */
+  public HorseExportDto entityToExportDto(Horse horse) {
+    LOG.trace("entityToExportDto({})", horse);
+    if (horse == null) {
+      return null;
+    }
+
+    return new HorseExportDto(
+        horse.id(),
+        horse.name(),
+        horse.description(),
+        horse.dateOfBirth(),
+        horse.sex(),
+        horse.ownerId(),
+        horse.parentFemaleId(),
+        horse.parentMaleId()
+    );
+  }
+
   /**
    * Converts a {@link Horse} entity into a {@link HorseDetailDto}.
    * The given maps must contain the owners and parents referenced by the horse.
@@ -77,6 +104,76 @@ public class HorseMapper {
     );
   }
 
+  /**
+   * Converts a {@link Horse} entity into a {@link HorseDescendantDto}.
+   * The given map of owners must contain the owner referenced by the horse.
+   *
+   * @param horse      the horse entity to convert
+   * @param generation the number of generations the horse is removed from its ancestor
+   * @param owners     a map of horse owners by their ID
+   * @return the converted {@link HorseDescendantDto}
+   */
+  public HorseDescendantDto entityToDescendantDto(Horse horse, int generation, Map<Long, OwnerDto> owners) {
+    LOG.trace("entityToDescendantDto({}, {})", horse, generation);
+    if (horse == null) {
+      return null;
+    }
+
+    return new HorseDescendantDto(
+        generation,
+        horse.id(),
+        horse.name(),
+        horse.dateOfBirth(),
+        horse.sex(),
+        getOwner(horse, owners),
+        horse.parentFemaleId(),
+        horse.parentMaleId()
+    );
+  }
+
+  /**
+   * Converts a {@link Horse} entity and its ancestors into a nested {@link HorseFamilyTreeDto}.
+   * Parents that are not contained in {@code horses} are left out of the tree,
+   * as are all ancestors more than {@code generations} generations back.
+   *
+   * @param horse       the horse at the root of the family tree
+   * @param horses      a map of all known ancestors of the horse by their ID
+   * @param owners      a map of the owners of all horses in the tree by their ID
+   * @param generations the number of ancestor generations to include
+   * @return the converted {@link HorseFamilyTreeDto}
+   */
+  public HorseFamilyTreeDto entityToFamilyTreeDto(
+      Horse horse,
+      Map<Long, Horse> horses,
+      Map<Long, OwnerDto> owners,
+      int generations) {
+    LOG.trace("entityToFamilyTreeDto({}, {})", horse, generations);
+    if (horse == null) {
+      return null;
+    }
+
+    HorseFamilyTreeDto parentFemale = null;
+    HorseFamilyTreeDto parentMale = null;
+    if (generations > 0) {
+      parentFemale = entityToFamilyTreeDto(parentOf(horse.parentFemaleId(), horses), horses, owners, generations - 1);
+      parentMale = entityToFamilyTreeDto(parentOf(horse.parentMaleId(), horses), horses, owners, generations - 1);
+    }
+
+    return new HorseFamilyTreeDto(
+        horse.id(),
+        horse.name(),
+        horse.dateOfBirth(),
+        horse.sex(),
+        getOwner(horse, owners),
+        parentFemale,
+        parentMale
+    );
+  }
+
+  private Horse parentOf(Long parentId, Map<Long, Horse> horses) {
+    return parentId == null ? null : horses.get(parentId);
+  }
+
   private OwnerDto getOwner(Horse horse, Map<Long, OwnerDto> owners) {
     OwnerDto owner = null;
     var ownerId = horse.ownerId();
@@ -0,0 +1,35 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+/**
+ * A common ancestor of two horses, found in the {@link PedigreeGraph}, together with one shortest path
+ * from each of the two horses up to it.
+ * Each path starts with the respective horse and ends with the common ancestor,
+ * so a path of length {@code 1} means that the horse is the common ancestor itself.
+ *
+ * @param id the ID of the common ancestor
+ * @param pathFromFirst the IDs on the path from the first horse up to the common ancestor
+ * @param pathFromSecond the IDs on the path from the second horse up to the common ancestor
+ */
+public record CommonAncestor(
+    long id,
+    long[] pathFromFirst,
+    long[] pathFromSecond
+) {
+  /**
+   * Get the number of generations between the first horse and the common ancestor.
+   *
+   * @return the number of generations, {@code 0} if the first horse is the common ancestor
+   */
+  public int generationsFromFirst() {
+    return pathFromFirst.length - 1;
+  }
+
+  /**
+   * Get the number of generations between the second horse and the common ancestor.
+   *
+   * @return the number of generations, {@code 0} if the second horse is the common ancestor
+   */
+  public int generationsFromSecond() {
+    return pathFromSecond.length - 1;
+  }
+}
@@ -21,14 +21,17 @@ import org.springframework.stereotype.Component;
 public class DataGeneratorBean {
   private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private final DataSource dataSource;
+  private final HorseDao horseDao;
 
   /**
    * Constructs the {@code DataGeneratorBean} with the required {@link DataSource}.
    *
    * @param dataSource the database connection source
+   * @param horseDao the DAO to rebuild the ancestry of the generated horses with
    */
-  public DataGeneratorBean(DataSource dataSource) {
+  public DataGeneratorBean(DataSource dataSource, HorseDao horseDao) {
     this.dataSource = dataSource;
+    this.horseDao = horseDao;
   }
 
   /**
@@ -41,6 +44,8 @@ public class DataGeneratorBean {
     LOGGER.info("Generating data...");
     try (var connection = dataSource.getConnection()) {
       ScriptUtils.executeSqlScript(connection, new ClassPathResource("sql/insertData.sql"));
+      // the script bypasses the DAO, so the ancestry of the inserted horses is not stored yet
+      horseDao.rebuildAncestry();
       LOGGER.info("Finished generating data successfully.");
     }
   }
@@ -0,0 +1,22 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+
+/**
+ * A horse to create in a batch, whose parents may be created earlier in the same batch.
+ * A parent given by its position in the batch takes precedence over the parent ID of the horse.
+ *
+ * @param horse the horse to create
+ * @param parentFemaleIndex the position of the female parent in the batch, or {@link #NONE}
+ * @param parentMaleIndex the position of the male parent in the batch, or {@link #NONE}
+ */
+public record HorseBatchEntry(
+    HorseCreateDto horse,
+    int parentFemaleIndex,
+    int parentMaleIndex
+) {
+  /**
+   * Position of a parent that is not created in the same batch.
+   */
+  public static final int NONE = -1;
+}
@@ -0,0 +1,41 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+
+/**
+ * Event published by the {@link HorseDao} whenever a horse in the persistent data store is created, updated or deleted.
+ * In-memory structures derived from the stored horses listen to it to keep themselves in sync.
+ *
+ * @param type     the kind of change
+ * @param id       the ID of the changed horse
+ * @param previous the horse as stored before the change, without its image, {@code null} if it was created
+ * @param horse    the horse as stored after the change, {@code null} if it was deleted
+ */
+public record HorseChangedEvent(
+    Type type,
+    long id,
+    Horse previous,
+    Horse horse
+) {
+
+  /**
+   * The kind of change to a horse.
+   */
+  public enum Type {
+    CREATED,
+    UPDATED,
+    DELETED
+  }
+
+  public static HorseChangedEvent created(Horse horse) {
+    return new HorseChangedEvent(Type.CREATED, horse.id(), null, horse);
+  }
+
+  public static HorseChangedEvent updated(Horse previous, Horse horse) {
+    return new HorseChangedEvent(Type.UPDATED, horse.id(), previous, horse);
+  }
+
+  public static HorseChangedEvent deleted(Horse previous) {
+    return new HorseChangedEvent(Type.DELETED, previous.id(), previous, null);
+  }
+}
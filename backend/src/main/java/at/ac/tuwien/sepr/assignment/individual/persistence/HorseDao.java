@@ -1,17 +1,23 @@
 package at.ac.tuwien.sepr.assignment.individual.persistence;
 
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 
 /**
  * Data Access Object for horses.
  * Implements access functionality to the application's persistent data store regarding horses.
+ * Every successful create, update and delete publishes a {@link HorseChangedEvent}.
+ * Alongside the horses, the transitive closure of their parent links (the ancestry) is stored,
+ * and updated in the same transaction whenever parent links change.
  */
 public interface HorseDao {
   /**
@@ -21,17 +27,41 @@ public interface HorseDao {
    */
   List<Horse> getAll();
 
+  /**
+   * Stream all horses stored in the persistent data store, ordered by ID, without their images.
+   * The horses are fetched from a database cursor while the stream is consumed, so the whole herd is never mapped
+   * at once. The embedded H2 database still buffers up to {@code MAX_MEMORY_ROWS} rows of the result on the heap,
+   * and the rest in a temporary file, since it ignores the fetch size without lazy query execution.
+   * The database connection is held until the returned stream is closed, so it has to be closed after use.
+   *
+   * @return a stream of all stored horses, with {@code null} images
+   */
+  Stream<Horse> streamAll();
+
+
+  /**
+   * Fetch a set of horses by their IDs from the persistent data store, using a single query.
+   * This is best effort, if some horse can not be found in the data store, it is simply not in the returned list.
+   *
+   * @param ids a collection of IDs, to fetch the referenced horses by
+   * @return all found horses, in no particular order
+   */
+  List<Horse> getAllById(Collection<Long> ids);
+
 
   /**
    * Update the horse with the ID given in {@code horse}
    * with the data given in {@code horse}
    * in the persistent data store.
+   * If the parent links change, they are checked against the stored ancestry within the same transaction,
+   * and such updates are serialized, so that concurrent updates can not make the family tree cyclic.
    *
    * @param horse the horse to update
    * @return the updated horse
    * @throws NotFoundException if the Horse with the given ID does not exist in the persistent data store
+   * @throws ConflictException if a new parent is the horse itself or one of its descendants
    */
-  Horse update(HorseUpdateDto horse) throws NotFoundException;
+  Horse update(HorseUpdateDto horse) throws NotFoundException, ConflictException;
 
 
   /**
@@ -53,6 +83,16 @@ public interface HorseDao {
    */
   Horse create(HorseCreateDto horseCreateDto) throws NotFoundException;
 
+  /**
+   * Creates many new horses in the persistent data store at once, in a single transaction.
+   * The horses are inserted in JDBC batches, in the given order, so that parents given by their position
+   * in the batch have to come before their children.
+   *
+   * @param entries the horses to create, with the positions of parents created in the same batch
+   * @return the created horses with their generated IDs and resolved parents, in the given order
+   */
+  List<Horse> createAll(List<HorseBatchEntry> entries);
+
   /**
    * Deletes the horse with the specified ID from the persistent data store.
    *
@@ -66,13 +106,90 @@ public interface HorseDao {
    *
    * <p>
    * The search criteria may include filters for name, description, birth date (older than a given date),
-   * sex, and owner. When multiple criteria are provided, only horses matching all criteria are returned.
+   * sex, owner, and parents. When multiple criteria are provided, only horses matching all criteria are returned.
    * If no criteria are provided, all horses are listed.
    * </p>
    *
+   * <p>
+   * The horses are ordered by the requested sort key and then by ID.
+   * If a cursor is given, only horses after the position it denotes in this order are returned.
+   * </p>
+   *
    * @param criteria the {@link HorseSearchDto} encapsulating the search parameters
-   * @return a list of horses matching the criteria
+   * @return a list of horses matching the criteria, in the requested order
    * @throws NotFoundException if no horses match the criteria or if a referenced entity is missing
    */
   List<Horse> search(HorseSearchDto criteria) throws NotFoundException;
+
+  /**
+   * Searches for horses like {@link #search}, but reads the matches lazily from a forward-only database cursor,
+   * so that they are never all mapped at once. Like for {@link #streamAll()}, the embedded H2 database
+   * still buffers up to {@code MAX_MEMORY_ROWS} rows of the result on the heap.
+   * The database connection is held until the returned stream is closed, so it has to be closed after use.
+   *
+   * @param criteria the {@link HorseSearchDto} encapsulating the search parameters
+   * @return a stream of the horses matching the criteria, in the requested order
+   */
+  Stream<Horse> streamSearch(HorseSearchDto criteria);
+
+  /**
+   * Searches for horses like {@link #search}, but only reads their IDs,
+   * for callers that take everything else they need about the matches from elsewhere.
+   *
+   * @param criteria the {@link HorseSearchDto} encapsulating the search parameters
+   * @return the IDs of the horses matching the criteria, in the requested order
+   */
+  List<Long> searchIds(HorseSearchDto criteria);
+
+  /**
+   * Counts the horses that match the provided search criteria by sex, by year of birth and by owner,
+   * with a single query grouping by each of them separately, so that the matches themselves need not be read.
+   * Order, limit and cursor of the criteria are ignored.
+   *
+   * @param criteria the {@link HorseSearchDto} encapsulating the search parameters
+   * @return the number of matching horses for every sex, year of birth and owner that occurs
+   */
+  List<HorseFacetCount> countFacets(HorseSearchDto criteria);
+
+  /**
+   * Get the horse with the given ID together with all of its ancestors
+   * up to {@code generations} generations back, using a single indexed lookup of the stored ancestry.
+   * Every horse is contained at most once, even if it appears multiple times in the family tree.
+   *
+   * @param id the ID of the horse whose family tree to get
+   * @param generations the number of ancestor generations to include, {@code 0} means only the horse itself
+   * @return the horse and its ancestors, in no particular order
+   * @throws NotFoundException if the Horse with the given ID does not exist in the persistent data store
+   */
+  List<Horse> getFamilyTree(long id, int generations) throws NotFoundException;
+
+
+  /**
+   * Check whether one horse is an ancestor of another one, over any number of generations.
+   *
+   * @param ancestorId the ID of the potential ancestor
+   * @param id the ID of the horse whose ancestors to check
+   * @return {@code true} if the horse with ID {@code ancestorId} is a (direct or indirect) parent of the other horse
+   */
+  boolean isAncestor(long ancestorId, long id);
+
+
+  /**
+   * Count all distinct descendants of a horse, over any number of generations.
+   *
+   * @param id the ID of the horse
+   * @return the number of stored descendants, {@code 0} if there are none or the horse does not exist
+   */
+  long countDescendants(long id);
+
+
+  /**
+   * Recompute the stored ancestry of all horses from their parent links.
+   * The ancestry is kept up to date by {@link #create}, {@link #update} and {@link #delete},
+   * so this is only needed after horses have been written bypassing this DAO, e.g. by an import script.
+   * Horses whose parent links form a cycle are logged, and only paired with themselves.
+   *
+   * @return the number of stored ancestor-descendant pairs, including each horse with itself
+   */
+  int rebuildAncestry();
 }
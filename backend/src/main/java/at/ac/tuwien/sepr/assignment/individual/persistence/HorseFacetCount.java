@@ -0,0 +1,31 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * The number of horses that share the value of one facet, i.e. the same sex, year of birth or owner,
+ * among the matches of a search. Only the value of the counted facet is set.
+ *
+ * @param facet the facet the horses are counted by
+ * @param sex the sex of the horses, if counted by sex
+ * @param birthYear the year in which the horses were born, if counted by year of birth
+ * @param ownerId the ID of the owner of the horses, if counted by owner, and {@code null} for horses without owner
+ * @param count the number of such horses
+ */
+public record HorseFacetCount(
+    Facet facet,
+    Sex sex,
+    Integer birthYear,
+    Long ownerId,
+    long count
+) {
+
+  /**
+   * The attributes by which the matches of a search are counted.
+   */
+  public enum Facet {
+    SEX,
+    BIRTH_YEAR,
+    OWNER
+  }
+}
@@ -0,0 +1,174 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
+import at.ac.tuwien.sepr.assignment.individual.util.PrefixIndex;
+
+/**
+ * In-memory {@link PrefixIndex} over the names of all stored horses and owners,
+ * used to suggest names while they are typed without querying the persistent data store.
+ * Horses are found by a prefix of their name, owners by a prefix of their full name or of their last name.
+ *
+ * <p>
+ * The index is loaded once the application is ready,
+ * and kept in sync through {@link HorseChangedEvent}s and {@link OwnerChangedEvent}s.
+ * It is safe to use from multiple threads.
+ * </p>
+ */
+@Component
+public class NameIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String SQL_SELECT_HORSE_NAMES = "SELECT id, name FROM horse";
+  private static final String SQL_SELECT_OWNER_NAMES = "SELECT id, first_name, last_name FROM owner";
+
+  private final JdbcClient jdbcClient;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile boolean loaded;
+  private final PrefixIndex horses = new PrefixIndex();
+  private final PrefixIndex owners = new PrefixIndex();
+
+  public NameIndex(JdbcClient jdbcClient) {
+    this.jdbcClient = jdbcClient;
+  }
+
+  /**
+   * (Re-)build the whole index from the persistent data store.
+   * Called automatically once the application is ready.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    lock.writeLock().lock();
+    try {
+      final long start = System.nanoTime();
+      List<PrefixIndex.Entry> horseEntries = new ArrayList<>();
+      jdbcClient
+          .sql(SQL_SELECT_HORSE_NAMES)
+          .query((RowCallbackHandler) rs -> horseEntries.add(horseEntry(rs.getLong("id"), rs.getString("name"))));
+      List<PrefixIndex.Entry> ownerEntries = new ArrayList<>();
+      jdbcClient
+          .sql(SQL_SELECT_OWNER_NAMES)
+          .query((RowCallbackHandler) rs -> ownerEntries.addAll(
+              ownerEntries(rs.getLong("id"), rs.getString("first_name"), rs.getString("last_name"))));
+      horses.load(horseEntries);
+      owners.load(ownerEntries);
+      loaded = true;
+      LOG.info("Built name index over {} horse and {} owner names in {} ms",
+          horses.size(), owners.size(), (System.nanoTime() - start) / 1_000_000);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Apply a change of a stored horse to the index.
+   *
+   * @param event the change that happened
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onHorseChanged(HorseChangedEvent event) {
+    // checked under the write lock, so that a change committed during a load is applied after it, not dropped
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        // the change will be contained once the index is loaded
+        return;
+      }
+      if (event.type() == HorseChangedEvent.Type.DELETED) {
+        horses.remove(event.id());
+      } else {
+        horses.put(event.id(), List.of(horseEntry(event.id(), event.horse().name())));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Apply a change of a stored owner to the index.
+   *
+   * @param event the change that happened
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOwnerChanged(OwnerChangedEvent event) {
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        return;
+      }
+      if (event.type() == OwnerChangedEvent.Type.DELETED) {
+        owners.remove(event.id());
+      } else {
+        Owner owner = event.owner();
+        owners.put(event.id(), ownerEntries(owner.id(), owner.firstName(), owner.lastName()));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find horses whose name starts with a prefix.
+   *
+   * @param prefix the prefix, compared case-insensitively
+   * @param limit the maximum number of horses to return
+   * @return the matching horses, with their names as labels, ordered by name
+   */
+  public List<PrefixIndex.Entry> findHorses(String prefix, int limit) {
+    return find(horses, prefix, limit);
+  }
+
+  /**
+   * Find owners whose full name or last name starts with a prefix.
+   *
+   * @param prefix the prefix, compared case-insensitively
+   * @param limit the maximum number of owners to return
+   * @return the matching owners, with their full names as labels, ordered by the matching name
+   */
+  public List<PrefixIndex.Entry> findOwners(String prefix, int limit) {
+    return find(owners, prefix, limit);
+  }
+
+  private List<PrefixIndex.Entry> find(PrefixIndex index, String prefix, int limit) {
+    if (!loaded) {
+      // requests arriving before the application is ready load the index only once between them
+      lock.writeLock().lock();
+      try {
+        if (!loaded) {
+          load();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    lock.readLock().lock();
+    try {
+      return index.find(prefix, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static PrefixIndex.Entry horseEntry(long id, String name) {
+    return PrefixIndex.entry(name, id, name);
+  }
+
+  private static List<PrefixIndex.Entry> ownerEntries(long id, String firstName, String lastName) {
+    String fullName = firstName + " " + lastName;
+    return List.of(PrefixIndex.entry(fullName, id, fullName), PrefixIndex.entry(lastName, id, fullName));
+  }
+}
@@ -0,0 +1,39 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
+
+/**
+ * Event published by the {@link OwnerDao} whenever an owner in the persistent data store is created, updated or deleted.
+ * In-memory structures derived from the stored owners listen to it to keep themselves in sync.
+ *
+ * @param type  the kind of change
+ * @param id    the ID of the changed owner
+ * @param owner the owner as stored after the change, {@code null} if it was deleted
+ */
+public record OwnerChangedEvent(
+    Type type,
+    long id,
+    Owner owner
+) {
+
+  /**
+   * The kind of change to an owner.
+   */
+  public enum Type {
+    CREATED,
+    UPDATED,
+    DELETED
+  }
+
+  public static OwnerChangedEvent created(Owner owner) {
+    return new OwnerChangedEvent(Type.CREATED, owner.id(), owner);
+  }
+
+  public static OwnerChangedEvent updated(Owner owner) {
+    return new OwnerChangedEvent(Type.UPDATED, owner.id(), owner);
+  }
+
+  public static OwnerChangedEvent deleted(long id) {
+    return new OwnerChangedEvent(Type.DELETED, id, null);
+  }
+}
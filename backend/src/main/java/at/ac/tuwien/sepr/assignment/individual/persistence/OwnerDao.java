@@ -1,6 +1,8 @@
 package at.ac.tuwien.sepr.assignment.individual.persistence;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
@@ -34,15 +36,30 @@ public interface OwnerDao {
    * Search for owners matching the criteria in {@code searchParameters}.
    * 
    * <p>
-   * A owner is considered matched, if its name contains {@code searchParameters.name} as a substring.
+   * A owner is considered matched, if its full name or last name starts with {@code searchParameters.name},
+   * ignoring case.
    * The returned stream of owners never contains more than {@code searchParameters.maxAmount} elements,
    *  even if there would be more matches in the persistent data store.
    * </p>
    *
+   * <p>
+   * The owners are ordered by the requested sort key and then by ID.
+   * If a cursor is given, only owners after the position it denotes in this order are returned.
+   * </p>
+   *
    * @param searchParameters object containing the search parameters to match
-   * @return a stream containing owners matching the criteria in {@code searchParameters}
+   * @return a list containing owners matching the criteria in {@code searchParameters}, in the requested order
+   */
+  List<Owner> search(OwnerSearchDto searchParameters);
+
+  /**
+   * Stream all owners stored in the persistent data store, ordered by ID.
+   * The owners are fetched from a database cursor while the stream is consumed.
+   * The database connection is held until the returned stream is closed, so it has to be closed after use.
+   *
+   * @return a stream of all stored owners
    */
-  Collection<Owner> search(OwnerSearchDto searchParameters);
+  Stream<Owner> streamAll();
 
   /**
   *
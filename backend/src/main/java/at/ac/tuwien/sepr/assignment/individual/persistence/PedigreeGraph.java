@@ -0,0 +1,777 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import at.ac.tuwien.sepr.assignment.individual.util.LongIntHashMap;
+
+/**
+ * In-memory index of the pedigree of all stored horses.
+ * Holds only the data needed to walk family trees (ID, sex, date of birth and parents)
+ * in primitive arrays, so that ancestor, descendant and sex lookups need no database round trip.
+ *
+ * <p>
+ * Every horse occupies one slot. Parents are stored as slot numbers, and the children of a slot
+ * are threaded through the parent links of the children themselves, so no object is allocated per edge.
+ * A horse that is referenced as a parent but not stored (anymore) keeps a placeholder slot,
+ * which is not reported as contained.
+ * </p>
+ *
+ * <p>
+ * The graph is loaded once the application is ready and kept in sync through {@link HorseChangedEvent}s.
+ * It is safe to use from multiple threads.
+ * </p>
+ */
+@Component
+public class PedigreeGraph {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Returned instead of an ID if there is no such horse.
+   */
+  public static final long NO_HORSE = Long.MIN_VALUE;
+
+  private static final String SQL_SELECT_PEDIGREE =
+      "SELECT id, sex, date_of_birth, parent_female_id, parent_male_id FROM horse";
+
+  private static final int NONE = -1;
+  private static final int UNKNOWN_BIRTH = Integer.MIN_VALUE;
+  private static final byte ABSENT = 0;
+  private static final byte MALE = 1;
+  private static final byte FEMALE = 2;
+  private static final int FEMALE_LINK = 0;
+  private static final int MALE_LINK = 1;
+
+  private final JdbcClient jdbcClient;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile boolean loaded;
+
+  private LongIntHashMap slots;
+  private long[] ids;
+  private byte[] sexes;
+  private int[] birthDays;
+  // parents[2 * slot + FEMALE_LINK] and parents[2 * slot + MALE_LINK] hold the parent slots
+  private int[] parents;
+  // children of a slot form a linked list of links (2 * childSlot + FEMALE_LINK/MALE_LINK)
+  private int[] firstChildLink;
+  private int[] nextSiblingLink;
+  private int slotCount;
+  private int horseCount;
+
+  public PedigreeGraph(JdbcClient jdbcClient) {
+    this.jdbcClient = jdbcClient;
+    allocate(1024);
+  }
+
+  /**
+   * (Re-)load the whole graph from the persistent data store.
+   * Called automatically once the application is ready.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    lock.writeLock().lock();
+    try {
+      final long start = System.nanoTime();
+      allocate(1024);
+      jdbcClient
+          .sql(SQL_SELECT_PEDIGREE)
+          .query((RowCallbackHandler) rs -> {
+            Date dateOfBirth = rs.getDate("date_of_birth");
+            put(rs.getLong("id"),
+                Sex.valueOf(rs.getString("sex")),
+                dateOfBirth == null ? null : dateOfBirth.toLocalDate(),
+                rs.getObject("parent_female_id", Long.class),
+                rs.getObject("parent_male_id", Long.class));
+          });
+      loaded = true;
+      LOG.info("Loaded pedigree graph with {} horses in {} ms, using about {} KiB",
+          horseCount, (System.nanoTime() - start) / 1_000_000, footprintBytes() / 1024);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Apply a change of a stored horse to the graph.
+   *
+   * @param event the change that happened
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onHorseChanged(HorseChangedEvent event) {
+    LOG.trace("onHorseChanged({})", event);
+    // a load in progress holds the write lock, so the change is applied after it instead of being lost
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        // no load has started yet, the change will be contained once the graph is loaded
+        return;
+      }
+      if (event.type() == HorseChangedEvent.Type.DELETED) {
+        remove(event.id());
+      } else {
+        Horse horse = event.horse();
+        put(horse.id(), horse.sex(), horse.dateOfBirth(), horse.parentFemaleId(), horse.parentMaleId());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Check whether a horse with the given ID is stored.
+   *
+   * @param id the ID of the horse
+   * @return {@code true} if the horse exists
+   */
+  public boolean contains(long id) {
+    readLock();
+    try {
+      return slotOf(id) != NONE;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the sex of a horse.
+   *
+   * @param id the ID of the horse
+   * @return the sex of the horse, or {@code null} if there is no horse with the given ID
+   */
+  public Sex sex(long id) {
+    readLock();
+    try {
+      int slot = slotOf(id);
+      return slot == NONE ? null : toSex(sexes[slot]);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the date of birth of a horse.
+   *
+   * @param id the ID of the horse
+   * @return the date of birth of the horse, or {@code null} if there is no horse with the given ID
+   */
+  public LocalDate dateOfBirth(long id) {
+    readLock();
+    try {
+      int slot = slotOf(id);
+      return slot == NONE || birthDays[slot] == UNKNOWN_BIRTH ? null : LocalDate.ofEpochDay(birthDays[slot]);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the ID of the female parent of a horse.
+   *
+   * @param id the ID of the horse
+   * @return the ID of the female parent, or {@link #NO_HORSE} if the horse or its female parent is unknown
+   */
+  public long parentFemaleId(long id) {
+    return parentId(id, FEMALE_LINK);
+  }
+
+  /**
+   * Get the ID of the male parent of a horse.
+   *
+   * @param id the ID of the horse
+   * @return the ID of the male parent, or {@link #NO_HORSE} if the horse or its male parent is unknown
+   */
+  public long parentMaleId(long id) {
+    return parentId(id, MALE_LINK);
+  }
+
+  /**
+   * Get the IDs of the direct children of a horse.
+   *
+   * @param id the ID of the horse
+   * @return the IDs of all stored horses that have the given horse as a parent
+   */
+  public long[] children(long id) {
+    return descendants(id, 1);
+  }
+
+  /**
+   * Get the IDs of all distinct ancestors of a horse, up to {@code generations} generations back.
+   * Ancestors are ordered by the generation they are first encountered in; the horse itself is not included.
+   *
+   * @param id the ID of the horse
+   * @param generations the number of generations to walk up
+   * @return the IDs of the stored ancestors, empty if the horse is unknown
+   */
+  public long[] ancestors(long id, int generations) {
+    readLock();
+    try {
+      return flatten(walk(id, generations, true));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the IDs of all distinct descendants of a horse, up to {@code generations} generations down.
+   * Descendants are ordered by the generation they are first encountered in; the horse itself is not included.
+   *
+   * @param id the ID of the horse
+   * @param generations the number of generations to walk down
+   * @return the IDs of the stored descendants, empty if the horse is unknown
+   */
+  public long[] descendants(long id, int generations) {
+    readLock();
+    try {
+      return flatten(walk(id, generations, false));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the IDs of all distinct descendants of a horse, up to {@code generations} generations down,
+   * grouped by generation. Element {@code 0} holds the children, element {@code 1} the grandchildren, and so on.
+   * A horse that is reachable on several paths is only contained in the closest generation.
+   * Trailing generations without any descendants are left out.
+   *
+   * @param id the ID of the horse
+   * @param generations the number of generations to walk down
+   * @return the IDs of the stored descendants per generation, empty if the horse is unknown
+   */
+  public long[][] descendantsByGeneration(long id, int generations) {
+    readLock();
+    try {
+      return walk(id, generations, false);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Check whether one horse is an ancestor of another one, over any number of generations.
+   * The walk stops as soon as the ancestor is found, and visits every horse at most once,
+   * so it terminates even if the stored parent links contain a cycle.
+   *
+   * @param ancestorId the ID of the potential ancestor
+   * @param id the ID of the horse whose ancestors to search
+   * @return {@code true} if the horse with ID {@code ancestorId} is a (direct or indirect) parent of the other horse
+   */
+  public boolean isAncestor(long ancestorId, long id) {
+    readLock();
+    try {
+      int start = slotOf(id);
+      int target = slotOf(ancestorId);
+      if (start == NONE || target == NONE) {
+        return false;
+      }
+      LongIntHashMap visited = new LongIntHashMap(64, NONE);
+      int[] stack = new int[16];
+      int top = 0;
+      stack[top++] = start;
+      visited.put(start, start);
+      while (top > 0) {
+        int slot = stack[--top];
+        for (int link = 2 * slot; link < 2 * slot + 2; link++) {
+          int parent = parents[link];
+          if (parent == target) {
+            return true;
+          }
+          if (parent == NONE || visited.containsKey(parent)) {
+            continue;
+          }
+          visited.put(parent, parent);
+          if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+          }
+          stack[top++] = parent;
+        }
+      }
+      return false;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Find the nearest common ancestors of two horses, up to {@code generations} generations back from each of them.
+   * A horse counts as its own ancestor here, so if one horse is an ancestor of the other, it is the result.
+   * The nearest common ancestors are those with the smallest sum of generations to both horses.
+   * The search walks up from both horses in turn, always extending the smaller frontier by one generation,
+   * and stops as soon as no closer common ancestor can be found.
+   *
+   * @param id the ID of the first horse
+   * @param otherId the ID of the second horse
+   * @param generations the maximum number of generations to walk up from each horse
+   * @return the nearest common ancestors, ordered by the generation they are reached from the first horse;
+   *     empty if the horses are not related within the given generations or one of them is unknown
+   */
+  public List<CommonAncestor> commonAncestors(long id, long otherId, int generations) {
+    readLock();
+    try {
+      int first = slotOf(id);
+      int second = slotOf(otherId);
+      if (first == NONE || second == NONE) {
+        return List.of();
+      }
+      Ascent[] ascents = {new Ascent(first), new Ascent(second)};
+      int best = first == second ? 0 : Integer.MAX_VALUE;
+      List<int[]> meetings = new ArrayList<>();
+      if (first == second) {
+        meetings.add(new int[] {0, 0});
+      }
+      while (true) {
+        // every common ancestor not found yet is more than one finished generation away from at least one horse
+        int bound = Integer.MAX_VALUE;
+        Ascent next = null;
+        for (Ascent ascent : ascents) {
+          if (ascent.frontierSize > 0 && ascent.generation < generations) {
+            bound = Math.min(bound, ascent.generation + 1);
+            if (next == null || ascent.frontierSize < next.frontierSize) {
+              next = ascent;
+            }
+          }
+        }
+        if (next == null || best < bound) {
+          break;
+        }
+        Ascent other = next == ascents[0] ? ascents[1] : ascents[0];
+        int from = next.visitedSize;
+        next.climb();
+        for (int position = from; position < next.visitedSize; position++) {
+          int otherPosition = other.positions.get(next.visited[position]);
+          if (otherPosition == NONE) {
+            continue;
+          }
+          int distance = next.generations[position] + other.generations[otherPosition];
+          if (distance < best) {
+            best = distance;
+            meetings.clear();
+          }
+          if (distance == best) {
+            meetings.add(next == ascents[0] ? new int[] {position, otherPosition} : new int[] {otherPosition, position});
+          }
+        }
+      }
+      meetings.sort(Comparator.comparingInt((int[] meeting) -> ascents[0].generations[meeting[0]])
+          .thenComparingInt(meeting -> meeting[0]));
+      List<CommonAncestor> result = new ArrayList<>(meetings.size());
+      for (int[] meeting : meetings) {
+        result.add(new CommonAncestor(ids[ascents[0].visited[meeting[0]]],
+            ascents[0].pathTo(meeting[0]), ascents[1].pathTo(meeting[1])));
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Take an immutable snapshot of the given horses and their ancestors up to {@code generations} generations back.
+   * An ancestor is included if its closest path to one of the given horses is short enough.
+   * Unknown IDs are ignored. Should the stored parent links contain a cycle, one link of the cycle is left out,
+   * so that every horse in the snapshot still comes after all of its ancestors.
+   *
+   * @param rootIds the IDs of the horses whose pedigree to include
+   * @param generations the number of ancestor generations to include
+   * @return the snapshot
+   */
+  public PedigreeSnapshot snapshot(long[] rootIds, int generations) {
+    readLock();
+    try {
+      // collect the horses in breadth-first order, so that each one is reached on its shortest path
+      LongIntHashMap positions = new LongIntHashMap(rootIds.length * 4, NONE);
+      int[] collected = new int[Math.max(16, rootIds.length)];
+      int[] depths = new int[collected.length];
+      int count = 0;
+      for (long rootId : rootIds) {
+        int slot = slotOf(rootId);
+        if (slot != NONE && !positions.containsKey(slot)) {
+          positions.put(slot, count);
+          collected[count++] = slot;
+        }
+      }
+      for (int head = 0; head < count; head++) {
+        if (depths[head] >= generations) {
+          continue;
+        }
+        for (int link = 2 * collected[head]; link < 2 * collected[head] + 2; link++) {
+          int parent = parents[link];
+          if (parent == NONE || sexes[parent] == ABSENT || positions.containsKey(parent)) {
+            continue;
+          }
+          if (count == collected.length) {
+            collected = Arrays.copyOf(collected, count * 2);
+            depths = Arrays.copyOf(depths, count * 2);
+          }
+          positions.put(parent, count);
+          depths[count] = depths[head] + 1;
+          collected[count++] = parent;
+        }
+      }
+      return toSnapshot(collected, count, positions);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Number the collected horses so that parents come before their children (depth-first post-order),
+   * and copy them into a snapshot.
+   */
+  private PedigreeSnapshot toSnapshot(int[] collected, int count, LongIntHashMap positions) {
+    final byte unvisited = 0;
+    final byte inProgress = 1;
+    final byte done = 2;
+    byte[] states = new byte[count];
+    int[] indexes = new int[count];
+    int[] order = new int[count];
+    int[] stack = new int[count];
+    int ordered = 0;
+    for (int start = 0; start < count; start++) {
+      if (states[start] != unvisited) {
+        continue;
+      }
+      int top = 0;
+      stack[top++] = start;
+      states[start] = inProgress;
+      while (top > 0) {
+        int position = stack[top - 1];
+        int next = NONE;
+        for (int link = 2 * collected[position]; link < 2 * collected[position] + 2 && next == NONE; link++) {
+          int parentPosition = parents[link] == NONE ? NONE : positions.get(parents[link]);
+          if (parentPosition != NONE && states[parentPosition] == unvisited) {
+            next = parentPosition;
+          }
+        }
+        if (next != NONE) {
+          states[next] = inProgress;
+          stack[top++] = next;
+        } else {
+          top--;
+          states[position] = done;
+          indexes[position] = ordered;
+          order[ordered++] = position;
+        }
+      }
+    }
+
+    long[] snapshotIds = new long[count];
+    int[] femaleParents = new int[count];
+    int[] maleParents = new int[count];
+    for (int index = 0; index < count; index++) {
+      int slot = collected[order[index]];
+      snapshotIds[index] = ids[slot];
+      femaleParents[index] = snapshotParent(parents[2 * slot + FEMALE_LINK], index, positions, indexes);
+      maleParents[index] = snapshotParent(parents[2 * slot + MALE_LINK], index, positions, indexes);
+    }
+    return new PedigreeSnapshot(snapshotIds, femaleParents, maleParents);
+  }
+
+  private static int snapshotParent(int parentSlot, int childIndex, LongIntHashMap positions, int[] indexes) {
+    int position = parentSlot == NONE ? NONE : positions.get(parentSlot);
+    if (position == NONE) {
+      return PedigreeSnapshot.NONE;
+    }
+    // a parent numbered after its child closes a cycle, that link is left out
+    return indexes[position] < childIndex ? indexes[position] : PedigreeSnapshot.NONE;
+  }
+
+  /**
+   * Get the number of stored horses in the graph.
+   *
+   * @return the number of horses
+   */
+  public int size() {
+    readLock();
+    try {
+      return horseCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Breadth-first walk over parent links ({@code upwards}) or child links, one generation at a time.
+   * Every horse is reported only in the first generation it is encountered in.
+   */
+  private long[][] walk(long id, int generations, boolean upwards) {
+    int start = slotOf(id);
+    if (start == NONE || generations <= 0) {
+      return new long[0][];
+    }
+    LongIntHashMap visited = new LongIntHashMap(64, NONE);
+    visited.put(start, start);
+    int[] queue = new int[16];
+    queue[0] = start;
+    int head = 0;
+    int tail = 1;
+    long[][] result = new long[generations][];
+    int generation = 0;
+    while (generation < generations && head < tail) {
+      int generationEnd = tail;
+      long[] found = new long[16];
+      int foundCount = 0;
+      while (head < generationEnd) {
+        int slot = queue[head++];
+        int link = upwards ? 2 * slot : firstChildLink[slot];
+        int end = upwards ? 2 * slot + 2 : NONE;
+        while (link != end) {
+          int next = upwards ? parents[link] : link >> 1;
+          link = upwards ? link + 1 : nextSiblingLink[link];
+          if (next == NONE || visited.containsKey(next)) {
+            continue;
+          }
+          visited.put(next, next);
+          if (tail == queue.length) {
+            queue = Arrays.copyOf(queue, tail * 2);
+          }
+          queue[tail++] = next;
+          if (sexes[next] != ABSENT) {
+            if (foundCount == found.length) {
+              found = Arrays.copyOf(found, foundCount * 2);
+            }
+            found[foundCount++] = ids[next];
+          }
+        }
+      }
+      result[generation++] = Arrays.copyOf(found, foundCount);
+    }
+    return Arrays.copyOf(result, generation);
+  }
+
+  private static long[] flatten(long[][] generations) {
+    int total = 0;
+    for (long[] generation : generations) {
+      total += generation.length;
+    }
+    long[] result = new long[total];
+    int position = 0;
+    for (long[] generation : generations) {
+      System.arraycopy(generation, 0, result, position, generation.length);
+      position += generation.length;
+    }
+    return result;
+  }
+
+  private long parentId(long id, int link) {
+    readLock();
+    try {
+      int slot = slotOf(id);
+      if (slot == NONE) {
+        return NO_HORSE;
+      }
+      int parent = parents[2 * slot + link];
+      return parent == NONE || sexes[parent] == ABSENT ? NO_HORSE : ids[parent];
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Slot of the stored horse with the given ID, {@link #NONE} for unknown horses and placeholders.
+   */
+  private int slotOf(long id) {
+    int slot = slots.get(id);
+    return slot == NONE || sexes[slot] == ABSENT ? NONE : slot;
+  }
+
+  private void put(long id, Sex sex, LocalDate dateOfBirth, Long parentFemaleId, Long parentMaleId) {
+    int slot = slotOrPlaceholder(id);
+    if (sexes[slot] == ABSENT) {
+      horseCount++;
+    }
+    sexes[slot] = sex == Sex.FEMALE ? FEMALE : MALE;
+    birthDays[slot] = dateOfBirth == null ? UNKNOWN_BIRTH : (int) dateOfBirth.toEpochDay();
+    link(slot, FEMALE_LINK, parentFemaleId == null ? NONE : slotOrPlaceholder(parentFemaleId));
+    link(slot, MALE_LINK, parentMaleId == null ? NONE : slotOrPlaceholder(parentMaleId));
+  }
+
+  private void remove(long id) {
+    int slot = slots.get(id);
+    if (slot == NONE || sexes[slot] == ABSENT) {
+      return;
+    }
+    // the slot stays as a placeholder, as children may still refer to it
+    horseCount--;
+    sexes[slot] = ABSENT;
+    birthDays[slot] = UNKNOWN_BIRTH;
+    link(slot, FEMALE_LINK, NONE);
+    link(slot, MALE_LINK, NONE);
+  }
+
+  private void link(int child, int which, int parent) {
+    int link = 2 * child + which;
+    int previous = parents[link];
+    if (previous == parent) {
+      return;
+    }
+    if (previous != NONE) {
+      // unlink from the child list of the previous parent
+      if (firstChildLink[previous] == link) {
+        firstChildLink[previous] = nextSiblingLink[link];
+      } else {
+        int current = firstChildLink[previous];
+        while (nextSiblingLink[current] != link) {
+          current = nextSiblingLink[current];
+        }
+        nextSiblingLink[current] = nextSiblingLink[link];
+      }
+    }
+    parents[link] = parent;
+    nextSiblingLink[link] = NONE;
+    if (parent != NONE) {
+      nextSiblingLink[link] = firstChildLink[parent];
+      firstChildLink[parent] = link;
+    }
+  }
+
+  private int slotOrPlaceholder(long id) {
+    int slot = slots.get(id);
+    if (slot != NONE) {
+      return slot;
+    }
+    if (slotCount == ids.length) {
+      grow(ids.length * 2);
+    }
+    slot = slotCount++;
+    slots.put(id, slot);
+    ids[slot] = id;
+    sexes[slot] = ABSENT;
+    birthDays[slot] = UNKNOWN_BIRTH;
+    parents[2 * slot + FEMALE_LINK] = NONE;
+    parents[2 * slot + MALE_LINK] = NONE;
+    firstChildLink[slot] = NONE;
+    nextSiblingLink[2 * slot + FEMALE_LINK] = NONE;
+    nextSiblingLink[2 * slot + MALE_LINK] = NONE;
+    return slot;
+  }
+
+  private void allocate(int capacity) {
+    slots = new LongIntHashMap(capacity, NONE);
+    ids = new long[capacity];
+    sexes = new byte[capacity];
+    birthDays = new int[capacity];
+    parents = new int[2 * capacity];
+    firstChildLink = new int[capacity];
+    nextSiblingLink = new int[2 * capacity];
+    slotCount = 0;
+    horseCount = 0;
+  }
+
+  private void grow(int capacity) {
+    ids = Arrays.copyOf(ids, capacity);
+    sexes = Arrays.copyOf(sexes, capacity);
+    birthDays = Arrays.copyOf(birthDays, capacity);
+    parents = Arrays.copyOf(parents, 2 * capacity);
+    firstChildLink = Arrays.copyOf(firstChildLink, capacity);
+    nextSiblingLink = Arrays.copyOf(nextSiblingLink, 2 * capacity);
+  }
+
+  private long footprintBytes() {
+    return slots.footprintBytes()
+        + (long) ids.length * (Long.BYTES + 1 + Integer.BYTES * 6);
+  }
+
+  private static Sex toSex(byte sex) {
+    return sex == FEMALE ? Sex.FEMALE : Sex.MALE;
+  }
+
+  /**
+   * State of a breadth-first walk up from a single horse, one generation at a time.
+   * Every reached horse remembers the child it was reached through, so that a shortest path can be reconstructed.
+   */
+  private final class Ascent {
+    private final LongIntHashMap positions = new LongIntHashMap(64, NONE);
+    private int[] visited = new int[16];
+    private int[] via = new int[16];
+    private int[] generations = new int[16];
+    private int visitedSize;
+    private int frontierStart;
+    private int frontierSize;
+    private int generation;
+
+    private Ascent(int start) {
+      add(start, NONE, 0);
+      frontierSize = 1;
+    }
+
+    /**
+     * Visit the parents of all horses in the frontier, which then become the new frontier.
+     */
+    private void climb() {
+      int end = frontierStart + frontierSize;
+      int newStart = visitedSize;
+      generation++;
+      for (int position = frontierStart; position < end; position++) {
+        for (int link = 2 * visited[position]; link < 2 * visited[position] + 2; link++) {
+          int parent = parents[link];
+          if (parent != NONE && sexes[parent] != ABSENT && !positions.containsKey(parent)) {
+            add(parent, position, generation);
+          }
+        }
+      }
+      frontierStart = newStart;
+      frontierSize = visitedSize - newStart;
+    }
+
+    private void add(int slot, int viaPosition, int slotGeneration) {
+      if (visitedSize == visited.length) {
+        visited = Arrays.copyOf(visited, visitedSize * 2);
+        via = Arrays.copyOf(via, visitedSize * 2);
+        generations = Arrays.copyOf(generations, visitedSize * 2);
+      }
+      positions.put(slot, visitedSize);
+      visited[visitedSize] = slot;
+      via[visitedSize] = viaPosition;
+      generations[visitedSize] = slotGeneration;
+      visitedSize++;
+    }
+
+    /**
+     * Get the IDs on the path from the starting horse up to the horse at the given position.
+     */
+    private long[] pathTo(int position) {
+      long[] path = new long[generations[position] + 1];
+      for (int i = path.length - 1, current = position; i >= 0; i--, current = via[current]) {
+        path[i] = ids[visited[current]];
+      }
+      return path;
+    }
+  }
+
+  /**
+   * Acquire the read lock, loading the graph first if that has not happened yet.
+   */
+  private void readLock() {
+    if (!loaded) {
+      // checked again under the write lock, so that concurrent first readers load the graph only once
+      lock.writeLock().lock();
+      try {
+        if (!loaded) {
+          load();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    lock.readLock().lock();
+  }
+}
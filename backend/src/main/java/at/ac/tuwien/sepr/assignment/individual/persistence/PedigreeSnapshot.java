@@ -0,0 +1,81 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import at.ac.tuwien.sepr.assignment.individual.util.LongIntHashMap;
+
+/**
+ * Immutable excerpt of the {@link PedigreeGraph}: some horses together with their ancestors
+ * up to a bounded number of generations.
+ * Horses are addressed by a dense index, and every horse has a larger index than all of its ancestors,
+ * so that algorithms can walk the pedigree without locking and without looking up IDs.
+ * A snapshot can be shared between threads.
+ */
+public final class PedigreeSnapshot {
+  /**
+   * Returned instead of an index if there is no such horse in the snapshot.
+   */
+  public static final int NONE = -1;
+
+  private final long[] ids;
+  private final int[] femaleParents;
+  private final int[] maleParents;
+  private final LongIntHashMap indexes;
+
+  PedigreeSnapshot(long[] ids, int[] femaleParents, int[] maleParents) {
+    this.ids = ids;
+    this.femaleParents = femaleParents;
+    this.maleParents = maleParents;
+    this.indexes = new LongIntHashMap(ids.length, NONE);
+    for (int i = 0; i < ids.length; i++) {
+      indexes.put(ids[i], i);
+    }
+  }
+
+  /**
+   * Get the number of horses in the snapshot.
+   *
+   * @return the number of horses
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * Get the index of a horse in this snapshot.
+   *
+   * @param id the ID of the horse
+   * @return the index of the horse, or {@link #NONE} if it is not contained
+   */
+  public int indexOf(long id) {
+    return indexes.get(id);
+  }
+
+  /**
+   * Get the ID of the horse at the given index.
+   *
+   * @param index the index of the horse
+   * @return the ID of the horse
+   */
+  public long id(int index) {
+    return ids[index];
+  }
+
+  /**
+   * Get the index of the female parent of the horse at the given index.
+   *
+   * @param index the index of the horse
+   * @return the index of the female parent, or {@link #NONE} if it is unknown or outside the snapshot
+   */
+  public int femaleParent(int index) {
+    return femaleParents[index];
+  }
+
+  /**
+   * Get the index of the male parent of the horse at the given index.
+   *
+   * @param index the index of the horse
+   * @return the index of the male parent, or {@link #NONE} if it is unknown or outside the snapshot
+   */
+  public int maleParent(int index) {
+    return maleParents[index];
+  }
+}
@@ -0,0 +1,265 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.QueryShapeStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SlowQueryDto;
+
+/**
+ * Records how long the statements sent to the persistent data store take, and how many rows they return or change.
+ * The statements are aggregated by their {@link #shape shape}, i.e. their SQL without literals and with
+ * {@code IN} lists of any length folded into one, since e.g. horse searches build many variants of the same query.
+ *
+ * <p>
+ * Executions that take longer than the configured threshold are kept as slow queries, the latest ones first.
+ * Only their shape is exposed, since their parameters, or literals inlined into their SQL, may contain personal data;
+ * the SQL and the parameters are only used to capture the plan, in which string literals are masked as well.
+ * For each of them, the plan of the query is captured with H2's
+ * {@code EXPLAIN ANALYZE}, which runs the query again and reports the rows actually read.
+ * Since that doubles the cost of a slow query, it is done in the background, one query at a time,
+ * and skipped while too many slow queries are waiting for their plans.
+ * Statements that change data are only explained, without running them again.
+ * </p>
+ *
+ * <p>
+ * The shapes of the last distinct SQL strings are cached, so that the regular expressions
+ * reducing a statement to its shape do not run again on every execution.
+ * Statements are reported by the data source wrapped in {@code QueryRecordingDataSource}. This class is thread-safe.
+ * </p>
+ */
+@Component
+public class QueryRecorder {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+  private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+  private static final int MAX_CACHED_SHAPES = 4096;
+  private static final int MAX_PENDING_PLANS = 16;
+
+  private final long thresholdNanos;
+  private final int maxSlowQueries;
+  private final int maxShapes;
+  private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+  private final Map<String, String> shapesBySql = new ConcurrentHashMap<>();
+  private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+  private final ExecutorService explainer;
+
+  /**
+   * Constructs a new QueryRecorder.
+   *
+   * @param threshold the duration above which an execution is kept as a slow query
+   * @param maxSlowQueries the number of latest slow queries to keep
+   * @param maxShapes the maximum number of shapes to aggregate, further shapes are not recorded
+   */
+  public QueryRecorder(
+      @Value("${app.query-recording.slow-threshold:200ms}") Duration threshold,
+      @Value("${app.query-recording.max-slow-queries:50}") int maxSlowQueries,
+      @Value("${app.query-recording.max-shapes:1000}") int maxShapes) {
+    this.thresholdNanos = threshold.toNanos();
+    this.maxSlowQueries = maxSlowQueries;
+    this.maxShapes = maxShapes;
+    this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(MAX_PENDING_PLANS),
+        runnable -> {
+          Thread thread = new Thread(runnable, "query-explainer");
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.DiscardPolicy());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    explainer.shutdownNow();
+  }
+
+  /**
+   * Record an execution of a statement.
+   *
+   * @param sql the SQL of the statement, with {@code ?} placeholders for the parameters
+   * @param parameters the values of the parameters, in the order of the placeholders
+   * @param nanos the time the data store spent executing the statement and producing its rows
+   * @param rows the number of rows returned or changed
+   * @param dataSource the data source, not recording statements itself, to capture the plan of a slow query with
+   */
+  public void record(String sql, List<Object> parameters, long nanos, long rows, DataSource dataSource) {
+    String shape = cachedShape(sql);
+    ShapeStats stats = shapes.get(shape);
+    if (stats == null && shapes.size() < maxShapes) {
+      stats = shapes.computeIfAbsent(shape, s -> new ShapeStats());
+    }
+    if (stats != null) {
+      stats.executions.increment();
+      stats.rows.add(rows);
+      stats.nanos.add(nanos);
+      stats.maxNanos.accumulate(nanos);
+    }
+    if (nanos < thresholdNanos || maxSlowQueries <= 0) {
+      return;
+    }
+    LOG.warn("Slow query took {} ms for {} rows: {}", nanos / 1_000_000, rows, shape);
+    SlowQuery slowQuery = new SlowQuery(shape, Instant.now(), nanos, rows);
+    synchronized (slowQueries) {
+      slowQueries.addFirst(slowQuery);
+      while (slowQueries.size() > maxSlowQueries) {
+        slowQueries.removeLast();
+      }
+    }
+    String explain = explainStatement(sql);
+    if (explain != null) {
+      explainer.execute(() -> slowQuery.plan = plan(explain, parameters, dataSource));
+    }
+  }
+
+  /**
+   * Get the aggregated statistics of all recorded shapes.
+   *
+   * @return the statistics per shape, those with the most total time first
+   */
+  public List<QueryShapeStatsDto> shapeStats() {
+    return shapes.entrySet().stream()
+        .map(entry -> entry.getValue().toDto(entry.getKey()))
+        .sorted(Comparator.comparingDouble(QueryShapeStatsDto::totalMillis).reversed())
+        .toList();
+  }
+
+  /**
+   * Get the latest slow queries.
+   *
+   * @param limit the maximum number of slow queries to return
+   * @return the latest slow queries, the most recent first, with their plans as far as they were captured already
+   */
+  public List<SlowQueryDto> slowQueries(int limit) {
+    List<SlowQuery> latest;
+    synchronized (slowQueries) {
+      latest = slowQueries.stream().limit(limit).toList();
+    }
+    return latest.stream().map(SlowQuery::toDto).toList();
+  }
+
+  /**
+   * Reduce a statement to its shape, so that executions of the same statement with different values,
+   * or different numbers of values in an {@code IN} list, are aggregated together.
+   *
+   * @param sql the SQL of the statement
+   * @return the shape of the statement, with whitespace collapsed, literals replaced by {@code ?}
+   *     and lists of parameters replaced by {@code (?...)}
+   */
+  public static String shape(String sql) {
+    String shape = WHITESPACE.matcher(sql.strip()).replaceAll(" ");
+    shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+    shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+    return PARAMETER_LIST.matcher(shape).replaceAll("(?...)");
+  }
+
+  private String cachedShape(String sql) {
+    String shape = shapesBySql.get(sql);
+    if (shape == null) {
+      shape = shape(sql);
+      if (shapesBySql.size() >= MAX_CACHED_SHAPES) {
+        // statements with literals inlined could each be distinct, start over rather than keep all of them
+        shapesBySql.clear();
+      }
+      shapesBySql.put(sql, shape);
+    }
+    return shape;
+  }
+
+  /**
+   * Get the statement that yields the plan of a statement.
+   *
+   * @return the statement, or {@code null} if there is no plan for this kind of statement
+   */
+  private static String explainStatement(String sql) {
+    String start = sql.stripLeading();
+    String keyword = start.substring(0, Math.min(start.length(), 6)).toUpperCase(Locale.ROOT);
+    if (keyword.startsWith("SELECT") || keyword.startsWith("WITH")) {
+      return "EXPLAIN ANALYZE " + sql;
+    }
+    if (keyword.startsWith("INSERT") || keyword.startsWith("UPDATE") || keyword.startsWith("DELETE")
+        || keyword.startsWith("MERGE")) {
+      // analyzing would apply the change a second time
+      return "EXPLAIN " + sql;
+    }
+    return null;
+  }
+
+  private static String plan(String explain, List<Object> parameters, DataSource dataSource) {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement(explain)) {
+      for (int i = 0; i < parameters.size(); i++) {
+        statement.setObject(i + 1, parameters.get(i));
+      }
+      StringBuilder plan = new StringBuilder();
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          plan.append(rs.getString(1));
+        }
+      }
+      // the plan repeats the statement, so string literals are masked like in its shape
+      return STRING_LITERAL.matcher(plan).replaceAll("?");
+    } catch (SQLException | RuntimeException e) {
+      LOG.debug("Could not capture plan of slow query", e);
+      return "Plan not available: " + e.getMessage();
+    }
+  }
+
+  private static final class ShapeStats {
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private QueryShapeStatsDto toDto(String shape) {
+      return new QueryShapeStatsDto(shape, executions.sum(), rows.sum(), nanos.sum() / 1e6, maxNanos.get() / 1e6);
+    }
+  }
+
+  private static final class SlowQuery {
+    private final String shape;
+    private final Instant executedAt;
+    private final long nanos;
+    private final long rows;
+    private volatile String plan;
+
+    private SlowQuery(String shape, Instant executedAt, long nanos, long rows) {
+      this.shape = shape;
+      this.executedAt = executedAt;
+      this.nanos = nanos;
+      this.rows = rows;
+    }
+
+    private SlowQueryDto toDto() {
+      return new SlowQueryDto(shape, executedAt, nanos / 1e6, rows, plan);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.util.LongIntHashMap;
+import at.ac.tuwien.sepr.assignment.individual.util.PostingList;
+
+/**
+ * In-memory trigram index over the lower-cased names and descriptions of all stored horses,
+ * used to narrow down substring searches to a few candidate horses before querying the persistent data store.
+ *
+ * <p>
+ * For every sequence of three characters, the index holds a compressed {@link PostingList} of the horses
+ * whose text contains it. A text contains a search string only if it contains all trigrams of the search string,
+ * so intersecting their posting lists yields a superset of the matching horses.
+ * The candidates still have to be checked against the actual text.
+ * </p>
+ *
+ * <p>
+ * The index is loaded once the application is ready and kept in sync through {@link HorseChangedEvent}s.
+ * A change only touches the posting lists of the trigrams the changed horse gained or lost,
+ * which are found by comparing its texts before and after the change.
+ * Horses written past the {@link HorseDao} are not indexed, and so not found by substring searches,
+ * until the index is loaded again, e.g. by {@code POST /admin/ancestry/rebuild}.
+ * It is safe to use from multiple threads.
+ * </p>
+ */
+@Component
+public class TrigramIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String SQL_SELECT_TEXTS =
+      "SELECT id, name_lower, description_lower FROM horse ORDER BY id";
+
+  /**
+   * The texts of a horse that are indexed.
+   */
+  public enum Field {
+    NAME,
+    DESCRIPTION
+  }
+
+  private final JdbcClient jdbcClient;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile boolean loaded;
+  private FieldIndex names = new FieldIndex();
+  private FieldIndex descriptions = new FieldIndex();
+  private int horseCount;
+
+  public TrigramIndex(JdbcClient jdbcClient) {
+    this.jdbcClient = jdbcClient;
+  }
+
+  /**
+   * (Re-)build the whole index from the persistent data store.
+   * Called automatically once the application is ready.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    lock.writeLock().lock();
+    try {
+      final long start = System.nanoTime();
+      FieldIndex newNames = new FieldIndex();
+      FieldIndex newDescriptions = new FieldIndex();
+      int[] count = {0};
+      jdbcClient
+          .sql(SQL_SELECT_TEXTS)
+          .query((RowCallbackHandler) rs -> {
+            long id = rs.getLong("id");
+            newNames.add(id, rs.getString("name_lower"));
+            newDescriptions.add(id, rs.getString("description_lower"));
+            count[0]++;
+          });
+      newNames.compact();
+      newDescriptions.compact();
+      names = newNames;
+      descriptions = newDescriptions;
+      horseCount = count[0];
+      loaded = true;
+      LOG.info("Built trigram index over {} horses with {} name and {} description trigrams in {} ms, using about {} KiB",
+          horseCount, names.trigramCount(), descriptions.trigramCount(),
+          (System.nanoTime() - start) / 1_000_000,
+          (names.footprintBytes() + descriptions.footprintBytes()) / 1024);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Apply a change of a stored horse to the index.
+   *
+   * @param event the change that happened
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onHorseChanged(HorseChangedEvent event) {
+    // checked under the write lock, which a load in progress holds, so that the change waits for it
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        // the change will be contained once the index is loaded
+        return;
+      }
+      Horse previous = event.previous();
+      Horse horse = event.horse();
+      names.update(event.id(),
+          previous == null ? null : lowerCase(previous.name()),
+          horse == null ? null : lowerCase(horse.name()));
+      descriptions.update(event.id(),
+          previous == null ? null : lowerCase(previous.description()),
+          horse == null ? null : lowerCase(horse.description()));
+      if (event.type() == HorseChangedEvent.Type.CREATED) {
+        horseCount++;
+      } else if (event.type() == HorseChangedEvent.Type.DELETED) {
+        horseCount--;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Get the horses whose text in the given field may contain the given string.
+   * Every horse whose text does contain it is among the candidates, but not every candidate needs to match.
+   *
+   * @param field the field to search in
+   * @param text the string to search for, compared case-insensitively
+   * @param maxCandidates the number of candidates above which they are of no use to the caller
+   * @return the IDs of the candidates in ascending order, or {@code null} if the string is too short to narrow down
+   *     the candidates, or even its rarest trigram is contained in the texts of more than {@code maxCandidates} horses
+   */
+  public long[] candidates(Field field, String text, int maxCandidates) {
+    String lower = lowerCase(text);
+    if (lower == null || lower.length() < 3) {
+      return null;
+    }
+    if (!loaded) {
+      // checked again under the write lock, so that concurrent first searches load the index only once
+      lock.writeLock().lock();
+      try {
+        if (!loaded) {
+          load();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    lock.readLock().lock();
+    try {
+      return (field == Field.NAME ? names : descriptions).candidates(lower, maxCandidates);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static String lowerCase(String text) {
+    return text == null ? null : text.toLowerCase(Locale.ROOT);
+  }
+
+  private static long trigram(String text, int index) {
+    return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+  }
+
+  /**
+   * The posting lists of all trigrams of one field.
+   */
+  private static final class FieldIndex {
+    private static final int NONE = -1;
+    private static final long[] NO_TRIGRAMS = new long[0];
+
+    private final LongIntHashMap positions = new LongIntHashMap(4096, NONE);
+    private final List<PostingList> postings = new ArrayList<>();
+
+    private void add(long id, String text) {
+      if (text == null) {
+        return;
+      }
+      for (int i = 0; i + 3 <= text.length(); i++) {
+        post(trigram(text, i), id);
+      }
+    }
+
+    private void post(long trigram, long id) {
+      int position = positions.get(trigram);
+      if (position == NONE) {
+        position = postings.size();
+        positions.put(trigram, position);
+        postings.add(new PostingList());
+      }
+      postings.get(position).add(id);
+    }
+
+    /**
+     * Move a horse from the posting lists of the trigrams only its old text contains
+     * to those of the trigrams only its new text contains.
+     */
+    private void update(long id, String oldText, String newText) {
+      long[] oldTrigrams = trigrams(oldText);
+      long[] newTrigrams = trigrams(newText);
+      for (long trigram : oldTrigrams) {
+        int position = positions.get(trigram);
+        if (position != NONE && Arrays.binarySearch(newTrigrams, trigram) < 0) {
+          postings.get(position).remove(id);
+        }
+      }
+      for (long trigram : newTrigrams) {
+        if (Arrays.binarySearch(oldTrigrams, trigram) < 0) {
+          post(trigram, id);
+        }
+      }
+    }
+
+    private static long[] trigrams(String text) {
+      if (text == null || text.length() < 3) {
+        return NO_TRIGRAMS;
+      }
+      long[] trigrams = new long[text.length() - 2];
+      for (int i = 0; i < trigrams.length; i++) {
+        trigrams[i] = trigram(text, i);
+      }
+      return Arrays.stream(trigrams).sorted().distinct().toArray();
+    }
+
+    private long[] candidates(String text, int maxCandidates) {
+      // start with the rarest trigram, so that the intermediate results stay small
+      List<PostingList> lists = new ArrayList<>();
+      for (int i = 0; i + 3 <= text.length(); i++) {
+        int position = positions.get(trigram(text, i));
+        if (position == NONE) {
+          return new long[0];
+        }
+        lists.add(postings.get(position));
+      }
+      lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+      if (lists.getFirst().size() > maxCandidates) {
+        // the size is known without decoding the list, which would be wasted on a result of no use
+        return null;
+      }
+      long[] result = lists.getFirst().toArray();
+      for (int i = 1; i < lists.size() && result.length > 0; i++) {
+        result = PostingList.intersect(result, lists.get(i).toArray());
+      }
+      return result;
+    }
+
+    private void compact() {
+      postings.forEach(PostingList::compact);
+    }
+
+    private int trigramCount() {
+      return postings.size();
+    }
+
+    private long footprintBytes() {
+      return positions.footprintBytes() + postings.stream().mapToLong(PostingList::footprintBytes).sum();
+    }
+  }
+}
@@ -3,24 +3,49 @@ package at.ac.tuwien.sepr.assignment.individual.persistence.impl;
 import java.lang.invoke.MethodHandles;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseBatchEntry;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseChangedEvent;
 import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseFacetCount;
+import at.ac.tuwien.sepr.assignment.individual.persistence.TrigramIndex;
+import at.ac.tuwien.sepr.assignment.individual.type.HorseSort;
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import at.ac.tuwien.sepr.assignment.individual.util.PageCursor;
+import at.ac.tuwien.sepr.assignment.individual.util.PostingList;
 
 /**
  * JDBC implementation of {@link HorseDao} for interacting with the database.
@@ -34,9 +59,17 @@ public class HorseJdbcDao implements HorseDao {
   private static final String SQL_SELECT_ALL =
       "SELECT * FROM " + TABLE_NAME;
 
+  // images are left out, they are large and of no use outside the application
+  private static final String SQL_SELECT_ALL_WITHOUT_IMAGES =
+      "SELECT id, name, description, date_of_birth, sex, NULL AS image, owner_id, parent_female_id, parent_male_id"
+      + " FROM " + TABLE_NAME + " ORDER BY id";
+
   private static final String SQL_SELECT_BY_ID =
       "SELECT * FROM " + TABLE_NAME + " WHERE id = :id";
 
+  private static final String SQL_SELECT_ALL_BY_ID =
+      "SELECT * FROM " + TABLE_NAME + " WHERE id IN (:ids)";
+
   private static final String SQL_UPDATE =
       "UPDATE " + TABLE_NAME + " " 
       + 
@@ -51,13 +84,175 @@ public class HorseJdbcDao implements HorseDao {
           parent_male_id = :parent_male_id
       WHERE id = :id
       """;
-  
+
+  private static final String SQL_SELECT_FAMILY_TREE =
+      "SELECT h.* FROM " + TABLE_NAME + " h"
+      + " JOIN horse_ancestry a ON a.ancestor_id = h.id"
+      + " WHERE a.descendant_id = :id AND a.depth <= :generations";
+
+  // the state of a horse before it is changed, as published with the change
+  private static final String SQL_SELECT_PREVIOUS =
+      "SELECT id, name, description, date_of_birth, sex, NULL AS image, owner_id, parent_female_id, parent_male_id"
+      + " FROM " + TABLE_NAME + " WHERE id = :id";
+
+  private static final String SQL_IS_ANCESTOR =
+      "SELECT COUNT(*) FROM horse_ancestry WHERE ancestor_id = :ancestorId AND descendant_id = :id AND depth > 0";
+
+  private static final String SQL_COUNT_DESCENDANTS =
+      "SELECT COUNT(*) FROM horse_ancestry WHERE ancestor_id = :id AND depth > 0";
+
+  private static final String SQL_SELECT_SUBTREE =
+      "SELECT descendant_id FROM horse_ancestry WHERE ancestor_id = :id";
+
+  private static final String SQL_DELETE_ANCESTRY_OF =
+      "DELETE FROM horse_ancestry WHERE descendant_id IN (:ids)";
+
+  private static final String SQL_COUNT_MISSING_ANCESTRY =
+      "SELECT COUNT(*) FROM " + TABLE_NAME + " h"
+      + " WHERE NOT EXISTS (SELECT 1 FROM horse_ancestry a WHERE a.descendant_id = h.id AND a.ancestor_id = h.id)";
+
+  private static final String SQL_DELETE_ALL_ANCESTRY =
+      "DELETE FROM horse_ancestry";
+
+  /**
+   * Recomputes the ancestry of a set of horses that contains all of its members' descendants.
+   * The walk only climbs within the set; ancestors outside of it are looked up in their own stored ancestry,
+   * which does not depend on the set and is therefore still valid.
+   * No path in an acyclic family tree is longer than the number of horses, so the walk stops there,
+   * in case the stored parent links are cyclic.
+   */
+  private static final String SQL_INSERT_ANCESTRY_OF =
+      """
+      INSERT INTO horse_ancestry (ancestor_id, descendant_id, depth)
+      WITH RECURSIVE lineage(descendant_id, ancestor_id, depth) AS (
+        SELECT id, id, 0
+          FROM horse
+         WHERE id IN (:ids)
+        UNION
+        SELECT l.descendant_id, h.id, l.depth + 1
+          FROM lineage l
+          JOIN horse c ON c.id = l.ancestor_id
+          JOIN horse h ON h.id = c.parent_female_id OR h.id = c.parent_male_id
+         WHERE l.ancestor_id IN (:ids)
+           AND l.depth < (SELECT COUNT(*) FROM horse)
+      )
+      SELECT ancestor_id, descendant_id, MIN(depth)
+        FROM (SELECT l.ancestor_id, l.descendant_id, l.depth
+                FROM lineage l
+               WHERE l.ancestor_id IN (:ids)
+              UNION ALL
+              SELECT a.ancestor_id, l.descendant_id, l.depth + a.depth
+                FROM lineage l
+                JOIN horse_ancestry a ON a.descendant_id = l.ancestor_id
+               WHERE l.ancestor_id NOT IN (:ids)) paths
+       GROUP BY ancestor_id, descendant_id
+      """;
+
+  // the walk is bounded like the one above
+  private static final String SQL_INSERT_ALL_ANCESTRY =
+      """
+      INSERT INTO horse_ancestry (ancestor_id, descendant_id, depth)
+      WITH RECURSIVE lineage(descendant_id, ancestor_id, depth) AS (
+        SELECT id, id, 0
+          FROM horse
+        UNION
+        SELECT l.descendant_id, h.id, l.depth + 1
+          FROM lineage l
+          JOIN horse c ON c.id = l.ancestor_id
+          JOIN horse h ON h.id = c.parent_female_id OR h.id = c.parent_male_id
+         WHERE l.depth < (SELECT COUNT(*) FROM horse)
+      )
+      SELECT ancestor_id, descendant_id, MIN(depth)
+        FROM lineage
+       GROUP BY ancestor_id, descendant_id
+      """;
+
+  /**
+   * Horses that are their own ancestors, because their parent links, written past this DAO, form a cycle.
+   */
+  private static final String SQL_SELECT_CYCLIC =
+      "SELECT a.descendant_id FROM horse_ancestry a"
+      + " JOIN horse_ancestry b ON b.ancestor_id = a.descendant_id AND b.descendant_id = a.ancestor_id"
+      + " WHERE a.depth > 0"
+      + " UNION SELECT id FROM " + TABLE_NAME + " WHERE parent_female_id = id OR parent_male_id = id";
+
+  private static final String SQL_DELETE_CYCLIC_ANCESTRY =
+      "DELETE FROM horse_ancestry WHERE depth > 0 AND (ancestor_id IN (:ids) OR descendant_id IN (:ids))";
+
+  private static final String SQL_SELECT_OWNER_IDS_BY_NAME_PART =
+      "SELECT id FROM owner WHERE full_name_lower LIKE :ownerName ESCAPE '\\'";
+
+  /**
+   * Owners whose full name or last name starts with a pattern.
+   * A union rather than a disjunction, so that each branch can use the index on its column.
+   */
+  private static final String SQL_SELECT_OWNER_IDS_BY_NAME_PREFIX =
+      "SELECT id FROM owner WHERE full_name_lower LIKE :ownerName ESCAPE '\\'"
+      + " UNION SELECT id FROM owner WHERE last_name_lower LIKE :ownerName ESCAPE '\\'";
+
+  private static final String SQL_LOCK_PARENT_LINKS =
+      "SELECT id FROM parent_link_lock WHERE id = 1 FOR UPDATE";
+
+  private static final String SQL_INSERT =
+      "INSERT INTO " + TABLE_NAME
+      + " (name, description, date_of_birth, sex, image, owner_id, parent_female_id, parent_male_id)"
+      + " VALUES (:name, :description, :dateOfBirth, :sex, :image, :ownerId, :parentFemaleId, :parentMaleId)";
+
+  private static final String SQL_UPDATE_PARENTS =
+      "UPDATE " + TABLE_NAME + " SET parent_female_id = :parentFemaleId, parent_male_id = :parentMaleId WHERE id = :id";
+
+  // above this, an IN list costs more than it saves compared to scanning the lower-cased columns
+  private static final int MAX_PREFILTER_CANDIDATES = 10_000;
 
   private final JdbcClient jdbcClient;
+  private final JdbcClient streamingJdbcClient;
+  private final NamedParameterJdbcTemplate namedJdbcTemplate;
+  private final int batchSize;
+  private final ApplicationEventPublisher eventPublisher;
+  private final TrigramIndex trigramIndex;
 
+  /**
+   * Constructs a new HorseJdbcDao.
+   *
+   * @param jdbcClient the client for all queries whose results are read completely
+   * @param jdbcTemplate the template whose data source is used for streamed queries
+   * @param streamingFetchSize the number of rows fetched from the database at once when streaming results
+   * @param batchSize the number of rows sent to the database at once when creating many horses
+   * @param eventPublisher the publisher of changes to horses
+   * @param trigramIndex the index used to narrow down substring searches
+   */
   @Autowired
-  public HorseJdbcDao(JdbcClient jdbcClient) {
+  public HorseJdbcDao(JdbcClient jdbcClient,
+                      JdbcTemplate jdbcTemplate,
+                      @Value("${app.streaming.fetch-size:1000}") int streamingFetchSize,
+                      @Value("${app.batch.jdbc-batch-size:500}") int batchSize,
+                      ApplicationEventPublisher eventPublisher,
+                      TrigramIndex trigramIndex) {
     this.jdbcClient = jdbcClient;
+    // a separate template, so that the fetch size only applies to results that are streamed
+    JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    streamingTemplate.setFetchSize(streamingFetchSize);
+    this.streamingJdbcClient = JdbcClient.create(streamingTemplate);
+    this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    this.batchSize = batchSize;
+    this.eventPublisher = eventPublisher;
+    this.trigramIndex = trigramIndex;
+  }
+
+  /**
+   * Build the stored ancestry on startup, if there are horses without it,
+   * e.g. because the database was created before the ancestry was introduced.
+   */
+  @PostConstruct
+  public void rebuildAncestryIfIncomplete() {
+    long missing = jdbcClient
+        .sql(SQL_COUNT_MISSING_ANCESTRY)
+        .query(Long.class)
+        .single();
+    if (missing > 0) {
+      LOG.info("Ancestry of {} horses is missing, rebuilding it", missing);
+      rebuildAncestry();
+    }
   }
 
   @Override
@@ -69,6 +264,15 @@ public class HorseJdbcDao implements HorseDao {
         .list();
   }
 
+  @Override
+  public Stream<Horse> streamAll() {
+    LOG.trace("streamAll()");
+    return streamingJdbcClient
+        .sql(SQL_SELECT_ALL_WITHOUT_IMAGES)
+        .query(this::mapRow)
+        .stream();
+  }
+
   @Override
   public Horse getById(long id) throws NotFoundException {
     LOG.trace("getById({})", id);
@@ -90,8 +294,159 @@ public class HorseJdbcDao implements HorseDao {
   }
 
   @Override
-  public Horse update(HorseUpdateDto horse) throws NotFoundException {
+  public List<Horse> getAllById(Collection<Long> ids) {
+    LOG.trace("getAllById({})", ids);
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    return jdbcClient
+        .sql(SQL_SELECT_ALL_BY_ID)
+        .param("ids", ids)
+        .query(this::mapRow)
+        .list();
+  }
+
+  @Override
+  public List<Horse> getFamilyTree(long id, int generations) throws NotFoundException {
+    LOG.trace("getFamilyTree({}, {})", id, generations);
+    List<Horse> horses = jdbcClient
+        .sql(SQL_SELECT_FAMILY_TREE)
+        .param("id", id)
+        .param("generations", generations)
+        .query(this::mapRow)
+        .list();
+
+    if (horses.isEmpty()) {
+      throw new NotFoundException("No horse with ID %d found".formatted(id));
+    }
+    return horses;
+  }
+
+  @Override
+  public boolean isAncestor(long ancestorId, long id) {
+    LOG.trace("isAncestor({}, {})", ancestorId, id);
+    return jdbcClient
+        .sql(SQL_IS_ANCESTOR)
+        .param("ancestorId", ancestorId)
+        .param("id", id)
+        .query(Long.class)
+        .single() > 0;
+  }
+
+  @Override
+  public long countDescendants(long id) {
+    LOG.trace("countDescendants({})", id);
+    return jdbcClient
+        .sql(SQL_COUNT_DESCENDANTS)
+        .param("id", id)
+        .query(Long.class)
+        .single();
+  }
+
+  @Override
+  @Transactional
+  public int rebuildAncestry() {
+    LOG.trace("rebuildAncestry()");
+    final long start = System.nanoTime();
+    jdbcClient.sql(SQL_DELETE_ALL_ANCESTRY).update();
+    int pairs = jdbcClient.sql(SQL_INSERT_ALL_ANCESTRY).update();
+    List<Long> cyclic = jdbcClient
+        .sql(SQL_SELECT_CYCLIC)
+        .query(Long.class)
+        .list();
+    if (!cyclic.isEmpty()) {
+      // their ancestry is meaningless, so they are kept out of everyone's ancestry but their own
+      LOG.warn("Parent links of horses {} are cyclic, leaving them out of the ancestry", cyclic);
+      pairs -= jdbcClient
+          .sql(SQL_DELETE_CYCLIC_ANCESTRY)
+          .param("ids", cyclic)
+          .update();
+    }
+    LOG.info("Rebuilt ancestry with {} ancestor-descendant pairs in {} ms", pairs, (System.nanoTime() - start) / 1_000_000);
+    return pairs;
+  }
+
+  /**
+   * Recompute the stored ancestry of a horse and all of its descendants, after its parent links changed.
+   *
+   * @param subtree the IDs of the horse and all of its descendants
+   */
+  private void refreshAncestry(Collection<Long> subtree) {
+    jdbcClient
+        .sql(SQL_DELETE_ANCESTRY_OF)
+        .param("ids", subtree)
+        .update();
+    jdbcClient
+        .sql(SQL_INSERT_ANCESTRY_OF)
+        .param("ids", subtree)
+        .update();
+  }
+
+  private List<Long> subtreeOf(long id) {
+    List<Long> subtree = jdbcClient
+        .sql(SQL_SELECT_SUBTREE)
+        .param("id", id)
+        .query(Long.class)
+        .list();
+    return subtree.isEmpty() ? List.of(id) : subtree;
+  }
+
+  /**
+   * Serialize writes that change parent links until the current transaction completes,
+   * so that each of them sees the ancestry committed by the previous one.
+   * The lock is a row of the database, so that it also holds against other processes sharing the database.
+   */
+  private void lockParentLinks() {
+    List<Integer> locked = jdbcClient
+        .sql(SQL_LOCK_PARENT_LINKS)
+        .query(Integer.class)
+        .list();
+    if (locked.isEmpty()) {
+      throw new FatalException("Row locking changes of parent links is missing from the database");
+    }
+  }
+
+  /**
+   * Check new parents of a horse against the stored ancestry, so that concurrent updates,
+   * which each passed the in-memory check, can not commit a cycle together.
+   *
+   * @throws ConflictException if a parent is the horse itself or one of its descendants
+   */
+  private void checkNoCycle(long id, Long... parentIds) throws ConflictException {
+    List<String> conflicts = new ArrayList<>();
+    for (Long parentId : parentIds) {
+      if (parentId != null && (parentId == id || isAncestor(id, parentId))) {
+        conflicts.add("Parent %d is the horse itself or one of its descendants".formatted(parentId));
+      }
+    }
+    if (!conflicts.isEmpty()) {
+      throw new ConflictException("Parents of horse conflict with the family tree", conflicts);
+    }
+  }
+
+  @Override
+  @Transactional
+  public Horse update(HorseUpdateDto horse) throws NotFoundException, ConflictException {
     LOG.trace("update({})", horse);
+    List<Horse> previous = jdbcClient
+        .sql(SQL_SELECT_PREVIOUS)
+        .param("id", horse.id())
+        .query(this::mapRow)
+        .list();
+    if (previous.isEmpty()) {
+      throw new NotFoundException(
+          "Could not update horse with ID " + horse.id() + ", because it does not exist"
+      );
+    }
+    final Horse previousHorse = previous.getFirst();
+    final boolean parentsChanged = !Objects.equals(previousHorse.parentFemaleId(), horse.parentFemaleId())
+        || !Objects.equals(previousHorse.parentMaleId(), horse.parentMaleId());
+    if (parentsChanged) {
+      lockParentLinks();
+      checkNoCycle(horse.id(),
+          Objects.equals(previousHorse.parentFemaleId(), horse.parentFemaleId()) ? null : horse.parentFemaleId(),
+          Objects.equals(previousHorse.parentMaleId(), horse.parentMaleId()) ? null : horse.parentMaleId());
+    }
     int updated = jdbcClient
         .sql(SQL_UPDATE)
         .param("id", horse.id())
@@ -110,8 +465,11 @@ public class HorseJdbcDao implements HorseDao {
           "Could not update horse with ID " + horse.id() + ", because it does not exist"
       );
     }
+    if (parentsChanged) {
+      refreshAncestry(subtreeOf(horse.id()));
+    }
 
-    return new Horse(
+    Horse updatedHorse = new Horse(
         horse.id(),
         horse.name(),
         horse.description(),
@@ -122,6 +480,8 @@ public class HorseJdbcDao implements HorseDao {
         horse.parentFemaleId(),
         horse.parentMaleId()
     );
+    eventPublisher.publishEvent(HorseChangedEvent.updated(previousHorse, updatedHorse));
+    return updatedHorse;
   }
 
   private Horse mapRow(ResultSet result, int rownum) throws SQLException {
@@ -139,33 +499,33 @@ public class HorseJdbcDao implements HorseDao {
   }
 
   @Override
+  @Transactional
   public Horse create(HorseCreateDto horseCreateDto) throws NotFoundException {
-    String sqlInsert = "INSERT INTO " + TABLE_NAME 
-                       +
-                       " (name, description, date_of_birth, sex, image, owner_id, parent_female_id, parent_male_id) " 
-                       +
-                       "VALUES (:name, :description, :date_of_birth, :sex, :image, :owner_id, :parent_female_id, :parent_male_id)";
-    
+    KeyHolder keyHolder = new GeneratedKeyHolder();
     int updated = jdbcClient
-        .sql(sqlInsert)
+        .sql(SQL_INSERT)
         .param("name", horseCreateDto.name())
         .param("description", horseCreateDto.description())
-        .param("date_of_birth", horseCreateDto.dateOfBirth())
+        .param("dateOfBirth", horseCreateDto.dateOfBirth())
         .param("sex", horseCreateDto.sex().toString())
         .param("image", horseCreateDto.image())
-        .param("owner_id", horseCreateDto.ownerId())
-        .param("parent_female_id", horseCreateDto.parentFemaleId())
-        .param("parent_male_id", horseCreateDto.parentMaleId())
-        .update();
+        .param("ownerId", horseCreateDto.ownerId())
+        .param("parentFemaleId", horseCreateDto.parentFemaleId())
+        .param("parentMaleId", horseCreateDto.parentMaleId())
+        .update(keyHolder, "id");
     
     if (updated == 0) {
       throw new NotFoundException("Failed to create horse. No rows affected.");
     }
     
-    long generatedId = 0; // Dummy Value
+    Number generatedId = keyHolder.getKey();
+    if (generatedId == null) {
+      throw new FatalException("Database did not return an ID for the created horse");
+    }
+    refreshAncestry(List.of(generatedId.longValue()));
     
-    return new Horse(
-        generatedId,
+    Horse createdHorse = new Horse(
+        generatedId.longValue(),
         horseCreateDto.name(),
         horseCreateDto.description(),
         horseCreateDto.dateOfBirth(),
@@ -175,10 +535,100 @@ public class HorseJdbcDao implements HorseDao {
         horseCreateDto.parentFemaleId(),
         horseCreateDto.parentMaleId()
     );
+    eventPublisher.publishEvent(HorseChangedEvent.created(createdHorse));
+    return createdHorse;
   }
 
   @Override
+  @Transactional
+  public List<Horse> createAll(List<HorseBatchEntry> entries) {
+    LOG.trace("createAll({} horses)", entries.size());
+    final long start = System.nanoTime();
+    long[] ids = new long[entries.size()];
+    List<Horse> created = new ArrayList<>(entries.size());
+    for (int from = 0; from < entries.size(); from += batchSize) {
+      int to = Math.min(from + batchSize, entries.size());
+      SqlParameterSource[] rows = new SqlParameterSource[to - from];
+      for (int i = from; i < to; i++) {
+        HorseCreateDto horse = entries.get(i).horse();
+        // parents in the same JDBC batch get their IDs only with it, so they are linked afterwards
+        rows[i - from] = new MapSqlParameterSource()
+            .addValue("name", horse.name())
+            .addValue("description", horse.description())
+            .addValue("dateOfBirth", horse.dateOfBirth())
+            .addValue("sex", horse.sex().toString())
+            .addValue("image", horse.image())
+            .addValue("ownerId", horse.ownerId())
+            .addValue("parentFemaleId", parentId(entries.get(i).parentFemaleIndex(), horse.parentFemaleId(), ids, from))
+            .addValue("parentMaleId", parentId(entries.get(i).parentMaleIndex(), horse.parentMaleId(), ids, from));
+      }
+      KeyHolder keyHolder = new GeneratedKeyHolder();
+      namedJdbcTemplate.batchUpdate(SQL_INSERT, rows, keyHolder, new String[] {"id"});
+      List<Map<String, Object>> keys = keyHolder.getKeyList();
+      if (keys.size() != rows.length) {
+        throw new FatalException("Database returned %d IDs for %d created horses".formatted(keys.size(), rows.length));
+      }
+      for (int i = from; i < to; i++) {
+        ids[i] = ((Number) keys.get(i - from).values().iterator().next()).longValue();
+      }
+
+      List<SqlParameterSource> links = new ArrayList<>();
+      List<Long> chunkIds = new ArrayList<>(to - from);
+      for (int i = from; i < to; i++) {
+        HorseBatchEntry entry = entries.get(i);
+        HorseCreateDto horse = entry.horse();
+        Long parentFemaleId = parentId(entry.parentFemaleIndex(), horse.parentFemaleId(), ids, to);
+        Long parentMaleId = parentId(entry.parentMaleIndex(), horse.parentMaleId(), ids, to);
+        if (entry.parentFemaleIndex() >= from || entry.parentMaleIndex() >= from) {
+          links.add(new MapSqlParameterSource()
+              .addValue("id", ids[i])
+              .addValue("parentFemaleId", parentFemaleId)
+              .addValue("parentMaleId", parentMaleId));
+        }
+        chunkIds.add(ids[i]);
+        created.add(new Horse(ids[i], horse.name(), horse.description(), horse.dateOfBirth(), horse.sex(),
+            horse.image(), horse.ownerId(), parentFemaleId, parentMaleId));
+      }
+      if (!links.isEmpty()) {
+        namedJdbcTemplate.batchUpdate(SQL_UPDATE_PARENTS, links.toArray(new SqlParameterSource[0]));
+      }
+      // the ancestors in earlier chunks already have their ancestry stored
+      refreshAncestry(chunkIds);
+    }
+    created.forEach(horse -> eventPublisher.publishEvent(HorseChangedEvent.created(horse)));
+    LOG.info("Created {} horses in JDBC batches of {} in {} ms",
+        entries.size(), batchSize, (System.nanoTime() - start) / 1_000_000);
+    return created;
+  }
+
+  /**
+   * Get the ID of a parent of a horse created in a batch.
+   *
+   * @param index the position of the parent in the batch, or {@link HorseBatchEntry#NONE}
+   * @param id the ID of the parent, if it is not created in the batch
+   * @param ids the IDs generated so far, by position in the batch
+   * @param known the number of positions whose IDs have been generated already
+   * @return the ID of the parent, or {@code null} if there is none, or it is not known yet
+   */
+  private static Long parentId(int index, Long id, long[] ids, int known) {
+    if (index == HorseBatchEntry.NONE) {
+      return id;
+    }
+    return index < known ? ids[index] : null;
+  }
+
+  @Override
+  @Transactional
   public void delete(long id) throws NotFoundException {
+    List<Horse> previous = jdbcClient
+        .sql(SQL_SELECT_PREVIOUS)
+        .param("id", id)
+        .query(this::mapRow)
+        .list();
+    if (previous.isEmpty()) {
+      throw new NotFoundException("No horse with ID " + id + " found for deletion.");
+    }
+    List<Long> subtree = subtreeOf(id);
     String sqlDelete = "DELETE FROM " + TABLE_NAME + " WHERE id = :id";
     int affectedRows = jdbcClient
         .sql(sqlDelete)
@@ -187,20 +637,115 @@ public class HorseJdbcDao implements HorseDao {
     if (affectedRows == 0) {
       throw new NotFoundException("No horse with ID " + id + " found for deletion.");
     }
+    // the descendants lose all ancestors they had through the deleted horse
+    refreshAncestry(subtree);
+    eventPublisher.publishEvent(HorseChangedEvent.deleted(previous.getFirst()));
   }
 
   @Override
   public List<Horse> search(HorseSearchDto criteria) {
-    StringBuilder sql = new StringBuilder("SELECT * FROM " + TABLE_NAME + " WHERE 1=1");
     Map<String, Object> params = new HashMap<>();
+    String sql = searchQuery("*", criteria, params);
+    LOG.debug("Executing search query: {} with params: {}", sql, params);
+    return jdbcClient
+        .sql(sql)
+        .params(params)
+        .query(this::mapRow)
+        .list();
+  }
+
+  @Override
+  public List<Long> searchIds(HorseSearchDto criteria) {
+    Map<String, Object> params = new HashMap<>();
+    String sql = searchQuery("id", criteria, params);
+    LOG.debug("Executing search query: {} with params: {}", sql, params);
+    return jdbcClient
+        .sql(sql)
+        .params(params)
+        .query(Long.class)
+        .list();
+  }
 
+  @Override
+  public Stream<Horse> streamSearch(HorseSearchDto criteria) {
+    Map<String, Object> params = new HashMap<>();
+    String sql = searchQuery("*", criteria, params);
+    LOG.debug("Streaming search query: {} with params: {}", sql, params);
+    return streamingJdbcClient
+        .sql(sql)
+        .params(params)
+        .query(this::mapRow)
+        .stream();
+  }
+
+  @Override
+  public List<HorseFacetCount> countFacets(HorseSearchDto criteria) {
+    Map<String, Object> params = new HashMap<>();
+    // one row per value of each facet, rather than one per combination of the three;
+    // H2 does not support GROUPING SETS, so the three groupings are united in a single statement
+    StringBuilder conditions = new StringBuilder();
+    appendSearchConditions(criteria, conditions, params);
+    String sql = Arrays.stream(HorseFacetCount.Facet.values())
+        .map(facet -> {
+          String column = switch (facet) {
+            case SEX -> "sex";
+            case BIRTH_YEAR -> "EXTRACT(YEAR FROM date_of_birth)";
+            case OWNER -> "owner_id";
+          };
+          return "SELECT '" + facet.name() + "' AS facet, CAST(" + column + " AS VARCHAR) AS facet_value,"
+              + " COUNT(*) AS horse_count FROM " + TABLE_NAME + conditions + " GROUP BY " + column;
+        })
+        .collect(Collectors.joining(" UNION ALL "));
+    LOG.debug("Executing facet query: {} with params: {}", sql, params);
+    return jdbcClient
+        .sql(sql)
+        .params(params)
+        .query((rs, rowNum) -> {
+          HorseFacetCount.Facet facet = HorseFacetCount.Facet.valueOf(rs.getString("facet"));
+          String value = rs.getString("facet_value");
+          long count = rs.getLong("horse_count");
+          return switch (facet) {
+            case SEX -> new HorseFacetCount(facet, Sex.valueOf(value), null, null, count);
+            case BIRTH_YEAR -> new HorseFacetCount(facet, null, Integer.valueOf(value), null, count);
+            // null for the horses without owner
+            case OWNER -> new HorseFacetCount(facet, null, null, value == null ? null : Long.valueOf(value), count);
+          };
+        })
+        .list();
+  }
+
+  /**
+   * Build the query for a search, and collect its parameters.
+   */
+  private String searchQuery(String columns, HorseSearchDto criteria, Map<String, Object> params) {
+    StringBuilder sql = new StringBuilder("SELECT " + columns + " FROM " + TABLE_NAME);
+    appendSearchConditions(criteria, sql, params);
+    appendPaging(criteria, sql, params);
+    return sql.toString();
+  }
+
+  /**
+   * Append the filter conditions of a search, ignoring its order and paging, and collect their parameters.
+   */
+  private void appendSearchConditions(HorseSearchDto criteria, StringBuilder sql, Map<String, Object> params) {
+    sql.append(" WHERE 1=1");
+    if (criteria.substringMatch()) {
+      long[] candidates = substringCandidates(criteria);
+      if (candidates != null && candidates.length == 0) {
+        // no horse contains a trigram of the search, which H2 answers without reading any row
+        sql.append(" AND 1=0");
+      } else if (candidates != null && candidates.length <= MAX_PREFILTER_CANDIDATES) {
+        sql.append(" AND id IN (:candidates)");
+        params.put("candidates", Arrays.stream(candidates).boxed().toList());
+      }
+    }
     if (criteria.name() != null && !criteria.name().isBlank()) {
-      sql.append(" AND LOWER(name) LIKE :name");
-      params.put("name", "%" + criteria.name().toLowerCase() + "%");
+      sql.append(" AND name_lower LIKE :name ESCAPE '\\'");
+      params.put("name", SqlPatterns.like(criteria.name(), criteria.substringMatch()));
     }
     if (criteria.description() != null && !criteria.description().isBlank()) {
-      sql.append(" AND LOWER(description) LIKE :description");
-      params.put("description", "%" + criteria.description().toLowerCase() + "%");
+      sql.append(" AND description_lower LIKE :description ESCAPE '\\'");
+      params.put("description", SqlPatterns.like(criteria.description(), criteria.substringMatch()));
     }
     if (criteria.bornBefore() != null) {
       sql.append(" AND date_of_birth < :bornBefore");
@@ -210,20 +755,68 @@ public class HorseJdbcDao implements HorseDao {
       sql.append(" AND sex = :sex");
       params.put("sex", criteria.sex().toString());
     }
+    if (criteria.parentFemaleId() != null) {
+      sql.append(" AND parent_female_id = :parentFemaleId");
+      params.put("parentFemaleId", criteria.parentFemaleId());
+    }
+    if (criteria.parentMaleId() != null) {
+      sql.append(" AND parent_male_id = :parentMaleId");
+      params.put("parentMaleId", criteria.parentMaleId());
+    }
     if (criteria.ownerName() != null && !criteria.ownerName().isBlank()) {
-      sql.append(" AND owner_id IN (SELECT id FROM owner WHERE LOWER(first_name || ' ' || last_name) LIKE :ownerName)");
-      params.put("ownerName", "%" + criteria.ownerName().toLowerCase() + "%");
+      // semi-join from the matching owners to their horses; owners matched by prefix are found in the name indexes
+      sql.append(" AND owner_id IN (")
+          .append(criteria.ownerPrefixMatch() ? SQL_SELECT_OWNER_IDS_BY_NAME_PREFIX : SQL_SELECT_OWNER_IDS_BY_NAME_PART)
+          .append(")");
+      params.put("ownerName", SqlPatterns.like(criteria.ownerName().strip(), !criteria.ownerPrefixMatch()));
+    }
+  }
+
+  /**
+   * Append the cursor condition, the order and the limit of a search, and collect their parameters.
+   */
+  private void appendPaging(HorseSearchDto criteria, StringBuilder sql, Map<String, Object> params) {
+    HorseSort sort = criteria.sortOrDefault();
+    String sortColumn = switch (sort) {
+      case ID -> "id";
+      case NAME -> "name_lower";
+      case DATE_OF_BIRTH -> "date_of_birth";
+    };
+    if (criteria.cursor() != null) {
+      // keyset paging: continue right after the last horse of the previous page
+      PageCursor cursor = PageCursor.decode(criteria.cursor(), sort.name());
+      params.put("lastId", cursor.id());
+      if (sort == HorseSort.ID) {
+        sql.append(" AND id > :lastId");
+      } else {
+        // the redundant first condition lets the range start in the index on the sort column
+        sql.append(" AND ").append(sortColumn).append(" >= :lastKey")
+            .append(" AND (").append(sortColumn).append(", id) > (:lastKey, :lastId)");
+        params.put("lastKey", sort == HorseSort.DATE_OF_BIRTH ? LocalDate.parse(cursor.key()) : cursor.key());
+      }
     }
+    sql.append(sort == HorseSort.ID ? " ORDER BY id" : " ORDER BY " + sortColumn + ", id");
     if (criteria.limit() != null) {
       sql.append(" LIMIT :limit");
       params.put("limit", criteria.limit());
     }
+  }
 
-    LOG.debug("Executing search query: {} with params: {}", sql, params);
-    return jdbcClient
-        .sql(sql.toString())
-        .params(params)
-        .query(this::mapRow)
-        .list();
+  /**
+   * Narrow down the horses that may match the name and description of a substring search, using the trigram index.
+   *
+   * @return the IDs of the candidates, or {@code null} if the index can not narrow them down
+   */
+  private long[] substringCandidates(HorseSearchDto criteria) {
+    long[] byName = criteria.name() == null || criteria.name().isBlank()
+        ? null
+        : trigramIndex.candidates(TrigramIndex.Field.NAME, criteria.name(), MAX_PREFILTER_CANDIDATES);
+    long[] byDescription = criteria.description() == null || criteria.description().isBlank()
+        ? null
+        : trigramIndex.candidates(TrigramIndex.Field.DESCRIPTION, criteria.description(), MAX_PREFILTER_CANDIDATES);
+    if (byName == null || byDescription == null) {
+      return byName == null ? byDescription : byName;
+    }
+    return PostingList.intersect(byName, byDescription);
   }
 }
\ No newline at end of file
@@ -7,11 +7,17 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
@@ -19,7 +25,10 @@ import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
 import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerChangedEvent;
 import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
+import at.ac.tuwien.sepr.assignment.individual.type.OwnerSort;
+import at.ac.tuwien.sepr.assignment.individual.util.PageCursor;
 
 /**
  * JDBC implementation of {@link OwnerDao} for interacting with the database.
@@ -36,18 +45,50 @@ public class OwnerJdbcDao implements OwnerDao {
       "SELECT * FROM " + TABLE_NAME
           + " WHERE id IN (:ids)";
 
-  private static final String SQL_SELECT_SEARCH =
+  private static final String SQL_SELECT_ALL_ORDERED =
       "SELECT * FROM " + TABLE_NAME
-          + " WHERE UPPER(first_name || ' ' || last_name) LIKE UPPER('%%' || COALESCE(:name, '') || '%%')";
+          + " ORDER BY id";
+
+  private static final String SQL_SELECT_SEARCH =
+      "SELECT * FROM " + TABLE_NAME + " WHERE 1=1";
+
+  private static final String SQL_NAME_CONDITION =
+      " AND full_name_lower LIKE :name ESCAPE '\\'";
+
+  /**
+   * Owners whose full name or last name starts with a pattern.
+   * A union rather than a disjunction, so that each branch can use the index on its column.
+   */
+  private static final String SQL_NAME_PREFIX_CONDITION =
+      " AND id IN (SELECT id FROM " + TABLE_NAME + " WHERE full_name_lower LIKE :name ESCAPE '\\'"
+          + " UNION SELECT id FROM " + TABLE_NAME + " WHERE last_name_lower LIKE :name ESCAPE '\\')";
 
   private static final String SQL_SELECT_SEARCH_LIMIT_CLAUSE = " LIMIT :limit";
 
 
   private final JdbcClient jdbcClient;
-
+  private final JdbcClient streamingJdbcClient;
+  private final ApplicationEventPublisher eventPublisher;
+
+  /**
+   * Constructs a new OwnerJdbcDao.
+   *
+   * @param jdbcClient the client for all queries whose results are read completely
+   * @param jdbcTemplate the template whose data source is used for streamed queries
+   * @param streamingFetchSize the number of rows fetched from the database at once when streaming results
+   * @param eventPublisher the publisher of changes to owners
+   */
   @Autowired
-  public OwnerJdbcDao(JdbcClient jdbcClient) {
+  public OwnerJdbcDao(JdbcClient jdbcClient,
+                      JdbcTemplate jdbcTemplate,
+                      @Value("${app.streaming.fetch-size:1000}") int streamingFetchSize,
+                      ApplicationEventPublisher eventPublisher) {
     this.jdbcClient = jdbcClient;
+    // a separate template, so that the fetch size only applies to results that are streamed
+    JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+    streamingTemplate.setFetchSize(streamingFetchSize);
+    this.streamingJdbcClient = JdbcClient.create(streamingTemplate);
+    this.eventPublisher = eventPublisher;
   }
 
   @Override
@@ -80,21 +121,49 @@ public class OwnerJdbcDao implements OwnerDao {
   }
 
   @Override
-  public Collection<Owner> search(OwnerSearchDto searchParameters) {
+  public Stream<Owner> streamAll() {
+    LOG.trace("streamAll()");
+    return streamingJdbcClient
+        .sql(SQL_SELECT_ALL_ORDERED)
+        .query(this::mapRow)
+        .stream();
+  }
+
+  @Override
+  public List<Owner> search(OwnerSearchDto searchParameters) {
     LOG.trace("search({})", searchParameters);
-    var query = SQL_SELECT_SEARCH;
+    var query = new StringBuilder(SQL_SELECT_SEARCH);
 
     Map<String, Object> params = new HashMap<>();
-    params.put("name", searchParameters.name());
+    if (searchParameters.name() != null && !searchParameters.name().isBlank()) {
+      // the last name is part of the full name, so it need not be searched for a substring separately
+      query.append(searchParameters.prefixMatch() ? SQL_NAME_PREFIX_CONDITION : SQL_NAME_CONDITION);
+      params.put("name", SqlPatterns.like(searchParameters.name().strip(), !searchParameters.prefixMatch()));
+    }
+
+    OwnerSort sort = searchParameters.sortOrDefault();
+    if (searchParameters.cursor() != null) {
+      // keyset paging: continue right after the last owner of the previous page
+      PageCursor cursor = PageCursor.decode(searchParameters.cursor(), sort.name());
+      params.put("lastId", cursor.id());
+      if (sort == OwnerSort.ID) {
+        query.append(" AND id > :lastId");
+      } else {
+        // the redundant first condition lets the range start in the index on the full name
+        query.append(" AND full_name_lower >= :lastKey AND (full_name_lower, id) > (:lastKey, :lastId)");
+        params.put("lastKey", cursor.key());
+      }
+    }
+    query.append(sort == OwnerSort.ID ? " ORDER BY id" : " ORDER BY full_name_lower, id");
 
     var maxAmount = searchParameters.maxAmount();
     if (maxAmount != null) {
-      query += SQL_SELECT_SEARCH_LIMIT_CLAUSE;
+      query.append(SQL_SELECT_SEARCH_LIMIT_CLAUSE);
       params.put("limit", maxAmount);
     }
 
     return jdbcClient
-        .sql(query)
+        .sql(query.toString())
         .params(params)
         .query(this::mapRow)
         .list();
@@ -117,18 +186,24 @@ public class OwnerJdbcDao implements OwnerDao {
 
   @Override
   public Owner create(OwnerCreateDto dto) {
+    KeyHolder keyHolder = new GeneratedKeyHolder();
     int updated = jdbcClient
         .sql(SQL_INSERT)
         .param("firstName", dto.firstName())
         .param("lastName", dto.lastName())
         .param("email", dto.email())
         .param("description", dto.description())
-        .update();
+        .update(keyHolder, "id");
     if (updated == 0) {
       throw new RuntimeException("Failed to create owner");
     }
-    long generatedId = 0; 
-    return new Owner(generatedId, dto.firstName(), dto.lastName(), dto.email(), dto.description());
+    Number generatedId = keyHolder.getKey();
+    if (generatedId == null) {
+      throw new FatalException("Database did not return an ID for the created owner");
+    }
+    Owner created = new Owner(generatedId.longValue(), dto.firstName(), dto.lastName(), dto.email(), dto.description());
+    eventPublisher.publishEvent(OwnerChangedEvent.created(created));
+    return created;
   }
 
   private static final String SQL_DELETE = "DELETE FROM " + TABLE_NAME + " WHERE id = :id";
@@ -142,5 +217,6 @@ public class OwnerJdbcDao implements OwnerDao {
     if (affected == 0) {
       throw new NotFoundException("Owner with ID " + id + " not found for deletion.");
     }
+    eventPublisher.publishEvent(OwnerChangedEvent.deleted(id));
   }  
 }
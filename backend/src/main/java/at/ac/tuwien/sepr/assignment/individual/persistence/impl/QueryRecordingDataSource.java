@@ -0,0 +1,246 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntToLongFunction;
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import at.ac.tuwien.sepr.assignment.individual.persistence.QueryRecorder;
+
+/**
+ * Data source that reports every statement executed through its connections to a {@link QueryRecorder},
+ * with the time the database spent on it and the number of rows it returned or changed.
+ *
+ * <p>
+ * Connections, statements and result sets are wrapped in dynamic proxies that pass every call on to the
+ * wrapped objects. The time of a query is the time spent in executing it plus the time spent in fetching its rows,
+ * but not the time the caller spends processing the rows in between, so that streamed results are not
+ * reported as slow just because their client is. A query is reported once its result set is closed.
+ * </p>
+ */
+public class QueryRecordingDataSource extends DelegatingDataSource {
+  private final QueryRecorder recorder;
+
+  /**
+   * Constructs a new QueryRecordingDataSource.
+   *
+   * @param target the data source to obtain connections from
+   * @param recorder the recorder to report statements to
+   */
+  public QueryRecordingDataSource(DataSource target, QueryRecorder recorder) {
+    super(target);
+    this.recorder = recorder;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection()));
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection(username, password)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(QueryRecordingDataSource.class.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+
+  /**
+   * Pass a call on to the wrapped object, with the proxy behaving like an object of its own for equality.
+   */
+  private abstract static class ForwardingHandler implements InvocationHandler {
+    private final Object target;
+
+    ForwardingHandler(Object target) {
+      this.target = target;
+    }
+
+    Object forward(Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      return switch (method.getName()) {
+        case "equals" -> proxy == args[0];
+        case "hashCode" -> System.identityHashCode(proxy);
+        case "toString" -> "Recording " + target;
+        default -> handle(proxy, method, args);
+      };
+    }
+
+    abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+  }
+
+  private final class ConnectionHandler extends ForwardingHandler {
+    ConnectionHandler(Connection target) {
+      super(target);
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = forward(method, args);
+      return switch (method.getName()) {
+        case "prepareStatement", "prepareCall" ->
+            QueryRecordingDataSource.proxy(method.getReturnType(), new StatementHandler((Statement) result, (String) args[0]));
+        case "createStatement" -> QueryRecordingDataSource.proxy(Statement.class, new StatementHandler((Statement) result, null));
+        default -> result;
+      };
+    }
+  }
+
+  private final class StatementHandler extends ForwardingHandler {
+    private final String preparedSql;
+    private final Map<Integer, Object> parameters = new TreeMap<>();
+    private String sql;
+    private List<Object> executedParameters = List.of();
+    private long pendingNanos = -1;
+    private ResultSetHandler openResult;
+
+    StatementHandler(Statement target, String preparedSql) {
+      super(target);
+      this.preparedSql = preparedSql;
+      this.sql = preparedSql;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+        parameters.put(index, name.equals("setNull") ? null : args[1]);
+        return forward(method, args);
+      }
+      if (name.equals("clearParameters")) {
+        parameters.clear();
+        return forward(method, args);
+      }
+      if (name.equals("close")) {
+        finishResult();
+        return forward(method, args);
+      }
+      if (name.equals("getResultSet") && pendingNanos >= 0) {
+        return wrapResult((ResultSet) forward(method, args), pendingNanos);
+      }
+      if (!name.startsWith("execute")) {
+        return forward(method, args);
+      }
+
+      finishResult();
+      sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+      executedParameters = new ArrayList<>(parameters.values());
+      final long start = System.nanoTime();
+      Object result = forward(method, args);
+      long nanos = System.nanoTime() - start;
+      switch (result) {
+        case ResultSet rs -> {
+          return wrapResult(rs, nanos);
+        }
+        case Boolean isQuery when isQuery -> pendingNanos = nanos;
+        case Boolean isQuery -> record(nanos, ((Statement) proxy).getUpdateCount());
+        case Number count -> record(nanos, count.longValue());
+        case int[] counts -> record(nanos, sumOfCounts(counts.length, i -> counts[i]));
+        case long[] counts -> record(nanos, sumOfCounts(counts.length, i -> counts[i]));
+        default -> record(nanos, 0);
+      }
+      return result;
+    }
+
+    private Object wrapResult(ResultSet rs, long executeNanos) {
+      if (rs == null) {
+        return null;
+      }
+      // a query started by execute() is recorded with its result set from now on
+      pendingNanos = -1;
+      openResult = new ResultSetHandler(rs, this, executeNanos);
+      return QueryRecordingDataSource.proxy(ResultSet.class, openResult);
+    }
+
+    private void finishResult() {
+      if (openResult != null) {
+        openResult.finish();
+      }
+      if (pendingNanos >= 0) {
+        record(pendingNanos, 0);
+        pendingNanos = -1;
+      }
+    }
+
+    private void record(long nanos, long rows) {
+      if (sql != null) {
+        recorder.record(sql, executedParameters, nanos, Math.max(rows, 0), obtainTargetDataSource());
+      }
+    }
+
+    private static long sumOfCounts(int length, IntToLongFunction count) {
+      long sum = 0;
+      for (int i = 0; i < length; i++) {
+        // negative counts signal success with an unknown number of rows
+        sum += Math.max(count.applyAsLong(i), 0);
+      }
+      return sum;
+    }
+  }
+
+  private static final class ResultSetHandler extends ForwardingHandler {
+    private final StatementHandler statement;
+    private long nanos;
+    private long rows;
+    private boolean finished;
+
+    ResultSetHandler(ResultSet target, StatementHandler statement, long executeNanos) {
+      super(target);
+      this.statement = statement;
+      this.nanos = executeNanos;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "next" -> {
+          final long start = System.nanoTime();
+          Object hasRow = forward(method, args);
+          nanos += System.nanoTime() - start;
+          if ((Boolean) hasRow) {
+            rows++;
+          }
+          return hasRow;
+        }
+        case "close" -> {
+          finish();
+          return forward(method, args);
+        }
+        default -> {
+          return forward(method, args);
+        }
+      }
+    }
+
+    private void finish() {
+      if (!finished) {
+        finished = true;
+        if (statement.openResult == this) {
+          statement.openResult = null;
+        }
+        statement.record(nanos, rows);
+      }
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence.impl;
+
+import java.util.Locale;
+
+/**
+ * Helpers for building patterns to match search texts in SQL.
+ */
+final class SqlPatterns {
+  private SqlPatterns() {
+  }
+
+  /**
+   * Build a pattern for matching a lower-cased column with {@code LIKE}, using the backslash as escape character.
+   * Wildcards in the search text are matched literally.
+   * The text is lower-cased independently of the default locale, like the columns are by the database.
+   * A prefix pattern has no leading wildcard, so that it can be answered with an index on the column.
+   *
+   * @param text the text to search for
+   * @param substring whether the text may occur anywhere in the column, instead of only at its start
+   * @return the pattern
+   */
+  static String like(String text, boolean substring) {
+    String escaped = text.toLowerCase(Locale.ROOT)
+        .replace("\\", "\\\\")
+        .replace("%", "\\%")
+        .replace("_", "\\_");
+    return (substring ? "%" : "") + escaped + "%";
+  }
+}
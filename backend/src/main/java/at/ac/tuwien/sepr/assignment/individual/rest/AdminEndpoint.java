@@ -0,0 +1,72 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.AncestryRebuildDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.QueryShapeStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SlowQueryDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.QueryRecorder;
+import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
+
+/**
+ * REST controller for maintenance operations on the stored data, and for inspecting how it is accessed.
+ */
+@RestController
+@RequestMapping(AdminEndpoint.BASE_PATH)
+public class AdminEndpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  static final String BASE_PATH = "/admin";
+
+  private final HorseService horseService;
+  private final QueryRecorder queryRecorder;
+
+  public AdminEndpoint(HorseService horseService, QueryRecorder queryRecorder) {
+    this.horseService = horseService;
+    this.queryRecorder = queryRecorder;
+  }
+
+  /**
+   * Recomputes the stored ancestry of all horses from their parent links.
+   * Needed after horses have been inserted into the database directly, bypassing the application.
+   *
+   * @return the number of stored ancestor-descendant pairs and the time the rebuild took
+   */
+  @PostMapping("ancestry/rebuild")
+  public AncestryRebuildDto rebuildAncestry() {
+    LOG.info("POST " + BASE_PATH + "/ancestry/rebuild");
+    return horseService.rebuildAncestry();
+  }
+
+  /**
+   * Lists the statements sent to the persistent data store since the start of the application,
+   * aggregated by their shape, i.e. their SQL apart from literals, parameters and the length of {@code IN} lists.
+   *
+   * @return the statistics per shape, those with the most total time first
+   */
+  @GetMapping("queries")
+  public List<QueryShapeStatsDto> queryStats() {
+    LOG.info("GET " + BASE_PATH + "/queries");
+    return queryRecorder.shapeStats();
+  }
+
+  /**
+   * Lists the latest executions of statements that took longer than the configured threshold, with their plans.
+   *
+   * @param limit the maximum number of slow queries to return
+   * @return the latest slow queries, the most recent first
+   */
+  @GetMapping("queries/slow")
+  public List<SlowQueryDto> slowQueries(@RequestParam(name = "limit", defaultValue = "20") int limit) {
+    LOG.info("GET " + BASE_PATH + "/queries/slow?limit={}", limit);
+    return queryRecorder.slowQueries(Math.max(limit, 0));
+  }
+}
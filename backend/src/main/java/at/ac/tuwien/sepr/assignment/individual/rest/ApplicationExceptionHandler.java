@@ -1,6 +1,7 @@
 package at.ac.tuwien.sepr.assignment.individual.rest;
 
 
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import java.lang.invoke.MethodHandles;
 import org.slf4j.Logger;
@@ -32,5 +33,19 @@ public class ApplicationExceptionHandler {
     return new ValidationErrorRestDto(e.summary(), e.errors());
   }
 
+  /**
+   * Handles {@link ConflictException} by returning a 409 Conflict response.
+   *
+   * @param e the conflict exception
+   * @return a {@link ValidationErrorRestDto} containing the failed conflict checks
+   */
+  @ExceptionHandler
+  @ResponseStatus(HttpStatus.CONFLICT)
+  @ResponseBody
+  public ValidationErrorRestDto handleConflictException(ConflictException e) {
+    LOG.warn("Terminating request processing with status 409 due to {}: {}", e.getClass().getSimpleName(), e.getMessage());
+    return new ValidationErrorRestDto(e.summary(), e.errors());
+  }
+
 
 }
@@ -0,0 +1,95 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Locale;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.service.HorseExportService;
+import at.ac.tuwien.sepr.assignment.individual.type.ExportFormat;
+
+/**
+ * REST controller for exporting all stored data at once, e.g. for analyses outside the application.
+ */
+@RestController
+@RequestMapping(ExportEndpoint.BASE_PATH)
+public class ExportEndpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  static final String BASE_PATH = "/export";
+  private static final String APPLICATION_GZIP_VALUE = "application/gzip";
+
+  private final HorseExportService horseExportService;
+
+  /**
+   * Constructs a new ExportEndpoint.
+   *
+   * @param horseExportService the service writing the exports
+   */
+  public ExportEndpoint(HorseExportService horseExportService) {
+    this.horseExportService = horseExportService;
+  }
+
+  /**
+   * Exports all horses, ordered by ID and without their images, as a gzip file named e.g. {@code horses.csv.gz}.
+   * The file is served as {@code application/gzip} rather than with a {@code Content-Encoding},
+   * so that clients store it compressed instead of transparently decompressing it.
+   * The horses are written on the request thread while they are read from the database,
+   * so the export is not cut off by the timeout of asynchronous requests, however long it takes.
+   *
+   * @param format the format of the export, {@code csv}, {@code ndjson} or {@code bin} (see {@code HorseBinaryWriter})
+   * @param response the response to write the export to
+   * @throws ValidationException if the format is not supported
+   * @throws IOException if writing the response fails
+   */
+  @GetMapping("horses")
+  public void exportHorses(@RequestParam(name = "format", defaultValue = "csv") String format,
+                           HttpServletResponse response) throws ValidationException, IOException {
+    LOG.info("GET " + BASE_PATH + "/horses?format={}", format);
+    ExportFormat exportFormat = parseFormat(format, List.of(ExportFormat.values()));
+    startDownload(response, "horses", exportFormat);
+    horseExportService.exportHorses(exportFormat, response.getOutputStream());
+  }
+
+  /**
+   * Exports all owners, ordered by ID, as a gzip file named e.g. {@code owners.csv.gz}, like the horses.
+   *
+   * @param format the format of the export, {@code csv} or {@code ndjson}
+   * @param response the response to write the export to
+   * @throws ValidationException if the format is not supported
+   * @throws IOException if writing the response fails
+   */
+  @GetMapping("owners")
+  public void exportOwners(@RequestParam(name = "format", defaultValue = "csv") String format,
+                           HttpServletResponse response) throws ValidationException, IOException {
+    LOG.info("GET " + BASE_PATH + "/owners?format={}", format);
+    ExportFormat exportFormat = parseFormat(format, List.of(ExportFormat.CSV, ExportFormat.NDJSON));
+    startDownload(response, "owners", exportFormat);
+    horseExportService.exportOwners(exportFormat, response.getOutputStream());
+  }
+
+  private static ExportFormat parseFormat(String format, List<ExportFormat> supported) throws ValidationException {
+    for (ExportFormat exportFormat : supported) {
+      if (exportFormat.name().equalsIgnoreCase(format)) {
+        return exportFormat;
+      }
+    }
+    throw new ValidationException("Export format not supported", List.of("format must be one of "
+        + String.join(", ", supported.stream().map(f -> f.name().toLowerCase(Locale.ROOT)).toList())));
+  }
+
+  private static void startDownload(HttpServletResponse response, String name, ExportFormat format) {
+    response.setContentType(APPLICATION_GZIP_VALUE);
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+        "attachment; filename=\"%s.%s.gz\"".formatted(name, format.name().toLowerCase(Locale.ROOT)));
+  }
+}
@@ -1,12 +1,28 @@
 package at.ac.tuwien.sepr.assignment.individual.rest;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.lang.invoke.MethodHandles;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
 import java.util.stream.Stream;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
@@ -14,19 +30,41 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.AncestryDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.DescendantCountDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.FamilyTreeBatchRequestDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchCreatedDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchItemDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseDescendantDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFacetsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseImportDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseImportRowDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateRestDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.InbreedingDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.KinshipDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.MateSuggestionDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.PageDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.RelationshipDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.service.HorseImportService;
 import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
+import at.ac.tuwien.sepr.assignment.individual.service.PedigreeService;
+import at.ac.tuwien.sepr.assignment.individual.type.ImportFormat;
 
 /**
  * REST controller for managing horse-related operations.
@@ -38,24 +76,55 @@ import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
 public class HorseEndpoint {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   static final String BASE_PATH = "/horses";
+  /**
+   * Response header carrying the cursor of the next page of a paged listing, of horses or of owners.
+   */
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+  // listings are flushed in batches, which saves many small writes and still delivers the first rows right away
+  private static final int STREAM_FLUSH_INTERVAL = 500;
+  private static final String TEXT_CSV_VALUE = "text/csv";
 
   private final HorseService service;
+  private final PedigreeService pedigreeService;
+  private final HorseImportService importService;
+  private final ObjectMapper objectMapper;
 
+  /**
+   * Constructs a new HorseEndpoint.
+   *
+   * @param service the service for managing horses
+   * @param pedigreeService the service for pedigree analyses
+   * @param importService the service for importing horses from files
+   * @param objectMapper the mapper to write NDJSON listings with
+   */
   @Autowired
-  public HorseEndpoint(HorseService service) {
+  public HorseEndpoint(HorseService service, PedigreeService pedigreeService, HorseImportService importService,
+                       ObjectMapper objectMapper) {
     this.service = service;
+    this.pedigreeService = pedigreeService;
+    this.importService = importService;
+    this.objectMapper = objectMapper;
   }
 
   /**
    * Searches for horses based on the given search parameters.
+   * If a limit is given and there are more matches, the cursor to get the next page
+   * is returned in the {@value #NEXT_CURSOR_HEADER} header.
+   * Results are served from a cache, unless the request has the header {@code Cache-Control: no-cache}.
    *
    * @param searchParameters the parameters to filter the horse search
-   * @return a stream of {@link HorseListDto} matching the search criteria
+   * @param cacheControl the value of the {@code Cache-Control} header of the request, if any
+   * @return the {@link HorseListDto}s matching the search criteria
+   * @throws ValidationException if the limit or the cursor is not valid
    */
   @GetMapping
-  public Stream<HorseListDto> searchHorses(@ModelAttribute HorseSearchDto searchParameters) {
+  public ResponseEntity<List<HorseListDto>> searchHorses(
+      @ModelAttribute HorseSearchDto searchParameters,
+      @RequestHeader(name = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl)
+      throws ValidationException {
     LOG.info("GET /horses");
     LOG.debug("Request parameters: {}", searchParameters);
+    boolean refresh = cacheControl != null && cacheControl.contains("no-cache");
   
     boolean hasCriteria =
         (searchParameters.name() != null && !searchParameters.name().isBlank()) 
@@ -66,18 +135,96 @@ public class HorseEndpoint {
         ||
         searchParameters.sex() != null 
         ||
-        (searchParameters.ownerName() != null && !searchParameters.ownerName().isBlank());
+        (searchParameters.ownerName() != null && !searchParameters.ownerName().isBlank())
+        ||
+        searchParameters.parentFemaleId() != null
+        ||
+        searchParameters.parentMaleId() != null
+        ||
+        searchParameters.limit() != null
+        ||
+        searchParameters.sort() != null
+        ||
+        searchParameters.cursor() != null;
   
     try {
       if (hasCriteria) {
-        return service.search(searchParameters);
+        return page(service.search(searchParameters, refresh));
       } else {
-        return service.allHorses();
+        return ResponseEntity.ok(service.allHorses(refresh).toList());
       }
     } catch (NotFoundException e) {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
     }
-  }  
+  }
+
+  /**
+   * Searches for horses based on the given search parameters, and streams the matches as newline-delimited JSON.
+   * The matches are written while they are read from the database, so even the whole herd can be listed
+   * without holding it in memory. Without any criteria, all horses are listed.
+   * They are written on the request thread, so the listing is not cut off by the timeout of asynchronous requests.
+   *
+   * @param searchParameters the parameters to filter the horse search
+   * @param response the response to write the matching horses to, one JSON object per line
+   * @throws ValidationException if the limit or the cursor is not valid
+   * @throws IOException if writing the response fails
+   */
+  @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public void streamHorses(@ModelAttribute HorseSearchDto searchParameters, HttpServletResponse response)
+      throws ValidationException, IOException {
+    LOG.info("GET /horses as NDJSON");
+    LOG.debug("Request parameters: {}", searchParameters);
+    writeNdjson(service.streamSearch(searchParameters), STREAM_FLUSH_INTERVAL, response);
+  }
+
+  /**
+   * Build the response for one page of a listing, with the cursor of the next page in a header.
+   */
+  static <T> ResponseEntity<List<T>> page(PageDto<T> page) {
+    var response = ResponseEntity.ok();
+    if (page.nextCursor() != null) {
+      response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+    }
+    return response.body(page.items());
+  }
+
+  /**
+   * Counts the horses matching the given search parameters, broken down by sex, by range of birth years,
+   * and by owner, e.g. to show next to a list of the matches. Paging parameters are ignored.
+   *
+   * @param searchParameters the search parameters to filter the horses
+   * @param yearsPerBucket the number of birth years that are counted together
+   * @param maxOwners the maximum number of owners to return counts for, those with the most horses
+   * @return the counts of the matching horses
+   * @throws ValidationException if the number of years per range or of owners is out of the supported range
+   */
+  @GetMapping("facets")
+  public HorseFacetsDto facets(
+      @ModelAttribute HorseSearchDto searchParameters,
+      @RequestParam(name = "yearsPerBucket", defaultValue = "10") int yearsPerBucket,
+      @RequestParam(name = "owners", defaultValue = "10") int maxOwners)
+      throws ValidationException {
+    LOG.info("GET " + BASE_PATH + "/facets?yearsPerBucket={}&owners={}", yearsPerBucket, maxOwners);
+    LOG.debug("Request parameters: {}", searchParameters);
+    return service.facets(searchParameters, yearsPerBucket, maxOwners);
+  }
+
+  /**
+   * Suggests horses whose name starts with the given text, for autocompletion while the user is typing.
+   *
+   * @param query the beginning of the name
+   * @param limit the maximum number of horses to suggest
+   * @return the suggested horses, ordered by name
+   * @throws ValidationException if the limit is out of the supported range
+   */
+  @GetMapping("suggest")
+  public List<SuggestionDto> suggest(
+      @RequestParam(name = "q", defaultValue = "") String query,
+      @RequestParam(name = "limit", defaultValue = "10") int limit)
+      throws ValidationException {
+    LOG.debug("GET " + BASE_PATH + "/suggest?q={}&limit={}", query, limit);
+    return service.suggest(query, limit);
+  }
 
   /**
    * Retrieves the details of a horse by its ID.
@@ -98,6 +245,233 @@ public class HorseEndpoint {
     }
   }
 
+  /**
+   * Retrieves the family tree of a horse by its ID.
+   *
+   * @param id          the unique identifier of the horse
+   * @param generations the number of ancestor generations to include
+   * @return the family tree with the requested horse at its root
+   * @throws ValidationException     if the number of generations is out of range
+   * @throws ResponseStatusException if the horse is not found
+   */
+  @GetMapping("{id}/familytree")
+  public HorseFamilyTreeDto getFamilyTree(
+      @PathVariable("id") long id,
+      @RequestParam(name = "generations", defaultValue = "5") int generations)
+      throws ValidationException {
+    LOG.info("GET " + BASE_PATH + "/{}/familytree?generations={}", id, generations);
+    try {
+      return service.getFamilyTree(id, generations);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to get family tree of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Retrieves the family trees of many horses at once, as newline-delimited JSON.
+   * Every tree is written out on the request thread as soon as it is complete,
+   * so the response is not held in memory as a whole, and not cut off by the timeout of asynchronous requests.
+   *
+   * @param request the IDs of the horses and the number of generations to include
+   * @param response the response to write the family trees to, one JSON object per line, in the order of the requested IDs
+   * @throws ValidationException     if there are no or too many IDs, or the number of generations is out of range
+   * @throws ResponseStatusException if one of the horses is not found
+   * @throws IOException             if writing the response fails
+   */
+  @PostMapping(path = "familytrees", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public void getFamilyTrees(@RequestBody FamilyTreeBatchRequestDto request, HttpServletResponse response)
+      throws ValidationException, IOException {
+    LOG.info("POST " + BASE_PATH + "/familytrees");
+    LOG.debug("Body of request:\n{}", request);
+    try {
+      Stream<HorseFamilyTreeDto> trees = service.getFamilyTrees(request.ids(), request.generationsOrDefault());
+      writeNdjson(trees, 1, response);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to get family tree of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Retrieves the descendants of a horse by its ID, generation by generation.
+   *
+   * @param id          the unique identifier of the horse
+   * @param generations the number of generations to include
+   * @return a stream of the descendants of the requested horse
+   * @throws ValidationException     if the number of generations is out of range
+   * @throws ResponseStatusException if the horse is not found
+   */
+  @GetMapping("{id}/descendants")
+  public Stream<HorseDescendantDto> getDescendants(
+      @PathVariable("id") long id,
+      @RequestParam(name = "generations", defaultValue = "1") int generations)
+      throws ValidationException {
+    LOG.info("GET " + BASE_PATH + "/{}/descendants?generations={}", id, generations);
+    try {
+      return service.getDescendants(id, generations);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to get descendants of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Counts the descendants of a horse, over all generations.
+   *
+   * @param id the unique identifier of the horse
+   * @return the number of descendants of the requested horse
+   * @throws ResponseStatusException if the horse is not found
+   */
+  @GetMapping("{id}/descendants/count")
+  public DescendantCountDto countDescendants(@PathVariable("id") long id) {
+    LOG.info("GET " + BASE_PATH + "/{}/descendants/count", id);
+    try {
+      return service.countDescendants(id);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to count descendants of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Checks whether one horse is an ancestor of another one, over all generations.
+   *
+   * @param id         the unique identifier of the horse whose ancestors to check
+   * @param ancestorId the unique identifier of the potential ancestor
+   * @return the result of the check
+   * @throws ResponseStatusException if one of the horses is not found
+   */
+  @GetMapping("{id}/ancestors/{ancestorId}")
+  public AncestryDto isAncestor(
+      @PathVariable("id") long id,
+      @PathVariable("ancestorId") long ancestorId) {
+    LOG.info("GET " + BASE_PATH + "/{}/ancestors/{}", id, ancestorId);
+    try {
+      return service.isAncestor(ancestorId, id);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to check ancestry of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Computes the inbreeding coefficient of a horse.
+   *
+   * @param id          the unique identifier of the horse
+   * @param generations the number of ancestor generations to consider
+   * @return the inbreeding coefficient of the horse
+   * @throws ValidationException     if the number of generations is out of range
+   * @throws ResponseStatusException if the horse is not found
+   */
+  @GetMapping("{id}/inbreeding")
+  public InbreedingDto getInbreeding(
+      @PathVariable("id") long id,
+      @RequestParam(name = "generations", defaultValue = "10") int generations)
+      throws ValidationException {
+    LOG.info("GET " + BASE_PATH + "/{}/inbreeding?generations={}", id, generations);
+    try {
+      return pedigreeService.inbreeding(id, generations);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to compute inbreeding of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Computes the kinship coefficient of two horses.
+   *
+   * @param id          the unique identifier of the first horse
+   * @param otherId     the unique identifier of the second horse
+   * @param generations the number of ancestor generations to consider
+   * @return the kinship coefficient of the two horses
+   * @throws ValidationException     if the number of generations is out of range
+   * @throws ResponseStatusException if one of the horses is not found
+   */
+  @GetMapping("{id}/kinship/{otherId}")
+  public KinshipDto getKinship(
+      @PathVariable("id") long id,
+      @PathVariable("otherId") long otherId,
+      @RequestParam(name = "generations", defaultValue = "10") int generations)
+      throws ValidationException {
+    LOG.info("GET " + BASE_PATH + "/{}/kinship/{}?generations={}", id, otherId, generations);
+    try {
+      return pedigreeService.kinship(id, otherId, generations);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to compute kinship of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Determines how two horses are related, by their nearest common ancestors.
+   *
+   * @param id          the unique identifier of the first horse
+   * @param otherId     the unique identifier of the second horse
+   * @param generations the number of ancestor generations to consider
+   * @return the nearest common ancestors with the connecting paths, and a description of the relationship
+   * @throws ValidationException     if the number of generations is out of range
+   * @throws ResponseStatusException if one of the horses is not found
+   */
+  @GetMapping("{id}/relationship/{otherId}")
+  public RelationshipDto getRelationship(
+      @PathVariable("id") long id,
+      @PathVariable("otherId") long otherId,
+      @RequestParam(name = "generations", defaultValue = "10") int generations)
+      throws ValidationException {
+    LOG.info("GET " + BASE_PATH + "/{}/relationship/{}?generations={}", id, otherId, generations);
+    try {
+      return pedigreeService.relationship(id, otherId, generations);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Horse to determine relationship of not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Suggests stallions as mates for a mare, ranked by the expected inbreeding coefficient of a foal.
+   *
+   * @param id            the unique identifier of the mare
+   * @param filter        the criteria the stallions have to match
+   * @param limit         the maximum number of stallions to return
+   * @param generations   the number of ancestor generations to consider
+   * @param timeoutMillis the time in milliseconds after which the computation is cancelled
+   * @return the suggested stallions, best first
+   * @throws ValidationException     if the horse is not a mare, or the parameters are out of range
+   * @throws ResponseStatusException if the mare is not found, or the computation does not finish in time
+   */
+  @GetMapping("{id}/mate-suggestions")
+  public List<MateSuggestionDto> suggestMates(
+      @PathVariable("id") long id,
+      @ModelAttribute HorseSearchDto filter,
+      @RequestParam(name = "limit", defaultValue = "10") int limit,
+      @RequestParam(name = "generations", defaultValue = "10") int generations,
+      @RequestParam(name = "timeoutMillis", required = false) Long timeoutMillis)
+      throws ValidationException {
+    LOG.info("GET " + BASE_PATH + "/{}/mate-suggestions?limit={}", id, limit);
+    LOG.debug("Request parameters: {}", filter);
+    try {
+      return pedigreeService.suggestMates(id, filter, limit, generations,
+          timeoutMillis == null ? null : Duration.ofMillis(timeoutMillis));
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Mare to suggest mates for not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    } catch (DeadlineExceededException e) {
+      HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+      logClientError(status, "Suggesting mates took too long", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
   
   /**
    * Creates a new horse.
@@ -131,6 +505,44 @@ public class HorseEndpoint {
   }
 
 
+  /**
+   * Creates many horses at once, in a single transaction, e.g. to synchronize with an external registry.
+   * Either all horses are created, or none of them.
+   * A horse may refer to a horse created earlier in the same batch as its parent, by that horse's temporary ID.
+   *
+   * @param items the horses to create, parents before their children
+   * @return the temporary and generated IDs of the created horses, in the given order
+   * @throws ValidationException if any horse is invalid, or refers to a missing owner or parent
+   * @throws ConflictException if the parents of any horse conflict with the family tree
+   */
+  @PostMapping("batch")
+  public List<HorseBatchCreatedDto> createHorses(@RequestBody List<HorseBatchItemDto> items)
+      throws ValidationException, ConflictException {
+    LOG.info("POST " + BASE_PATH + "/batch with {} horses", items == null ? 0 : items.size());
+    return service.createAll(items);
+  }
+
+  /**
+   * Imports horses from an upload that may be too large to be held in memory, either CSV with a header
+   * naming the columns, or NDJSON with one horse per line. The columns and fields are those of {@link HorseImportRowDto}.
+   * Unlike {@link #createHorses batches}, invalid horses are skipped and reported, while the valid ones are imported.
+   *
+   * @param contentType the content type of the upload, which determines its format
+   * @param body the upload
+   * @return the outcome of the import, with the errors of the skipped horses
+   * @throws IOException if the upload can not be read
+   */
+  @PostMapping(path = "import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public HorseImportDto importHorses(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body)
+      throws IOException {
+    ImportFormat format = contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON) ? ImportFormat.NDJSON : ImportFormat.CSV;
+    LOG.info("POST " + BASE_PATH + "/import as {}", format);
+    Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+    try (Reader reader = new BufferedReader(new InputStreamReader(body, charset))) {
+      return importService.importHorses(reader, format);
+    }
+  }
+
   /**
    * Updates the details of an existing horse, including an optional image file.
    *
@@ -158,6 +570,28 @@ public class HorseEndpoint {
   }
 
 
+  /**
+   * Writes the elements of a stream to the response as newline-delimited JSON,
+   * flushing after every {@code flushInterval} elements.
+   */
+  private void writeNdjson(Stream<?> elements, int flushInterval, HttpServletResponse response) throws IOException {
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+    try (elements) {
+      OutputStream out = response.getOutputStream();
+      Iterator<?> iterator = elements.iterator();
+      int unflushed = 0;
+      while (iterator.hasNext()) {
+        out.write(objectMapper.writeValueAsBytes(iterator.next()));
+        out.write('\n');
+        if (++unflushed == flushInterval) {
+          out.flush();
+          unflushed = 0;
+        }
+      }
+      out.flush();
+    }
+  }
+
   /**
    * Logs client-side errors with relevant details.
    *
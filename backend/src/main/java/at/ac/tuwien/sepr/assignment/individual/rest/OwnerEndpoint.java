@@ -1,24 +1,28 @@
 package at.ac.tuwien.sepr.assignment.individual.rest;
 
 import java.lang.invoke.MethodHandles;
-import java.util.stream.Stream;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import at.ac.tuwien.sepr.assignment.individual.service.OwnerService;
 
 /**
@@ -39,14 +43,35 @@ public class OwnerEndpoint {
 
   /**
    * Searches for owners based on the given search parameters.
+   * If there are more matches than requested, the cursor to get the next page
+   * is returned in the {@value HorseEndpoint#NEXT_CURSOR_HEADER} header.
    *
    * @param searchParameters the parameters to filter the owner search
-   * @return a stream of {@link OwnerDto} matching the search criteria
+   * @return the {@link OwnerDto}s matching the search criteria
+   * @throws ValidationException if the maximum amount or the cursor is not valid
    */
   @GetMapping
-  public Stream<OwnerDto> search(OwnerSearchDto searchParameters) {
+  public ResponseEntity<List<OwnerDto>> search(OwnerSearchDto searchParameters) throws ValidationException {
     LOG.info("GET " + BASE_PATH + " query parameters: {}", searchParameters);
-    return service.search(searchParameters);
+    return HorseEndpoint.page(service.search(searchParameters));
+  }
+
+  /**
+   * Suggests owners whose full name or last name starts with the given text,
+   * for autocompletion while the user is typing.
+   *
+   * @param query the beginning of the name
+   * @param limit the maximum number of owners to suggest
+   * @return the suggested owners, with their full names
+   * @throws ValidationException if the limit is out of the supported range
+   */
+  @GetMapping("suggest")
+  public List<SuggestionDto> suggest(
+      @RequestParam(name = "q", defaultValue = "") String query,
+      @RequestParam(name = "limit", defaultValue = "10") int limit)
+      throws ValidationException {
+    LOG.debug("GET " + BASE_PATH + "/suggest?q={}&limit={}", query, limit);
+    return service.suggest(query, limit);
   }
 
   /**
@@ -0,0 +1,35 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import at.ac.tuwien.sepr.assignment.individual.type.ExportFormat;
+
+/**
+ * Service for exporting all horses and their owners, e.g. to be analyzed elsewhere.
+ */
+public interface HorseExportService {
+  /**
+   * Write all horses, ordered by ID and without their images, gzip-compressed to the output.
+   * The horses are written while they are read from the persistent data store,
+   * which bounds the memory held for them by what the data store buffers of a result.
+   *
+   * @param format the format to write the horses in
+   * @param out the output to write to, which is not closed
+   * @return the number of exported horses
+   * @throws IOException if writing to the output fails
+   */
+  long exportHorses(ExportFormat format, OutputStream out) throws IOException;
+
+  /**
+   * Write all owners, ordered by ID, gzip-compressed to the output.
+   * Like the horses, the owners are written while they are read from the persistent data store.
+   *
+   * @param format the format to write the owners in, {@link ExportFormat#CSV} or {@link ExportFormat#NDJSON}
+   * @param out the output to write to, which is not closed
+   * @return the number of exported owners
+   * @throws IOException if writing to the output fails
+   * @throws IllegalArgumentException if the format is {@link ExportFormat#BIN}, which only exists for horses
+   */
+  long exportOwners(ExportFormat format, OutputStream out) throws IOException;
+}
@@ -0,0 +1,23 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import java.io.Reader;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseImportDto;
+import at.ac.tuwien.sepr.assignment.individual.type.ImportFormat;
+
+/**
+ * Service for importing large numbers of horses from files.
+ */
+public interface HorseImportService {
+  /**
+   * Import the horses read from the input, which may be far too large to be held in memory.
+   * Every horse is validated like a horse created in a batch. Valid horses are created in batches,
+   * each in its own transaction, invalid ones are skipped and reported with their line.
+   * A horse may refer to a horse earlier in the input as its parent, by that horse's temporary ID.
+   *
+   * @param input the input to read the horses from
+   * @param format the format of the input
+   * @return the outcome of the import
+   */
+  HorseImportDto importHorses(Reader input, ImportFormat format);
+}
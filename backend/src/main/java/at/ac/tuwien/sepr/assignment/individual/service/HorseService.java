@@ -1,13 +1,24 @@
 package at.ac.tuwien.sepr.assignment.individual.service;
 
 
+import java.util.List;
 import java.util.stream.Stream;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.AncestryDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.AncestryRebuildDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.DescendantCountDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchCreatedDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchItemDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseDescendantDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFacetsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFamilyTreeDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.PageDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
@@ -23,6 +34,15 @@ public interface HorseService {
    */
   Stream<HorseListDto> allHorses();
 
+  /**
+   * Lists all horses stored in the system.
+   * Listings may be served from a cache, unless {@code refresh} is set.
+   *
+   * @param refresh whether to bypass the cache, and list the horses from the persistent data store
+   * @return list of all stored horses
+   */
+  Stream<HorseListDto> allHorses(boolean refresh);
+
 
   /**
    * Updates the horse with the ID given in {@code horse}
@@ -63,6 +83,18 @@ public interface HorseService {
       throws ValidationException, ConflictException, NotFoundException;
 
 
+  /**
+   * Creates many horses at once, in a single transaction, and returns their generated IDs.
+   * All horses are validated, and all their owners and parents resolved, before any of them is created.
+   * A horse may refer to a horse created earlier in the same batch as its parent, by that horse's temporary ID.
+   *
+   * @param items the horses to create, parents before their children
+   * @return the temporary and generated IDs of the created horses, in the given order
+   * @throws ValidationException if any horse is invalid, or refers to a missing owner or parent
+   * @throws ConflictException if the parents of any horse conflict with the family tree
+   */
+  List<HorseBatchCreatedDto> createAll(List<HorseBatchItemDto> items) throws ValidationException, ConflictException;
+
   /**
    * Deletes the horse with the given ID from the persistent data store.
    *
@@ -77,13 +109,134 @@ public interface HorseService {
    *
    * <p>
    * The search criteria can include filtering by name, description, birth date (older than a given date),
-   * sex, and owner. When multiple criteria are provided, only horses matching all criteria are returned.
+   * sex, owner, and parents. When multiple criteria are provided, only horses matching all criteria are returned.
    * If no criteria are provided, all horses are listed.
    * </p>
    *
+   * <p>
+   * Matches are listed in the requested order, with ties broken by ID.
+   * If a limit is given, at most that many horses are returned, together with a cursor
+   * that gets the next page of matches when passed in otherwise unchanged criteria.
+   * </p>
+   *
    * @param criteria the search criteria encapsulated in a {@link HorseSearchDto}
-   * @return a stream of {@link HorseListDto} objects matching the criteria
+   * @return the page of {@link HorseListDto} objects matching the criteria
    * @throws NotFoundException if no horses match the criteria (or if a referenced entity is missing)
+   * @throws ValidationException if the limit is not positive, or the cursor is not valid for the requested order
+   */
+  PageDto<HorseListDto> search(HorseSearchDto criteria) throws NotFoundException, ValidationException;
+
+  /**
+   * Searches for horses based on the provided criteria, like {@link #search(HorseSearchDto)}.
+   * Results may be served from a cache, unless {@code refresh} is set.
+   *
+   * @param criteria the search criteria encapsulated in a {@link HorseSearchDto}
+   * @param refresh whether to bypass the cache, and search the persistent data store
+   * @return the page of {@link HorseListDto} objects matching the criteria
+   * @throws NotFoundException if a referenced entity is missing
+   * @throws ValidationException if the limit is not positive, or the cursor is not valid for the requested order
+   */
+  PageDto<HorseListDto> search(HorseSearchDto criteria, boolean refresh) throws NotFoundException, ValidationException;
+
+
+  /**
+   * Searches for horses like {@link #search}, but streams all matches straight from the persistent data store,
+   * so that even listings of the whole herd are never held in memory as a whole.
+   * The stream holds resources of the data store until it is closed, so it has to be closed after use.
+   *
+   * @param criteria the search criteria encapsulated in a {@link HorseSearchDto}
+   * @return a stream of {@link HorseListDto} objects matching the criteria, in the requested order
+   * @throws ValidationException if the limit is not positive, or the cursor is not valid for the requested order
+   */
+  Stream<HorseListDto> streamSearch(HorseSearchDto criteria) throws ValidationException;
+
+  /**
+   * Counts the horses matching the provided criteria, broken down by sex, by range of birth years, and by owner,
+   * without reading the matching horses themselves. Order, limit and cursor of the criteria are ignored.
+   *
+   * @param criteria the search criteria encapsulated in a {@link HorseSearchDto}
+   * @param yearsPerBucket the number of birth years that are counted together, ranges start at multiples of it
+   * @param maxOwners the maximum number of owners to return counts for, those with the most horses
+   * @return the counts of the matching horses
+   * @throws ValidationException if the number of years per range or of owners is out of the supported range
+   */
+  HorseFacetsDto facets(HorseSearchDto criteria, int yearsPerBucket, int maxOwners) throws ValidationException;
+
+  /**
+   * Suggests horses whose name starts with the given text, e.g. while the user is typing it.
+   * The suggestions are answered from memory, without querying the persistent data store.
+   *
+   * @param query the beginning of the name, compared case-insensitively
+   * @param limit the maximum number of horses to suggest
+   * @return the suggested horses, ordered by name
+   * @throws ValidationException if the limit is out of the supported range
+   */
+  List<SuggestionDto> suggest(String query, int limit) throws ValidationException;
+
+
+  /**
+   * Get the family tree of the horse with given ID.
+   * The tree contains the horse itself and its known ancestors
+   * up to {@code generations} generations back, including their owners.
+   *
+   * @param id the ID of the horse whose family tree to get
+   * @param generations the number of ancestor generations to include, {@code 0} means only the horse itself
+   * @return the family tree with the horse with ID {@code id} at its root
+   * @throws NotFoundException if the horse with the given ID does not exist in the persistent data store
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  HorseFamilyTreeDto getFamilyTree(long id, int generations) throws NotFoundException, ValidationException;
+
+  /**
+   * Get the family trees of many horses at once.
+   * The trees are computed chunk by chunk of roots and streamed in the order of the given IDs,
+   * so the returned stream should be consumed as it is produced, not collected.
+   *
+   * @param ids the IDs of the horses whose family trees to get
+   * @param generations the number of ancestor generations to include, {@code 0} means only the horses themselves
+   * @return a stream of the family trees, one per given ID
+   * @throws NotFoundException if one of the horses does not exist in the persistent data store
+   * @throws ValidationException if there are no or too many IDs, or the number of generations is out of range
+   */
+  Stream<HorseFamilyTreeDto> getFamilyTrees(List<Long> ids, int generations) throws NotFoundException, ValidationException;
+
+  /**
+   * Get the descendants of the horse with given ID, up to {@code generations} generations down.
+   * The descendants are streamed generation by generation, starting with the children of the horse.
+   * A descendant that is related to the horse on several paths is only contained once, in its closest generation.
+   *
+   * @param id the ID of the horse whose descendants to get
+   * @param generations the number of generations to include
+   * @return a stream of the descendants, ordered by generation
+   * @throws NotFoundException if the horse with the given ID does not exist in the persistent data store
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  Stream<HorseDescendantDto> getDescendants(long id, int generations) throws NotFoundException, ValidationException;
+
+  /**
+   * Check whether one horse is an ancestor of another one, over any number of generations.
+   *
+   * @param ancestorId the ID of the potential ancestor
+   * @param id the ID of the horse whose ancestors to check
+   * @return the result of the check
+   * @throws NotFoundException if one of the horses does not exist in the persistent data store
+   */
+  AncestryDto isAncestor(long ancestorId, long id) throws NotFoundException;
+
+  /**
+   * Count all distinct descendants of the horse with given ID, over any number of generations.
+   *
+   * @param id the ID of the horse whose descendants to count
+   * @return the number of descendants
+   * @throws NotFoundException if the horse with the given ID does not exist in the persistent data store
+   */
+  DescendantCountDto countDescendants(long id) throws NotFoundException;
+
+  /**
+   * Recompute the stored ancestry of all horses from their parent links,
+   * e.g. after horses have been inserted into the persistent data store directly.
+   *
+   * @return the number of stored ancestor-descendant pairs and the time the rebuild took
    */
-  Stream<HorseListDto> search(HorseSearchDto criteria) throws NotFoundException;
-}
\ No newline at end of file
+  AncestryRebuildDto rebuildAncestry();
+}
@@ -1,13 +1,16 @@
 package at.ac.tuwien.sepr.assignment.individual.service;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
 
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.PageDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 
 /**
  * Service for working with owners.
@@ -33,19 +36,44 @@ public interface OwnerService {
   Map<Long, OwnerDto> getAllById(Collection<Long> ids) throws NotFoundException;
 
 
+  /**
+   * Fetch those owners referenced by the IDs in {@code ids} that exist, e.g. to check many references at once.
+   *
+   * @param ids the IDs of the owners, that should be fetched
+   * @return a map that contains the existing owners among the requested ones with their IDs as key
+   */
+  Map<Long, OwnerDto> findAllById(Collection<Long> ids);
+
+
   /**
    * Search for owners matching the criteria in {@code searchParameters}.
    *
    * <p>
-   * A owner is considered matched, if its name contains {@code searchParameters.name} as a substring.
+   * A owner is considered matched, if its full name or last name starts with {@code searchParameters.name},
+   * ignoring case.
    * The returned stream of owners never contains more than {@code searchParameters.maxAmount} elements,
    * even if there would be more matches in the persistent data store.
+   * Together with them, a cursor is returned that gets the next matches
+   * when passed in otherwise unchanged search parameters.
    * </p>
    *
    * @param searchParameters object containing the search parameters to match
-   * @return a stream containing owners matching the criteria in {@code searchParameters}
+   * @return the page of owners matching the criteria in {@code searchParameters}
+   * @throws ValidationException if the maximum amount is not positive, or the cursor is not valid for the requested order
+   */
+  PageDto<OwnerDto> search(OwnerSearchDto searchParameters) throws ValidationException;
+
+
+  /**
+   * Suggest owners whose full name or last name starts with the given text, e.g. while the user is typing it.
+   * The suggestions are answered from memory, without querying the persistent data store.
+   *
+   * @param query the beginning of the name, compared case-insensitively
+   * @param limit the maximum number of owners to suggest
+   * @return the suggested owners, with their full names
+   * @throws ValidationException if the limit is out of the supported range
    */
-  Stream<OwnerDto> search(OwnerSearchDto searchParameters);
+  List<SuggestionDto> suggest(String query, int limit) throws ValidationException;
 
 
   /**
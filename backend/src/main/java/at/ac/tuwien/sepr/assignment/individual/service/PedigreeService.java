@@ -0,0 +1,78 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import java.time.Duration;
+import java.util.List;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.InbreedingDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.KinshipDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.MateSuggestionDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.RelationshipDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+
+/**
+ * Service for analyzing the pedigree of horses, e.g. to support breeding decisions.
+ */
+public interface PedigreeService {
+  /**
+   * Compute the inbreeding coefficient of the horse with given ID.
+   * Only ancestors up to {@code generations} generations back are considered.
+   *
+   * @param id the ID of the horse
+   * @param generations the number of ancestor generations to consider
+   * @return the inbreeding coefficient of the horse
+   * @throws NotFoundException if the horse with the given ID does not exist in the persistent data store
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  InbreedingDto inbreeding(long id, int generations) throws NotFoundException, ValidationException;
+
+
+  /**
+   * Compute the kinship coefficient of the two horses with given IDs.
+   * Only ancestors up to {@code generations} generations back are considered.
+   *
+   * @param id the ID of the first horse
+   * @param otherId the ID of the second horse
+   * @param generations the number of ancestor generations to consider
+   * @return the kinship coefficient of the two horses
+   * @throws NotFoundException if one of the horses does not exist in the persistent data store
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  KinshipDto kinship(long id, long otherId, int generations) throws NotFoundException, ValidationException;
+
+
+  /**
+   * Determine how the two horses with given IDs are related, by their nearest common ancestors.
+   * Only ancestors up to {@code generations} generations back from each horse are considered.
+   *
+   * @param id the ID of the first horse
+   * @param otherId the ID of the second horse
+   * @param generations the number of ancestor generations to consider
+   * @return the nearest common ancestors with the paths to them, and a description of the relationship
+   * @throws NotFoundException if one of the horses does not exist in the persistent data store
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  RelationshipDto relationship(long id, long otherId, int generations) throws NotFoundException, ValidationException;
+
+
+  /**
+   * Rank all stallions matching {@code filter} as mates for the mare with given ID.
+   * For every stallion the expected inbreeding coefficient of a foal with the mare is computed,
+   * and the {@code limit} stallions with the lowest coefficient are returned, lowest first.
+   * The sex given in {@code filter} is ignored, and so is its limit.
+   *
+   * @param mareId the ID of the mare
+   * @param filter the criteria the stallions have to match
+   * @param limit the maximum number of stallions to return
+   * @param generations the number of ancestor generations to consider
+   * @param timeout the time after which the computation is cancelled, {@code null} for the default
+   * @return the best suggested stallions with the expected inbreeding coefficients
+   * @throws NotFoundException if the mare with the given ID does not exist in the persistent data store
+   * @throws ValidationException if the given horse is not a mare, or the parameters are out of the supported range
+   * @throws DeadlineExceededException if the computation did not finish in time
+   */
+  List<MateSuggestionDto> suggestMates(long mareId, HorseSearchDto filter, int limit, int generations, Duration timeout)
+      throws NotFoundException, ValidationException, DeadlineExceededException;
+}
@@ -0,0 +1,254 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseChangedEvent;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerChangedEvent;
+
+/**
+ * Bounded cache of computed family trees, keyed by the ID of the root horse and the number of generations.
+ * Entries are evicted when they are older than the configured time to live,
+ * or when the cache is full, least recently used first.
+ *
+ * <p>
+ * For every horse, and every owner of a horse, the cache knows which cached trees contain it.
+ * When a horse or an owner is updated or deleted, only those trees are dropped; all others stay valid.
+ * </p>
+ *
+ * <p>
+ * Hits, misses and evictions are reported as {@code cache.gets} and {@code cache.evictions}
+ * with the tag {@code cache=familytree}.
+ * </p>
+ */
+@Component
+public class FamilyTreeCache {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final String CACHE_NAME = "familytree";
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Long, Set<Key>> treesByHorse = new HashMap<>();
+  private final Map<Long, Set<Key>> treesByOwner = new HashMap<>();
+  private long invalidations;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter sizeEvictions;
+  private final Counter expiryEvictions;
+  private final Counter invalidationEvictions;
+
+  /**
+   * Constructs a new FamilyTreeCache.
+   *
+   * @param maxSize the maximum number of cached trees
+   * @param ttl the time after which a cached tree is evicted
+   * @param meterRegistry the registry to report hits, misses and evictions to
+   */
+  public FamilyTreeCache(
+      @Value("${app.familytree-cache.max-size:1000}") int maxSize,
+      @Value("${app.familytree-cache.ttl:10m}") Duration ttl,
+      MeterRegistry meterRegistry) {
+    this.maxSize = maxSize;
+    this.ttlNanos = ttl.toNanos();
+    this.hits = gets(meterRegistry, "hit");
+    this.misses = gets(meterRegistry, "miss");
+    this.sizeEvictions = evictions(meterRegistry, "size");
+    this.expiryEvictions = evictions(meterRegistry, "expired");
+    this.invalidationEvictions = evictions(meterRegistry, "invalidated");
+    Gauge.builder("cache.size", this, FamilyTreeCache::size)
+        .tag("cache", CACHE_NAME)
+        .register(meterRegistry);
+  }
+
+  private static Counter gets(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("cache.gets")
+        .tag("cache", CACHE_NAME)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  private static Counter evictions(MeterRegistry meterRegistry, String cause) {
+    return Counter.builder("cache.evictions")
+        .tag("cache", CACHE_NAME)
+        .tag("cause", cause)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Get a cached family tree.
+   *
+   * @param id the ID of the root horse
+   * @param generations the number of generations of the tree
+   * @return the cached tree, or {@code null} if it is not cached (anymore)
+   */
+  public synchronized HorseFamilyTreeDto get(long id, int generations) {
+    Key key = new Key(id, generations);
+    Entry entry = entries.get(key);
+    if (entry != null && System.nanoTime() - entry.expiresAt() > 0) {
+      remove(key);
+      expiryEvictions.increment();
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.tree();
+  }
+
+  /**
+   * Get a token to pass to {@link #put} for a tree that is about to be computed.
+   * A tree is only cached if no horse has changed in between, since it might have been computed from stale data.
+   *
+   * @return the token
+   */
+  public synchronized long token() {
+    return invalidations;
+  }
+
+  /**
+   * Cache a computed family tree.
+   *
+   * @param id the ID of the root horse
+   * @param generations the number of generations of the tree
+   * @param tree the tree
+   * @param horseIds the IDs of all horses contained in the tree
+   * @param ownerIds the IDs of all owners of horses contained in the tree
+   * @param token the value of {@link #token()} before the tree was computed
+   */
+  public synchronized void put(long id, int generations, HorseFamilyTreeDto tree, Collection<Long> horseIds,
+                               Collection<Long> ownerIds, long token) {
+    if (maxSize <= 0 || token != invalidations) {
+      return;
+    }
+    Key key = new Key(id, generations);
+    remove(key);
+    long[] ids = horseIds.stream().mapToLong(Long::longValue).toArray();
+    long[] owners = ownerIds.stream().mapToLong(Long::longValue).toArray();
+    entries.put(key, new Entry(tree, ids, owners, System.nanoTime() + ttlNanos));
+    for (long horseId : ids) {
+      treesByHorse.computeIfAbsent(horseId, k -> new HashSet<>()).add(key);
+    }
+    for (long ownerId : owners) {
+      treesByOwner.computeIfAbsent(ownerId, k -> new HashSet<>()).add(key);
+    }
+    Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+    while (entries.size() > maxSize) {
+      Map.Entry<Key, Entry> evicted = eldest.next();
+      eldest.remove();
+      unindex(evicted.getKey(), evicted.getValue());
+      sizeEvictions.increment();
+    }
+  }
+
+  /**
+   * Drop all cached trees that contain a changed horse.
+   *
+   * @param event the change of a horse
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onHorseChanged(HorseChangedEvent event) {
+    if (event.type() == HorseChangedEvent.Type.CREATED) {
+      // a new horse has no descendants yet, so it is not part of any cached tree
+      return;
+    }
+    invalidations++;
+    int invalidated = invalidate(treesByHorse.get(event.id()));
+    LOG.debug("Invalidated {} cached family trees containing horse {}", invalidated, event.id());
+  }
+
+  /**
+   * Drop all cached trees that contain a horse of a changed owner, since the trees embed the owners.
+   *
+   * @param event the change of an owner
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onOwnerChanged(OwnerChangedEvent event) {
+    if (event.type() == OwnerChangedEvent.Type.CREATED) {
+      // a new owner has no horses yet, so it is not part of any cached tree
+      return;
+    }
+    invalidations++;
+    int invalidated = invalidate(treesByOwner.get(event.id()));
+    LOG.debug("Invalidated {} cached family trees containing owner {}", invalidated, event.id());
+  }
+
+  /**
+   * Drop all cached trees, e.g. after the stored horses were changed bypassing the DAO.
+   */
+  public synchronized void clear() {
+    invalidations++;
+    invalidationEvictions.increment(entries.size());
+    entries.clear();
+    treesByHorse.clear();
+    treesByOwner.clear();
+  }
+
+  /**
+   * Get the number of cached trees.
+   *
+   * @return the number of cached trees, including expired ones that have not been evicted yet
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private int invalidate(Set<Key> keys) {
+    if (keys == null) {
+      return 0;
+    }
+    Set<Key> invalidated = Set.copyOf(keys);
+    for (Key key : invalidated) {
+      remove(key);
+      invalidationEvictions.increment();
+    }
+    return invalidated.size();
+  }
+
+  private void remove(Key key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      unindex(key, entry);
+    }
+  }
+
+  private void unindex(Key key, Entry entry) {
+    unindex(key, entry.horseIds(), treesByHorse);
+    unindex(key, entry.ownerIds(), treesByOwner);
+  }
+
+  private static void unindex(Key key, long[] ids, Map<Long, Set<Key>> index) {
+    for (long id : ids) {
+      Set<Key> keys = index.get(id);
+      if (keys != null && keys.remove(key) && keys.isEmpty()) {
+        index.remove(id);
+      }
+    }
+  }
+
+  private record Key(long id, int generations) {
+  }
+
+  private record Entry(HorseFamilyTreeDto tree, long[] horseIds, long[] ownerIds, long expiresAt) {
+  }
+}
@@ -0,0 +1,168 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * Writes horses in a compact binary format, which stores blocks of horses column by column,
+ * so that similar values are next to each other, and compress well.
+ * Only one block is held in memory at a time.
+ *
+ * <p>
+ * All numbers are big-endian. The output starts with the magic bytes {@code HRSB} and the version byte {@code 1},
+ * followed by the blocks, and ends with a block of {@code 0} horses. A block of {@code n} horses consists of
+ * </p>
+ * <ol>
+ *   <li>{@code n} as int,</li>
+ *   <li>the IDs, {@code n} longs,</li>
+ *   <li>the names, {@code n} strings,</li>
+ *   <li>the descriptions, a presence bitmap followed by a string for each horse that has one,</li>
+ *   <li>the dates of birth, {@code n} ints counting days since 1970-01-01,</li>
+ *   <li>the sexes, {@code n} bytes, {@code 'F'} or {@code 'M'},</li>
+ *   <li>the owners, dictionary-encoded: the number {@code d} of distinct owners of the block as int,
+ *     their IDs as {@code d} longs, then {@code n} ints indexing into them, {@code -1} for no owner,</li>
+ *   <li>the female parents, a presence bitmap followed by a long for each horse that has one,</li>
+ *   <li>the male parents, the same way.</li>
+ * </ol>
+ *
+ * <p>
+ * Strings are the int length of their UTF-8 encoding, followed by the encoded bytes.
+ * A presence bitmap has {@code (n + 7) / 8} bytes, where bit {@code i % 8} (least significant first)
+ * of byte {@code i / 8} is set if horse {@code i} of the block has a value.
+ * </p>
+ */
+class HorseBinaryWriter {
+  static final byte[] MAGIC = {'H', 'R', 'S', 'B'};
+  static final byte VERSION = 1;
+
+  private final DataOutputStream out;
+  private final int blockSize;
+  private final List<Horse> block;
+
+  /**
+   * Constructs a new HorseBinaryWriter, and writes the start of the format.
+   *
+   * @param out the output to write to, preferably buffered
+   * @param blockSize the number of horses per block
+   * @throws IOException if writing fails
+   */
+  HorseBinaryWriter(OutputStream out, int blockSize) throws IOException {
+    this.out = new DataOutputStream(out);
+    this.blockSize = blockSize;
+    this.block = new ArrayList<>(blockSize);
+    this.out.write(MAGIC);
+    this.out.writeByte(VERSION);
+  }
+
+  /**
+   * Write a horse, once its block is full.
+   *
+   * @param horse the horse
+   * @throws IOException if writing fails
+   */
+  void write(Horse horse) throws IOException {
+    block.add(horse);
+    if (block.size() == blockSize) {
+      writeBlock();
+    }
+  }
+
+  /**
+   * Write the last block and the end of the format. The output is flushed, but not closed.
+   *
+   * @throws IOException if writing fails
+   */
+  void finish() throws IOException {
+    if (!block.isEmpty()) {
+      writeBlock();
+    }
+    out.writeInt(0);
+    out.flush();
+  }
+
+  private void writeBlock() throws IOException {
+    out.writeInt(block.size());
+    for (Horse horse : block) {
+      out.writeLong(horse.id());
+    }
+    for (Horse horse : block) {
+      writeString(horse.name());
+    }
+    writePresence(Horse::description);
+    for (Horse horse : block) {
+      if (horse.description() != null) {
+        writeString(horse.description());
+      }
+    }
+    for (Horse horse : block) {
+      out.writeInt((int) horse.dateOfBirth().toEpochDay());
+    }
+    for (Horse horse : block) {
+      out.writeByte(horse.sex() == Sex.FEMALE ? 'F' : 'M');
+    }
+    writeOwners();
+    writeOptionalIds(Horse::parentFemaleId);
+    writeOptionalIds(Horse::parentMaleId);
+    block.clear();
+  }
+
+  private void writeOwners() throws IOException {
+    Map<Long, Integer> dictionary = new HashMap<>();
+    List<Long> ownerIds = new ArrayList<>();
+    int[] indexes = new int[block.size()];
+    for (int i = 0; i < block.size(); i++) {
+      Long ownerId = block.get(i).ownerId();
+      if (ownerId == null) {
+        indexes[i] = -1;
+      } else {
+        indexes[i] = dictionary.computeIfAbsent(ownerId, id -> {
+          ownerIds.add(id);
+          return ownerIds.size() - 1;
+        });
+      }
+    }
+    out.writeInt(ownerIds.size());
+    for (long ownerId : ownerIds) {
+      out.writeLong(ownerId);
+    }
+    for (int index : indexes) {
+      out.writeInt(index);
+    }
+  }
+
+  private void writeOptionalIds(Function<Horse, Long> column) throws IOException {
+    writePresence(column);
+    for (Horse horse : block) {
+      Long id = column.apply(horse);
+      if (id != null) {
+        out.writeLong(id);
+      }
+    }
+  }
+
+  private void writePresence(Function<Horse, ?> column) throws IOException {
+    byte[] bitmap = new byte[(block.size() + 7) / 8];
+    for (int i = 0; i < block.size(); i++) {
+      if (column.apply(block.get(i)) != null) {
+        bitmap[i / 8] |= (byte) (1 << (i % 8));
+      }
+    }
+    out.write(bitmap);
+  }
+
+  private void writeString(String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
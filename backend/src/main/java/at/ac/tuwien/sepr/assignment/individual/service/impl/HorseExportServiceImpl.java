@@ -0,0 +1,221 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
+import at.ac.tuwien.sepr.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepr.assignment.individual.mapper.OwnerMapper;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
+import at.ac.tuwien.sepr.assignment.individual.service.HorseExportService;
+import at.ac.tuwien.sepr.assignment.individual.type.ExportFormat;
+import at.ac.tuwien.sepr.assignment.individual.util.CsvWriter;
+
+/**
+ * Exports horses and owners straight from a database cursor into a gzip stream, in one of the {@link ExportFormat formats}.
+ * Apart from the result of the query, memory use is bounded by the buffers of the streams
+ * and, in the binary format, one {@link HorseBinaryWriter block} of horses.
+ * The embedded H2 database ignores the fetch size unless lazy query execution is enabled, which it is not:
+ * it buffers up to {@code MAX_MEMORY_ROWS} rows of the result on the heap, and the rest in a temporary file,
+ * before the first row is returned. So the heap used for the result grows with the table up to that limit.
+ */
+@Service
+public class HorseExportServiceImpl implements HorseExportService {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final HorseDao dao;
+  private final HorseMapper mapper;
+  private final OwnerDao ownerDao;
+  private final OwnerMapper ownerMapper;
+  private final ObjectMapper objectMapper;
+  private final int binaryBlockSize;
+
+  /**
+   * Constructs a new HorseExportServiceImpl.
+   *
+   * @param dao the DAO to read the horses from
+   * @param mapper the mapper of horses to the exported DTOs
+   * @param ownerDao the DAO to read the owners from
+   * @param ownerMapper the mapper of owners to the exported DTOs
+   * @param objectMapper the mapper to write NDJSON with
+   * @param binaryBlockSize the number of horses per block of the binary format
+   */
+  public HorseExportServiceImpl(HorseDao dao, HorseMapper mapper, OwnerDao ownerDao, OwnerMapper ownerMapper,
+                                ObjectMapper objectMapper,
+                                @Value("${app.export.binary-block-size:4096}") int binaryBlockSize) {
+    this.dao = dao;
+    this.mapper = mapper;
+    this.ownerDao = ownerDao;
+    this.ownerMapper = ownerMapper;
+    this.objectMapper = objectMapper;
+    this.binaryBlockSize = Math.max(binaryBlockSize, 1);
+  }
+
+  /**
+   * Writes all horses, ordered by ID and without their images, gzip-compressed to the output,
+   * and logs how long that took and how many bytes were written.
+   *
+   * @param format the format to write the horses in
+   * @param out the output to write to, which is not closed
+   * @return the number of exported horses
+   * @throws IOException if writing to the output fails
+   */
+  @Override
+  public long exportHorses(ExportFormat format, OutputStream out) throws IOException {
+    LOG.trace("exportHorses({})", format);
+    return export("horses", format, out, buffered -> writeHorses(format, buffered));
+  }
+
+  /**
+   * Writes all owners, ordered by ID, gzip-compressed to the output,
+   * and logs how long that took and how many bytes were written.
+   *
+   * @param format the format to write the owners in, {@link ExportFormat#CSV} or {@link ExportFormat#NDJSON}
+   * @param out the output to write to, which is not closed
+   * @return the number of exported owners
+   * @throws IOException if writing to the output fails
+   */
+  @Override
+  public long exportOwners(ExportFormat format, OutputStream out) throws IOException {
+    LOG.trace("exportOwners({})", format);
+    if (format == ExportFormat.BIN) {
+      throw new IllegalArgumentException("Owners can not be exported in the binary format");
+    }
+    return export("owners", format, out, buffered -> writeOwners(format, buffered));
+  }
+
+  private long export(String what, ExportFormat format, OutputStream out, Body body) throws IOException {
+    final long start = System.nanoTime();
+    CountingOutputStream compressed = new CountingOutputStream(out);
+    long count;
+    long uncompressedBytes;
+    // closing the gzip stream releases its native resources, but leaves the output open
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, BUFFER_SIZE)) {
+      CountingOutputStream uncompressed = new CountingOutputStream(gzip);
+      OutputStream buffered = new BufferedOutputStream(uncompressed, BUFFER_SIZE);
+      count = body.write(buffered);
+      buffered.flush();
+      uncompressedBytes = uncompressed.count;
+    }
+    LOG.info("Exported {} {} as {} in {} ms, {} bytes written, {} bytes before compression",
+        count, what, format, (System.nanoTime() - start) / 1_000_000, compressed.count, uncompressedBytes);
+    return count;
+  }
+
+  private long writeHorses(ExportFormat format, OutputStream out) throws IOException {
+    long horses = 0;
+    try (Stream<Horse> stream = dao.streamAll()) {
+      Iterator<Horse> iterator = stream.iterator();
+      switch (format) {
+        case CSV -> {
+          Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+          CsvWriter csv = new CsvWriter(writer);
+          csv.writeRecord("id", "name", "description", "dateOfBirth", "sex", "ownerId", "parentFemaleId", "parentMaleId");
+          for (; iterator.hasNext(); horses++) {
+            Horse horse = iterator.next();
+            csv.writeRecord(horse.id(), horse.name(), horse.description(), horse.dateOfBirth(), horse.sex(),
+                horse.ownerId(), horse.parentFemaleId(), horse.parentMaleId());
+          }
+          writer.flush();
+        }
+        case NDJSON -> {
+          for (; iterator.hasNext(); horses++) {
+            out.write(objectMapper.writeValueAsBytes(mapper.entityToExportDto(iterator.next())));
+            out.write('\n');
+          }
+        }
+        case BIN -> {
+          HorseBinaryWriter binary = new HorseBinaryWriter(out, binaryBlockSize);
+          for (; iterator.hasNext(); horses++) {
+            binary.write(iterator.next());
+          }
+          binary.finish();
+        }
+        default -> throw new IllegalArgumentException("Unsupported format " + format);
+      }
+    }
+    return horses;
+  }
+
+  private long writeOwners(ExportFormat format, OutputStream out) throws IOException {
+    long owners = 0;
+    try (Stream<Owner> stream = ownerDao.streamAll()) {
+      Iterator<Owner> iterator = stream.iterator();
+      switch (format) {
+        case CSV -> {
+          Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+          CsvWriter csv = new CsvWriter(writer);
+          csv.writeRecord("id", "firstName", "lastName", "email", "description");
+          for (; iterator.hasNext(); owners++) {
+            Owner owner = iterator.next();
+            csv.writeRecord(owner.id(), owner.firstName(), owner.lastName(), owner.email(), owner.description());
+          }
+          writer.flush();
+        }
+        case NDJSON -> {
+          for (; iterator.hasNext(); owners++) {
+            out.write(objectMapper.writeValueAsBytes(ownerMapper.entityToDto(iterator.next())));
+            out.write('\n');
+          }
+        }
+        default -> throw new IllegalArgumentException("Unsupported format " + format);
+      }
+    }
+    return owners;
+  }
+
+  /**
+   * Writes the exported records to the buffered, uncompressed output.
+   */
+  @FunctionalInterface
+  private interface Body {
+    long write(OutputStream out) throws IOException;
+  }
+
+  /**
+   * Counts the bytes written through it. Closing it only flushes the underlying stream.
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,613 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.RecordComponent;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jakarta.annotation.PreDestroy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchItemDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseImportDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseImportRowDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseBatchEntry;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.service.HorseImportService;
+import at.ac.tuwien.sepr.assignment.individual.service.OwnerService;
+import at.ac.tuwien.sepr.assignment.individual.type.ImportFormat;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import at.ac.tuwien.sepr.assignment.individual.util.CsvReader;
+
+/**
+ * Imports horses in a pipeline of three stages, so that reading the input, validating horses and
+ * storing them overlap, and the rows held in memory do not depend on the size of the input.
+ * Only the temporary IDs of imported horses are kept for the whole import, with their sex, date of birth
+ * and generated ID, so that later rows can refer to them as parents.
+ *
+ * <p>
+ * The request thread parses the input into rows. A second thread validates the rows with the rules of the
+ * {@link HorseValidator}, looking up the owners of many rows with one query. A third thread creates the valid
+ * horses with {@link HorseDao#createAll}, one transaction per batch of {@code app.batch.jdbc-batch-size} horses.
+ * The stages are connected by bounded queues, so a fast stage waits for a slow one instead of piling up rows.
+ * The stage threads come from one fixed pool shared by all imports. At most {@code app.import.max-concurrent}
+ * imports run at the same time, further ones wait until one of them has finished.
+ * Since every batch is committed on its own, a failing batch only loses its own horses,
+ * and horses referring to one of them as their parent.
+ * </p>
+ *
+ * <p>
+ * While an import runs, its progress is logged every {@code app.import.progress-interval}. The number of rows
+ * waiting in the queues is reported as {@code horse.import.queue.depth} with the tag {@code stage},
+ * the number of imported and failed rows as {@code horse.import.rows} with the tag {@code result}.
+ * </p>
+ */
+@Service
+public class HorseImportServiceImpl implements HorseImportService {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int MAX_RECORD_LENGTH = 64 * 1024;
+  private static final int MAX_ERRORS = 1000;
+  private static final long POLL_MILLIS = 100;
+  private static final List<String> COLUMNS = Arrays.stream(HorseImportRowDto.class.getRecordComponents())
+      .map(RecordComponent::getName)
+      .toList();
+  private static final Row END = new Row(0, null);
+
+  private final HorseValidator validator;
+  private final HorseDao dao;
+  private final OwnerService ownerService;
+  private final ObjectMapper objectMapper;
+  private final int batchSize;
+  private final int queueCapacity;
+  private final long progressIntervalNanos;
+  private final ExecutorService executor;
+  private final Semaphore slots;
+  private final Set<Run> running = ConcurrentHashMap.newKeySet();
+  private final Counter importedRows;
+  private final Counter failedRows;
+
+  /**
+   * Constructs a new HorseImportServiceImpl.
+   *
+   * @param validator the validator of the horses
+   * @param dao the DAO to create the horses with
+   * @param ownerService the service to look up the owners of the horses with
+   * @param objectMapper the mapper to read NDJSON with
+   * @param meterRegistry the registry to report queue depths and imported rows to
+   * @param batchSize the number of horses validated and created together
+   * @param queueCapacity the number of rows each stage may fall behind the one before it
+   * @param progressInterval the interval in which the progress of running imports is logged
+   * @param maxConcurrent the number of imports that may run at the same time, each using two threads of the pool
+   */
+  public HorseImportServiceImpl(
+      HorseValidator validator,
+      HorseDao dao,
+      OwnerService ownerService,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      @Value("${app.batch.jdbc-batch-size:500}") int batchSize,
+      @Value("${app.import.queue-capacity:1000}") int queueCapacity,
+      @Value("${app.import.progress-interval:5s}") Duration progressInterval,
+      @Value("${app.import.max-concurrent:2}") int maxConcurrent) {
+    this.validator = validator;
+    this.dao = dao;
+    this.ownerService = ownerService;
+    this.objectMapper = objectMapper;
+    this.batchSize = Math.max(batchSize, 1);
+    this.queueCapacity = Math.max(queueCapacity, 1);
+    this.progressIntervalNanos = progressInterval.toNanos();
+    this.slots = new Semaphore(Math.max(maxConcurrent, 1), true);
+    AtomicInteger threads = new AtomicInteger();
+    // two stages per import, so every import holding a slot gets its threads right away
+    this.executor = Executors.newFixedThreadPool(2 * Math.max(maxConcurrent, 1), runnable -> {
+      Thread thread = new Thread(runnable, "horse-import-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.importedRows = rows(meterRegistry, "imported");
+    this.failedRows = rows(meterRegistry, "failed");
+    Gauge.builder("horse.import.queue.depth", this, service -> service.queueDepth(true))
+        .tag("stage", "validate")
+        .register(meterRegistry);
+    Gauge.builder("horse.import.queue.depth", this, service -> service.queueDepth(false))
+        .tag("stage", "insert")
+        .register(meterRegistry);
+  }
+
+  private static Counter rows(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("horse.import.rows")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Stops the threads of the import stages, aborting any import still in progress.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Imports horses in the pipeline described above, waiting first if too many imports are running already.
+   *
+   * @param input the input to read the horses from
+   * @param format the format of the input
+   * @return the outcome of the import, which is not completed if it was aborted
+   */
+  @Override
+  public HorseImportDto importHorses(Reader input, ImportFormat format) {
+    LOG.trace("importHorses({})", format);
+    Run run = new Run();
+    try {
+      slots.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      run.abort("interrupted while waiting for other imports to finish");
+      return run.result();
+    }
+    running.add(run);
+    try {
+      Future<?> validating = executor.submit(() -> run.stage("validate", run::validate));
+      Future<?> inserting = executor.submit(() -> run.stage("insert", run::insert));
+      try {
+        switch (format) {
+          case CSV -> run.parseCsv(input);
+          case NDJSON -> run.parseNdjson(input);
+          default -> throw new IllegalArgumentException("Unsupported format " + format);
+        }
+        run.put(run.parsed, END);
+      } catch (IOException e) {
+        run.abort("input could not be read: " + e.getMessage());
+      } catch (Aborted e) {
+        // the reason has been reported by the stage that aborted
+      }
+      run.await(validating);
+      run.await(inserting);
+    } finally {
+      running.remove(run);
+      slots.release();
+      run.aborted = run.aborted || !run.finished;
+    }
+    HorseImportDto result = run.result();
+    LOG.info("Imported {} of {} horses in {} ms ({} rows/s), {} failed{}", result.imported(), result.rows(),
+        result.durationMillis(), Math.round(result.rowsPerSecond()), result.failed(),
+        result.completed() ? "" : ", import aborted");
+    return result;
+  }
+
+  private int queueDepth(boolean validateStage) {
+    int depth = 0;
+    for (Run run : running) {
+      depth += (validateStage ? run.parsed : run.validated).size();
+    }
+    return depth;
+  }
+
+  /**
+   * A row of the input, with its line for reporting errors.
+   */
+  private record Row(long line, HorseBatchItemDto item) {
+  }
+
+  private record LineError(long line, String message) {
+  }
+
+  /**
+   * Signals that a stage stops because the import has been aborted.
+   */
+  private static final class Aborted extends RuntimeException {
+    private Aborted() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * The state of one import, shared by its stages.
+   */
+  private final class Run {
+    private final BlockingQueue<Row> parsed = new ArrayBlockingQueue<>(queueCapacity);
+    private final BlockingQueue<Row> validated = new ArrayBlockingQueue<>(queueCapacity);
+    private final long start = System.nanoTime();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<LineError> errors = new ArrayList<>();
+    private volatile boolean aborted;
+    private volatile boolean finished;
+    private long nextProgress = start + progressIntervalNanos;
+
+    private void parseCsv(Reader input) throws IOException {
+      CsvReader csv = new CsvReader(input instanceof BufferedReader ? input : new BufferedReader(input), MAX_RECORD_LENGTH);
+      List<String> header = csv.next();
+      if (header == null) {
+        return;
+      }
+      int[] columns = new int[header.size()];
+      for (int i = 0; i < header.size(); i++) {
+        String name = header.get(i).strip();
+        columns[i] = -1;
+        for (int c = 0; c < COLUMNS.size(); c++) {
+          if (COLUMNS.get(c).equalsIgnoreCase(name)) {
+            columns[i] = c;
+          }
+        }
+        if (columns[i] < 0) {
+          abort(1, "unknown column '%s', expected some of %s".formatted(name, COLUMNS));
+          return;
+        }
+      }
+
+      while (true) {
+        List<String> fields;
+        try {
+          fields = csv.next();
+        } catch (IllegalArgumentException e) {
+          // the rest of the input can not be split into records reliably anymore
+          abort(csv.recordLine(), e.getMessage());
+          return;
+        }
+        if (fields == null) {
+          return;
+        }
+        if (fields.size() == 1 && fields.getFirst().isBlank()) {
+          continue;
+        }
+        long line = csv.recordLine();
+        rows.incrementAndGet();
+        if (fields.size() != columns.length) {
+          fail(line, List.of("Line %d: %d fields instead of %d".formatted(line, fields.size(), columns.length)));
+          continue;
+        }
+        String[] values = new String[COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+          String value = fields.get(i).strip();
+          values[columns[i]] = value.isEmpty() ? null : value;
+        }
+        List<String> conversionErrors = new ArrayList<>();
+        HorseImportRowDto row = new HorseImportRowDto(
+            values[0],
+            values[1],
+            values[2],
+            date(values[3], line, conversionErrors),
+            sex(values[4], line, conversionErrors),
+            values[5],
+            id(values[6], "owner ID", line, conversionErrors),
+            id(values[7], "female parent ID", line, conversionErrors),
+            id(values[8], "male parent ID", line, conversionErrors),
+            values[9],
+            values[10]);
+        if (conversionErrors.isEmpty()) {
+          put(parsed, new Row(line, row.toBatchItem()));
+        } else {
+          fail(line, conversionErrors);
+        }
+      }
+    }
+
+    private void parseNdjson(Reader input) throws IOException {
+      BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input);
+      long line = 0;
+      String text;
+      while ((text = reader.readLine()) != null) {
+        line++;
+        if (text.isBlank()) {
+          continue;
+        }
+        rows.incrementAndGet();
+        try {
+          HorseImportRowDto row = objectMapper.readValue(text, HorseImportRowDto.class);
+          put(parsed, new Row(line, row == null ? null : row.toBatchItem()));
+        } catch (JsonProcessingException e) {
+          fail(line, List.of("Line %d: not a valid horse: %s".formatted(line, e.getOriginalMessage())));
+        }
+      }
+    }
+
+    private static LocalDate date(String value, long line, List<String> conversionErrors) {
+      try {
+        return value == null ? null : LocalDate.parse(value);
+      } catch (DateTimeParseException e) {
+        conversionErrors.add("Line %d: date of birth '%s' is not a date like 2020-12-31".formatted(line, value));
+        return null;
+      }
+    }
+
+    private static Sex sex(String value, long line, List<String> conversionErrors) {
+      try {
+        return value == null ? null : Sex.valueOf(value.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        conversionErrors.add("Line %d: sex '%s' is neither %s".formatted(line, value, Arrays.toString(Sex.values())));
+        return null;
+      }
+    }
+
+    private static Long id(String value, String name, long line, List<String> conversionErrors) {
+      try {
+        return value == null ? null : Long.valueOf(value);
+      } catch (NumberFormatException e) {
+        conversionErrors.add("Line %d: %s '%s' is not a number".formatted(line, name, value));
+        return null;
+      }
+    }
+
+    /**
+     * Validate the parsed rows, in chunks that share one lookup of their owners.
+     * Temporary IDs are only registered for valid rows, so that children of invalid horses fail as well.
+     */
+    private void validate() {
+      Map<String, HorseValidator.NewParent> earlier = new HashMap<>();
+      List<Row> chunk = new ArrayList<>(batchSize);
+      boolean end = false;
+      while (!end) {
+        chunk.add(take(parsed));
+        parsed.drainTo(chunk, batchSize - 1);
+        if (chunk.getLast() == END) {
+          chunk.removeLast();
+          end = true;
+        }
+        Set<Long> ownerIds = new HashSet<>();
+        for (Row row : chunk) {
+          if (row.item() != null && row.item().horse() != null && row.item().horse().ownerId() != null) {
+            ownerIds.add(row.item().horse().ownerId());
+          }
+        }
+        Set<Long> existingOwnerIds = ownerIds.isEmpty() ? Set.of() : ownerService.findAllById(ownerIds).keySet();
+        for (Row row : chunk) {
+          List<String> validationErrors = new ArrayList<>();
+          List<String> conflicts = new ArrayList<>();
+          validator.validateNewHorse(row.item(), "Line " + row.line(), existingOwnerIds, earlier,
+              validationErrors, conflicts);
+          if (validationErrors.isEmpty() && conflicts.isEmpty()) {
+            HorseBatchItemDto item = row.item();
+            if (item.tempId() != null) {
+              earlier.put(item.tempId(), new HorseValidator.NewParent(item.horse().sex(), item.horse().dateOfBirth()));
+            }
+            put(validated, row);
+          } else {
+            validationErrors.addAll(conflicts);
+            fail(row.line(), validationErrors);
+          }
+        }
+        chunk.clear();
+      }
+      put(validated, END);
+    }
+
+    /**
+     * Create the validated horses in batches, resolving temporary IDs of parents either to positions
+     * in the same batch, or to the generated IDs of horses created in earlier batches.
+     */
+    private void insert() {
+      Map<String, Long> createdIds = new HashMap<>();
+      List<Row> batch = new ArrayList<>(batchSize);
+      while (true) {
+        Row row = take(validated);
+        if (row == END) {
+          break;
+        }
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+          insertBatch(batch, createdIds);
+          batch.clear();
+        }
+      }
+      insertBatch(batch, createdIds);
+      finished = true;
+    }
+
+    private void insertBatch(List<Row> batch, Map<String, Long> createdIds) {
+      Map<String, Integer> positions = new HashMap<>();
+      List<HorseBatchEntry> entries = new ArrayList<>(batch.size());
+      List<Row> rows = new ArrayList<>(batch.size());
+      for (Row row : batch) {
+        HorseBatchItemDto item = row.item();
+        HorseCreateDto horse = item.horse();
+        Long parentFemaleId = horse.parentFemaleId();
+        Long parentMaleId = horse.parentMaleId();
+        int parentFemaleIndex = HorseBatchEntry.NONE;
+        int parentMaleIndex = HorseBatchEntry.NONE;
+        if (item.parentFemaleTempId() != null) {
+          parentFemaleIndex = positions.getOrDefault(item.parentFemaleTempId(), HorseBatchEntry.NONE);
+          parentFemaleId = createdIds.get(item.parentFemaleTempId());
+          if (parentFemaleIndex == HorseBatchEntry.NONE && parentFemaleId == null) {
+            fail(row.line(), List.of("Line %d: female parent '%s' was not imported".formatted(row.line(), item.parentFemaleTempId())));
+            continue;
+          }
+        }
+        if (item.parentMaleTempId() != null) {
+          parentMaleIndex = positions.getOrDefault(item.parentMaleTempId(), HorseBatchEntry.NONE);
+          parentMaleId = createdIds.get(item.parentMaleTempId());
+          if (parentMaleIndex == HorseBatchEntry.NONE && parentMaleId == null) {
+            fail(row.line(), List.of("Line %d: male parent '%s' was not imported".formatted(row.line(), item.parentMaleTempId())));
+            continue;
+          }
+        }
+        entries.add(new HorseBatchEntry(new HorseCreateDto(horse.name(), horse.description(), horse.dateOfBirth(),
+            horse.sex(), horse.image(), horse.ownerId(), parentFemaleId, parentMaleId), parentFemaleIndex, parentMaleIndex));
+        rows.add(row);
+        if (item.tempId() != null) {
+          positions.put(item.tempId(), entries.size() - 1);
+        }
+      }
+      if (entries.isEmpty()) {
+        return;
+      }
+
+      List<Horse> created;
+      try {
+        created = dao.createAll(entries);
+      } catch (DataAccessException e) {
+        LOG.warn("Could not store batch of {} imported horses", entries.size(), e);
+        for (Row row : rows) {
+          fail(row.line(), List.of("Line %d: horse could not be stored: %s".formatted(row.line(), e.getMostSpecificCause().getMessage())));
+        }
+        return;
+      }
+      for (int i = 0; i < created.size(); i++) {
+        String tempId = rows.get(i).item().tempId();
+        if (tempId != null) {
+          createdIds.put(tempId, created.get(i).id());
+        }
+      }
+      imported.addAndGet(created.size());
+      importedRows.increment(created.size());
+    }
+
+    /**
+     * Run a stage, aborting the whole import if it fails unexpectedly.
+     */
+    private void stage(String name, Runnable body) {
+      try {
+        body.run();
+      } catch (Aborted e) {
+        // the reason has been reported by the stage that aborted
+      } catch (RuntimeException e) {
+        LOG.error("Import stage {} failed", name, e);
+        abort(0, "%s stage failed: %s".formatted(name, e.getMessage()));
+      }
+    }
+
+    private void put(BlockingQueue<Row> queue, Row row) {
+      try {
+        while (!queue.offer(row, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          checkAborted();
+          logProgress();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        abort(0, "interrupted");
+        throw new Aborted();
+      }
+      logProgress();
+    }
+
+    private Row take(BlockingQueue<Row> queue) {
+      try {
+        Row row;
+        while ((row = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+          checkAborted();
+          logProgress();
+        }
+        return row;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        abort(0, "interrupted");
+        throw new Aborted();
+      }
+    }
+
+    private void await(Future<?> stage) {
+      while (true) {
+        try {
+          stage.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          return;
+        } catch (TimeoutException e) {
+          logProgress();
+        } catch (ExecutionException e) {
+          abort(0, e.getCause().getMessage());
+          return;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          abort(0, "interrupted");
+          stage.cancel(true);
+          return;
+        }
+      }
+    }
+
+    private void checkAborted() {
+      if (aborted) {
+        throw new Aborted();
+      }
+    }
+
+    private synchronized void logProgress() {
+      long now = System.nanoTime();
+      if (now - nextProgress < 0) {
+        return;
+      }
+      nextProgress = now + progressIntervalNanos;
+      LOG.info("Importing horses for {} s: {} rows read, {} imported ({} rows/s), {} failed, queued for validation {}, for insert {}",
+          (now - start) / 1_000_000_000, rows.get(), imported.get(), Math.round(rowsPerSecond(now)), failed.get(),
+          parsed.size(), validated.size());
+    }
+
+    private double rowsPerSecond(long now) {
+      double seconds = (now - start) / 1e9;
+      return seconds > 0 ? imported.get() / seconds : 0;
+    }
+
+    private void fail(long line, List<String> messages) {
+      failed.incrementAndGet();
+      failedRows.increment();
+      synchronized (errors) {
+        for (String message : messages) {
+          if (errors.size() < MAX_ERRORS) {
+            errors.add(new LineError(line, message));
+          }
+        }
+      }
+    }
+
+    private void abort(long line, String reason) {
+      synchronized (errors) {
+        errors.add(new LineError(line, line > 0 ? "Line %d: %s, import aborted".formatted(line, reason) : "Import aborted: " + reason));
+      }
+      aborted = true;
+    }
+
+    private void abort(String reason) {
+      abort(0, reason);
+    }
+
+    private HorseImportDto result() {
+      long now = System.nanoTime();
+      List<String> messages;
+      synchronized (errors) {
+        messages = errors.stream()
+            .sorted(Comparator.comparingLong(LineError::line))
+            .map(LineError::message)
+            .toList();
+      }
+      return new HorseImportDto(!aborted, rows.get(), imported.get(), failed.get(), (now - start) / 1_000_000,
+          rowsPerSecond(now), messages);
+    }
+  }
+}
@@ -1,35 +1,71 @@
 package at.ac.tuwien.sepr.assignment.individual.service.impl;
 
 import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.AncestryDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.AncestryRebuildDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.BirthYearCountDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.DescendantCountDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchCreatedDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchItemDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseDescendantDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFacetsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFamilyTreeDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCountDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.PageDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SexCountDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import at.ac.tuwien.sepr.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseBatchEntry;
 import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseFacetCount;
+import at.ac.tuwien.sepr.assignment.individual.persistence.NameIndex;
+import at.ac.tuwien.sepr.assignment.individual.persistence.PedigreeGraph;
+import at.ac.tuwien.sepr.assignment.individual.persistence.TrigramIndex;
 import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
 import at.ac.tuwien.sepr.assignment.individual.service.OwnerService;
+import at.ac.tuwien.sepr.assignment.individual.type.HorseSort;
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import at.ac.tuwien.sepr.assignment.individual.util.PageCursor;
 
 /**
  * Implementation of {@link HorseService} that handles operations for managing horses.
@@ -38,11 +74,18 @@ import at.ac.tuwien.sepr.assignment.individual.type.Sex;
 @Service
 public class HorseServiceImpl implements HorseService {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int FAMILY_TREE_CHUNK_SIZE = 500;
+  private static final int OWNER_CHUNK_SIZE = 500;
   
   private final HorseDao dao;
   private final HorseMapper mapper;
   private final HorseValidator validator;
   private final OwnerService ownerService;
+  private final PedigreeGraph pedigree;
+  private final FamilyTreeCache familyTreeCache;
+  private final SearchResultCache searchResultCache;
+  private final NameIndex nameIndex;
+  private final TrigramIndex trigramIndex;
 
   /**
    * Constructs a new HorseServiceImpl.
@@ -51,39 +94,64 @@ public class HorseServiceImpl implements HorseService {
    * @param mapper the mapper for converting between entities and DTOs
    * @param validator the validator for horse update operations
    * @param ownerService the service for handling owner-related operations
+   * @param pedigree the in-memory pedigree of all horses, used for checks of parents
+   * @param familyTreeCache the cache of computed family trees
+   * @param searchResultCache the cache of search results
+   * @param nameIndex the in-memory index of horse names, used for suggestions
+   * @param trigramIndex the in-memory index used for substring searches, reloaded with the ancestry
    */
   @Autowired
   public HorseServiceImpl(HorseDao dao,
                           HorseMapper mapper,
                           HorseValidator validator,
-                          OwnerService ownerService) {
+                          OwnerService ownerService,
+                          PedigreeGraph pedigree,
+                          FamilyTreeCache familyTreeCache,
+                          SearchResultCache searchResultCache,
+                          NameIndex nameIndex,
+                          TrigramIndex trigramIndex) {
     this.dao = dao;
     this.mapper = mapper;
     this.validator = validator;
     this.ownerService = ownerService;
+    this.pedigree = pedigree;
+    this.familyTreeCache = familyTreeCache;
+    this.searchResultCache = searchResultCache;
+    this.nameIndex = nameIndex;
+    this.trigramIndex = trigramIndex;
   }
 
   /**
-   * Lists all horses stored in the system.
+   * Lists all horses stored in the system, from the {@link SearchResultCache} if possible.
    *
    * @return a stream of {@link HorseListDto} for all horses
    */
   @Override
   public Stream<HorseListDto> allHorses() {
-    LOG.trace("allHorses()");
-    var horses = dao.getAll();
-    Set<Long> ownerIds = horses.stream()
-        .map(Horse::ownerId)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toUnmodifiableSet());
-    Map<Long, OwnerDto> ownerMap;
-    try {
-      ownerMap = ownerService.getAllById(ownerIds);
-    } catch (NotFoundException e) {
-      throw new FatalException("Horse, that is already persisted, refers to non-existing owner", e);
+    return allHorses(false);
+  }
+
+  /**
+   * Lists all horses stored in the system.
+   *
+   * @param refresh whether to bypass the {@link SearchResultCache}, and replace the cached listing
+   * @return a stream of {@link HorseListDto} for all horses
+   */
+  @Override
+  public Stream<HorseListDto> allHorses(boolean refresh) {
+    LOG.trace("allHorses({})", refresh);
+    PageDto<HorseListDto> cached = refresh ? null : searchResultCache.get(null);
+    if (cached != null) {
+      return cached.items().stream();
     }
-    return horses.stream()
-        .map(horse -> mapper.entityToListDto(horse, ownerMap));
+    long generation = searchResultCache.generation();
+    var horses = dao.getAll();
+    Map<Long, OwnerDto> ownerMap = ownerMapForHorses(horses);
+    List<HorseListDto> listing = horses.stream()
+        .map(horse -> mapper.entityToListDto(horse, ownerMap))
+        .toList();
+    searchResultCache.put(null, new PageDto<>(listing, null), generation);
+    return listing.stream();
   }
 
   /**
@@ -99,25 +167,11 @@ public class HorseServiceImpl implements HorseService {
   public HorseDetailDto update(HorseUpdateDto horse) throws NotFoundException, ValidationException, ConflictException {
     LOG.trace("update({})", horse);
     validator.validateForUpdate(horse);
-
-    if (horse.parentFemaleId() != null) {
-      Horse parentFemale = dao.getById(horse.parentFemaleId());
-      if (!parentFemale.sex().equals(Sex.FEMALE)) {
-        throw new ValidationException("The specified parent female must be of gender FEMALE.", Collections.emptyList());
-      }
-    }
-    if (horse.parentMaleId() != null) {
-      Horse parentMale = dao.getById(horse.parentMaleId());
-      if (!parentMale.sex().equals(Sex.MALE)) {
-        throw new ValidationException("The specified parent male must be of gender MALE.", Collections.emptyList());
-      }
-    }
+    Map<Long, OwnerDto> owners =
+        resolveReferences(horse.id(), horse.dateOfBirth(), horse.ownerId(), horse.parentFemaleId(), horse.parentMaleId());
 
     var updatedHorse = dao.update(horse);
-    return mapper.entityToDetailDto(
-        updatedHorse,
-        ownerMapForSingleId(updatedHorse.ownerId())
-    );
+    return mapper.entityToDetailDto(updatedHorse, owners);
   }
 
   /**
@@ -137,6 +191,25 @@ public class HorseServiceImpl implements HorseService {
     );
   }
 
+  /**
+   * Helper method to obtain the owners of all given horses with a single call to the owner service.
+   *
+   * @param horses the horses, whose owners to get
+   * @return a map with the owner IDs as keys and their DTOs as values
+   * @throws FatalException if an owner referenced by one of the horses is not found
+   */
+  private Map<Long, OwnerDto> ownerMapForHorses(Collection<Horse> horses) {
+    Set<Long> ownerIds = horses.stream()
+        .map(Horse::ownerId)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toUnmodifiableSet());
+    try {
+      return ownerService.getAllById(ownerIds);
+    } catch (NotFoundException e) {
+      throw new FatalException("Horse, that is already persisted, refers to non-existing owner", e);
+    }
+  }
+
   /**
    * Helper method to obtain a singleton owner map for a given owner ID.
    *
@@ -167,26 +240,80 @@ public class HorseServiceImpl implements HorseService {
   public HorseDetailDto create(HorseCreateDto horseCreateDto)
       throws ValidationException, ConflictException, NotFoundException {
     LOG.trace("create({})", horseCreateDto);
-    
-    if (horseCreateDto.parentFemaleId() != null) {
-      Horse parentFemale = dao.getById(horseCreateDto.parentFemaleId());
-      if (!parentFemale.sex().equals(Sex.FEMALE)) {
-        throw new ValidationException("The specified parent female must be of gender FEMALE.", Collections.emptyList());
-      }
+
+    Map<Long, OwnerDto> owners = resolveReferences(null, horseCreateDto.dateOfBirth(), horseCreateDto.ownerId(),
+        horseCreateDto.parentFemaleId(), horseCreateDto.parentMaleId());
+
+    Horse createdHorse = dao.create(horseCreateDto);
+    return mapper.entityToDetailDto(createdHorse, owners);
+  }
+
+  /**
+   * Resolves the owner and the parents of a horse that is about to be created or updated, before anything is written.
+   * The parents are checked against the in-memory pedigree, which needs no query at all.
+   * The owner is fetched with a single query, and returned to build the response with,
+   * instead of fetching it again after the write.
+   *
+   * @param id             the ID of the horse, {@code null} if it is about to be created
+   * @param dateOfBirth    the date of birth of the horse, may be null
+   * @param ownerId        the ID of the owner, may be null
+   * @param parentFemaleId the ID of the female parent, may be null
+   * @param parentMaleId   the ID of the male parent, may be null
+   * @return a map with the owner of the horse, or {@code null} if it has none
+   * @throws NotFoundException   if one of the parents does not exist
+   * @throws ValidationException if one of the parents has the wrong sex
+   * @throws ConflictException   if the owner does not exist, or the parents conflict with the family tree
+   */
+  private Map<Long, OwnerDto> resolveReferences(Long id, LocalDate dateOfBirth, Long ownerId,
+                                                Long parentFemaleId, Long parentMaleId)
+      throws NotFoundException, ValidationException, ConflictException {
+    validator.validateParents(id, dateOfBirth, parentFemaleId, parentMaleId);
+    if (ownerId == null) {
+      return null;
+    }
+    Map<Long, OwnerDto> owners = ownerService.findAllById(List.of(ownerId));
+    if (!owners.containsKey(ownerId)) {
+      throw new ConflictException("Owner of horse not found", List.of("Owner %d does not exist".formatted(ownerId)));
     }
-    if (horseCreateDto.parentMaleId() != null) {
-      Horse parentMale = dao.getById(horseCreateDto.parentMaleId());
-      if (!parentMale.sex().equals(Sex.MALE)) {
-        throw new ValidationException("The specified parent male must be of gender MALE.", Collections.emptyList());
+    return owners;
+  }
+
+  /**
+   * Creates many horses at once. Owners are checked with a single query, and parents against the in-memory pedigree
+   * or the batch itself, before the horses are inserted in JDBC batches within one transaction.
+   *
+   * @param items the horses to create, parents before their children
+   * @return the temporary and generated IDs of the created horses, in the given order
+   * @throws ValidationException if any horse is invalid, or refers to a missing owner or parent
+   * @throws ConflictException if the parents of any horse conflict with the family tree
+   */
+  @Override
+  public List<HorseBatchCreatedDto> createAll(List<HorseBatchItemDto> items) throws ValidationException, ConflictException {
+    LOG.trace("createAll({} horses)", items == null ? null : items.size());
+    Set<Long> ownerIds = items == null
+        ? Set.of()
+        : items.stream()
+            .filter(item -> item != null && item.horse() != null && item.horse().ownerId() != null)
+            .map(item -> item.horse().ownerId())
+            .collect(Collectors.toSet());
+    validator.validateForBatchCreate(items, ownerService.findAllById(ownerIds).keySet());
+
+    Map<String, Integer> positions = new HashMap<>();
+    List<HorseBatchEntry> entries = new ArrayList<>(items.size());
+    for (HorseBatchItemDto item : items) {
+      entries.add(new HorseBatchEntry(item.horse(),
+          positions.getOrDefault(item.parentFemaleTempId(), HorseBatchEntry.NONE),
+          positions.getOrDefault(item.parentMaleTempId(), HorseBatchEntry.NONE)));
+      if (item.tempId() != null) {
+        positions.put(item.tempId(), entries.size() - 1);
       }
     }
-    
-    Horse createdHorse = dao.create(horseCreateDto);
-    
-    return mapper.entityToDetailDto(
-        createdHorse,
-        ownerMapForSingleId(createdHorse.ownerId())
-    );
+    List<Horse> created = dao.createAll(entries);
+    List<HorseBatchCreatedDto> result = new ArrayList<>(created.size());
+    for (int i = 0; i < created.size(); i++) {
+      result.add(new HorseBatchCreatedDto(items.get(i).tempId(), created.get(i).id()));
+    }
+    return result;
   }
 
   /**
@@ -205,23 +332,351 @@ public class HorseServiceImpl implements HorseService {
    *
    * <p>
    * The search criteria may include filters for name, description, birth date (older than a given date),
-   * sex, and owner. When multiple criteria are provided, only horses matching all criteria are returned.
+   * sex, owner, and parents. When multiple criteria are provided, only horses matching all criteria are returned.
    * If no criteria are provided, all horses are listed.
    * </p>
    *
+   * <p>
+   * If a limit is given, one horse more than the limit is fetched, to know whether there is a next page.
+   * </p>
+   *
    * @param criteria the {@link HorseSearchDto} encapsulating the search parameters
-   * @return a stream of {@link HorseListDto} objects representing the horses that match the criteria
+   * @return the page of {@link HorseListDto} objects representing the horses that match the criteria
    * @throws NotFoundException if no horses match the criteria or if a referenced entity is missing
+   * @throws ValidationException if the limit or the cursor is not valid
    */
   @Override
-  public Stream<HorseListDto> search(HorseSearchDto criteria) throws NotFoundException {
-    List<Horse> horses = dao.search(criteria);
+  public PageDto<HorseListDto> search(HorseSearchDto criteria) throws NotFoundException, ValidationException {
+    return search(criteria, false);
+  }
+
+  /**
+   * Searches for horses that match the provided search criteria, from the {@link SearchResultCache} if possible.
+   * The criteria are normalized first, so that e.g. searches that only differ in case share their result.
+   *
+   * @param criteria the {@link HorseSearchDto} encapsulating the search parameters
+   * @param refresh whether to bypass the cache, and replace the cached result
+   * @return the page of {@link HorseListDto} objects representing the horses that match the criteria
+   * @throws NotFoundException if a referenced entity is missing
+   * @throws ValidationException if the limit or the cursor is not valid
+   */
+  @Override
+  public PageDto<HorseListDto> search(HorseSearchDto criteria, boolean refresh)
+      throws NotFoundException, ValidationException {
+    LOG.trace("search({}, {})", criteria, refresh);
+    validator.validateForSearch(criteria);
+    HorseSearchDto normalized = criteria.normalized();
+    PageDto<HorseListDto> cached = refresh ? null : searchResultCache.get(normalized);
+    if (cached != null) {
+      return cached;
+    }
+    long generation = searchResultCache.generation();
+    PageDto<HorseListDto> page = loadPage(normalized);
+    searchResultCache.put(normalized, page, generation);
+    return page;
+  }
+
+  private PageDto<HorseListDto> loadPage(HorseSearchDto criteria) throws NotFoundException {
+    Integer limit = criteria.limit();
+    List<Horse> horses = dao.search(limit == null ? criteria : criteria.withLimit(limit + 1));
+    String nextCursor = null;
+    if (limit != null && horses.size() > limit) {
+      horses = horses.subList(0, limit);
+      nextCursor = cursorAfter(criteria.sortOrDefault(), horses.getLast()).encode();
+    }
     Set<Long> ownerIds = horses.stream()
         .map(Horse::ownerId)
         .filter(Objects::nonNull)
         .collect(Collectors.toSet());
     Map<Long, OwnerDto> ownerMap = ownerService.getAllById(ownerIds);
+    return new PageDto<>(
+        horses.stream()
+            .map(horse -> mapper.entityToListDto(horse, ownerMap))
+            .toList(),
+        nextCursor);
+  }
+
+  /**
+   * Searches for horses like {@link #search}, but streams the matches from a database cursor.
+   * Owners are resolved chunk by chunk as the stream advances, with one query per chunk,
+   * so that only one chunk of horses and their owners is held in memory at a time.
+   *
+   * @param criteria the {@link HorseSearchDto} encapsulating the search parameters
+   * @return a stream of {@link HorseListDto} objects representing the horses that match the criteria,
+   *     which holds a database connection until it is closed
+   * @throws ValidationException if the limit or the cursor is not valid
+   */
+  @Override
+  public Stream<HorseListDto> streamSearch(HorseSearchDto criteria) throws ValidationException {
+    LOG.trace("streamSearch({})", criteria);
+    validator.validateForSearch(criteria);
+    Stream<Horse> horses = dao.streamSearch(criteria);
+    Iterator<Horse> rows = horses.iterator();
+    Iterator<List<Horse>> chunks = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return rows.hasNext();
+      }
+
+      @Override
+      public List<Horse> next() {
+        List<Horse> chunk = new ArrayList<>(OWNER_CHUNK_SIZE);
+        while (chunk.size() < OWNER_CHUNK_SIZE && rows.hasNext()) {
+          chunk.add(rows.next());
+        }
+        return chunk;
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+        .onClose(horses::close)
+        .flatMap(chunk -> {
+          Map<Long, OwnerDto> ownerMap = ownerMapForHorses(chunk);
+          return chunk.stream().map(horse -> mapper.entityToListDto(horse, ownerMap));
+        });
+  }
+
+  /**
+   * Counts the horses matching the criteria, broken down by sex, by range of birth years, and by owner.
+   * The persistent data store groups the matches by all three at once, in one pass,
+   * and the much fewer groups are then summed up per facet here.
+   *
+   * @param criteria the search criteria, whose order, limit and cursor are ignored
+   * @param yearsPerBucket the number of birth years that are counted together
+   * @param maxOwners the maximum number of owners to return counts for
+   * @return the counts of the matching horses
+   * @throws ValidationException if the number of years per range or of owners is out of the supported range
+   */
+  @Override
+  public HorseFacetsDto facets(HorseSearchDto criteria, int yearsPerBucket, int maxOwners) throws ValidationException {
+    LOG.trace("facets({}, {}, {})", criteria, yearsPerBucket, maxOwners);
+    validator.validateForFacets(yearsPerBucket, maxOwners);
+    long total = 0;
+    Map<Sex, Long> sexes = new EnumMap<>(Sex.class);
+    Map<Integer, Long> buckets = new TreeMap<>();
+    Map<Long, Long> owners = new HashMap<>();
+    for (HorseFacetCount count : dao.countFacets(criteria)) {
+      switch (count.facet()) {
+        case SEX -> {
+          // every horse has a sex, so these counts add up to all matches
+          total += count.count();
+          sexes.put(count.sex(), count.count());
+        }
+        case BIRTH_YEAR -> buckets.merge(Math.floorDiv(count.birthYear(), yearsPerBucket) * yearsPerBucket, count.count(), Long::sum);
+        // a HashMap takes the null key, for the horses without owner
+        case OWNER -> owners.put(count.ownerId(), count.count());
+        default -> throw new IllegalStateException("Unknown facet " + count.facet());
+      }
+    }
+    List<Map.Entry<Long, Long>> topOwners = owners.entrySet().stream()
+        .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey(Comparator.nullsLast(Comparator.naturalOrder()))))
+        .limit(maxOwners)
+        .toList();
+    Map<Long, OwnerDto> ownerMap;
+    try {
+      ownerMap = ownerService.getAllById(topOwners.stream().map(Map.Entry::getKey).filter(Objects::nonNull).toList());
+    } catch (NotFoundException e) {
+      throw new FatalException("Horse, that is already persisted, refers to non-existing owner", e);
+    }
+    return new HorseFacetsDto(
+        total,
+        sexes.entrySet().stream()
+            .map(entry -> new SexCountDto(entry.getKey(), entry.getValue()))
+            .toList(),
+        buckets.entrySet().stream()
+            .map(entry -> new BirthYearCountDto(entry.getKey(), entry.getKey() + yearsPerBucket - 1, entry.getValue()))
+            .toList(),
+        topOwners.stream()
+            .map(entry -> new OwnerCountDto(entry.getKey() == null ? null : ownerMap.get(entry.getKey()), entry.getValue()))
+            .toList());
+  }
+
+  /**
+   * Suggests horses whose name starts with the given text, from the in-memory {@link NameIndex}.
+   *
+   * @param query the beginning of the name, compared case-insensitively
+   * @param limit the maximum number of horses to suggest
+   * @return the suggested horses, ordered by name, so that an exact match comes first
+   * @throws ValidationException if the limit is out of the supported range
+   */
+  @Override
+  public List<SuggestionDto> suggest(String query, int limit) throws ValidationException {
+    LOG.trace("suggest({}, {})", query, limit);
+    validator.validateForNameSuggestions(limit);
+    if (query == null || query.isBlank()) {
+      return List.of();
+    }
+    return nameIndex.findHorses(query.strip(), limit).stream()
+        .map(entry -> new SuggestionDto(entry.id(), entry.label()))
+        .toList();
+  }
+
+  private static PageCursor cursorAfter(HorseSort sort, Horse horse) {
+    String key = switch (sort) {
+      case ID -> "";
+      // the value of the generated column name_lower
+      case NAME -> horse.name().toLowerCase(Locale.ROOT);
+      case DATE_OF_BIRTH -> horse.dateOfBirth().toString();
+    };
+    return new PageCursor(sort.name(), key, horse.id());
+  }
+
+  /**
+   * Retrieves the family tree of a horse, from the {@link FamilyTreeCache} if possible.
+   * All ancestors are loaded with one indexed lookup of the stored ancestry, and all of their owners with another query.
+   *
+   * @param id the ID of the horse whose family tree to get
+   * @param generations the number of ancestor generations to include
+   * @return the family tree with the horse with ID {@code id} at its root
+   * @throws NotFoundException if no horse with the given ID exists
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  @Override
+  public HorseFamilyTreeDto getFamilyTree(long id, int generations) throws NotFoundException, ValidationException {
+    LOG.trace("getFamilyTree({}, {})", id, generations);
+    validator.validateFamilyTreeGenerations(generations);
+    HorseFamilyTreeDto cached = familyTreeCache.get(id, generations);
+    if (cached != null) {
+      return cached;
+    }
+    long token = familyTreeCache.token();
+    Map<Long, Horse> horses = dao.getFamilyTree(id, generations).stream()
+        .collect(Collectors.toUnmodifiableMap(Horse::id, Function.identity()));
+    Map<Long, OwnerDto> ownerMap = ownerMapForHorses(horses.values());
+    HorseFamilyTreeDto tree = mapper.entityToFamilyTreeDto(horses.get(id), horses, ownerMap, generations);
+    familyTreeCache.put(id, generations, tree, horses.keySet(), ownerMap.keySet(), token);
+    return tree;
+  }
+
+  /**
+   * Retrieves the family trees of many horses, chunk by chunk of roots.
+   * For every chunk, the ancestors are loaded breadth-first with one query per generation for all roots together,
+   * so that ancestors shared by several roots are loaded only once; their owners are loaded with one more query.
+   * Only one chunk is held in memory at a time.
+   *
+   * @param ids the IDs of the horses whose family trees to get
+   * @param generations the number of ancestor generations to include
+   * @return a stream of the family trees, in the order of the given IDs
+   * @throws NotFoundException if one of the horses does not exist
+   * @throws ValidationException if there are no or too many IDs, or the number of generations is out of range
+   */
+  @Override
+  public Stream<HorseFamilyTreeDto> getFamilyTrees(List<Long> ids, int generations)
+      throws NotFoundException, ValidationException {
+    LOG.trace("getFamilyTrees({} ids, {})", ids == null ? null : ids.size(), generations);
+    validator.validateForFamilyTreeBatch(ids, generations);
+    for (long id : ids) {
+      requireExists(id);
+    }
+    int chunks = (ids.size() + FAMILY_TREE_CHUNK_SIZE - 1) / FAMILY_TREE_CHUNK_SIZE;
+    return IntStream.range(0, chunks)
+        .boxed()
+        .flatMap(chunk -> loadFamilyTrees(
+            ids.subList(chunk * FAMILY_TREE_CHUNK_SIZE, Math.min((chunk + 1) * FAMILY_TREE_CHUNK_SIZE, ids.size())),
+            generations));
+  }
+
+  private Stream<HorseFamilyTreeDto> loadFamilyTrees(List<Long> rootIds, int generations) {
+    Map<Long, Horse> horses = new HashMap<>();
+    Set<Long> frontier = new HashSet<>(rootIds);
+    for (int generation = 0; generation <= generations && !frontier.isEmpty(); generation++) {
+      Set<Long> parents = new HashSet<>();
+      for (Horse horse : dao.getAllById(frontier)) {
+        horses.put(horse.id(), horse);
+        parents.add(horse.parentFemaleId());
+        parents.add(horse.parentMaleId());
+      }
+      parents.remove(null);
+      parents.removeAll(horses.keySet());
+      frontier = parents;
+    }
+    Map<Long, OwnerDto> ownerMap = ownerMapForHorses(horses.values());
+    return rootIds.stream()
+        .map(id -> mapper.entityToFamilyTreeDto(horses.get(id), horses, ownerMap, generations));
+  }
+
+  /**
+   * Retrieves the descendants of a horse, generation by generation.
+   * The descendants are determined from the in-memory {@link PedigreeGraph};
+   * each generation is then loaded with one query when the returned stream reaches it.
+   *
+   * @param id the ID of the horse whose descendants to get
+   * @param generations the number of generations to include
+   * @return a stream of the descendants, ordered by generation and date of birth
+   * @throws NotFoundException if no horse with the given ID exists
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  @Override
+  public Stream<HorseDescendantDto> getDescendants(long id, int generations) throws NotFoundException, ValidationException {
+    LOG.trace("getDescendants({}, {})", id, generations);
+    validator.validateGenerations(generations);
+    requireExists(id);
+    long[][] descendants = pedigree.descendantsByGeneration(id, generations);
+    return IntStream.range(0, descendants.length)
+        .boxed()
+        .flatMap(generation -> loadGeneration(descendants[generation], generation + 1));
+  }
+
+  /**
+   * Checks whether one horse is an ancestor of another one, using the ancestry stored with the horses.
+   *
+   * @param ancestorId the ID of the potential ancestor
+   * @param id the ID of the horse whose ancestors to check
+   * @return the result of the check
+   * @throws NotFoundException if one of the horses does not exist
+   */
+  @Override
+  public AncestryDto isAncestor(long ancestorId, long id) throws NotFoundException {
+    LOG.trace("isAncestor({}, {})", ancestorId, id);
+    requireExists(ancestorId);
+    requireExists(id);
+    return new AncestryDto(ancestorId, id, dao.isAncestor(ancestorId, id));
+  }
+
+  /**
+   * Counts all descendants of a horse, using the ancestry stored with the horses.
+   *
+   * @param id the ID of the horse whose descendants to count
+   * @return the number of descendants
+   * @throws NotFoundException if the horse does not exist
+   */
+  @Override
+  public DescendantCountDto countDescendants(long id) throws NotFoundException {
+    LOG.trace("countDescendants({})", id);
+    requireExists(id);
+    return new DescendantCountDto(id, dao.countDescendants(id));
+  }
+
+  /**
+   * Recomputes the stored ancestry of all horses. Since the horses were written bypassing the DAO,
+   * the in-memory pedigree and indexes are reloaded as well, and the caches are cleared.
+   *
+   * @return the number of stored ancestor-descendant pairs and the time the rebuild took
+   */
+  @Override
+  public AncestryRebuildDto rebuildAncestry() {
+    LOG.trace("rebuildAncestry()");
+    final long start = System.nanoTime();
+    final int pairs = dao.rebuildAncestry();
+    pedigree.load();
+    trigramIndex.load();
+    nameIndex.load();
+    familyTreeCache.clear();
+    searchResultCache.clear();
+    return new AncestryRebuildDto(pairs, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private void requireExists(long id) throws NotFoundException {
+    if (!pedigree.contains(id)) {
+      throw new NotFoundException("No horse with ID %d found".formatted(id));
+    }
+  }
+
+  private Stream<HorseDescendantDto> loadGeneration(long[] ids, int generation) {
+    List<Horse> horses = dao.getAllById(LongStream.of(ids).boxed().toList());
+    Map<Long, OwnerDto> ownerMap = ownerMapForHorses(horses);
     return horses.stream()
-        .map(horse -> mapper.entityToListDto(horse, ownerMap));
-  }  
-}
\ No newline at end of file
+        .sorted(Comparator.comparing(Horse::dateOfBirth).thenComparing(Horse::id))
+        .map(horse -> mapper.entityToDescendantDto(horse, generation, ownerMap));
+  }
+}
@@ -1,12 +1,31 @@
 package at.ac.tuwien.sepr.assignment.individual.service.impl;
 
 
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchItemDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.PedigreeGraph;
+import at.ac.tuwien.sepr.assignment.individual.type.HorseSort;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import at.ac.tuwien.sepr.assignment.individual.util.PageCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -17,6 +36,31 @@ import org.springframework.stereotype.Component;
 @Component
 public class HorseValidator {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int MAX_GENERATIONS = 30;
+  // a nested family tree repeats a shared ancestor for every path reaching it, so it grows exponentially with its depth
+  private static final int MAX_FAMILY_TREE_GENERATIONS = 12;
+  private static final int MAX_MATE_SUGGESTIONS = 100;
+  private static final int MAX_FAMILY_TREE_BATCH = 10_000;
+  private static final int MAX_NAME_SUGGESTIONS = 50;
+  private static final int MAX_YEARS_PER_BUCKET = 100;
+  private static final int MAX_OWNER_FACETS = 100;
+  private static final int MAX_BATCH_CREATE = 100_000;
+
+  private final PedigreeGraph pedigree;
+  private final Timer parentCheckTimer;
+
+  /**
+   * Constructs a new HorseValidator.
+   *
+   * @param pedigree the in-memory pedigree of all horses, used for checks of parents
+   * @param meterRegistry the registry to report the duration of parent checks to
+   */
+  public HorseValidator(PedigreeGraph pedigree, MeterRegistry meterRegistry) {
+    this.pedigree = pedigree;
+    this.parentCheckTimer = Timer.builder("horse.parents.check")
+        .description("Time taken to check the parents assigned to a horse against the family tree")
+        .register(meterRegistry);
+  }
 
 
   /**
@@ -49,4 +93,362 @@ public class HorseValidator {
 
   }
 
+  /**
+   * Validates the parents assigned to a horse that is created or updated.
+   * The parents have to exist and have the sex matching their role.
+   * Furthermore, they must be born before the horse and must not be the horse itself or one of its descendants,
+   * and all children of an updated horse must be born after it.
+   * The checks are answered by the in-memory {@link PedigreeGraph}, without querying the persistent data store.
+   * As the graph may not yet contain concurrent updates, {@link HorseDao#update} checks for cycles once more
+   * before writing new parent links.
+   *
+   * @param id             the ID of the horse, {@code null} if it is about to be created
+   * @param dateOfBirth    the date of birth of the horse, may be null
+   * @param parentFemaleId the ID of the female parent, may be null
+   * @param parentMaleId   the ID of the male parent, may be null
+   * @throws NotFoundException   if one of the parents does not exist
+   * @throws ValidationException if one of the parents has the wrong sex
+   * @throws ConflictException   if the parents would make the family tree cyclic or chronologically impossible
+   */
+  public void validateParents(Long id, LocalDate dateOfBirth, Long parentFemaleId, Long parentMaleId)
+      throws NotFoundException, ValidationException, ConflictException {
+    LOG.trace("validateParents({}, {}, {}, {})", id, dateOfBirth, parentFemaleId, parentMaleId);
+    Timer.Sample sample = Timer.start();
+    try {
+      validateParentSex(parentFemaleId, Sex.FEMALE);
+      validateParentSex(parentMaleId, Sex.MALE);
+
+      List<String> conflicts = new ArrayList<>();
+      validateLineage(id, dateOfBirth, parentFemaleId, conflicts);
+      validateLineage(id, dateOfBirth, parentMaleId, conflicts);
+      if (id != null && dateOfBirth != null) {
+        for (long childId : pedigree.children(id)) {
+          LocalDate childDateOfBirth = pedigree.dateOfBirth(childId);
+          if (childDateOfBirth != null && !childDateOfBirth.isAfter(dateOfBirth)) {
+            conflicts.add("Child %d is not born after the horse".formatted(childId));
+          }
+        }
+      }
+
+      if (!conflicts.isEmpty()) {
+        throw new ConflictException("Parents of horse conflict with the family tree", conflicts);
+      }
+    } finally {
+      sample.stop(parentCheckTimer);
+    }
+  }
+
+  private void validateParentSex(Long parentId, Sex expected) throws NotFoundException, ValidationException {
+    if (parentId == null) {
+      return;
+    }
+    Sex sex = pedigree.sex(parentId);
+    if (sex == null) {
+      throw new NotFoundException("No horse with ID %d found".formatted(parentId));
+    }
+    if (sex != expected) {
+      throw new ValidationException("The specified parent %s must be of gender %s."
+          .formatted(expected.name().toLowerCase(Locale.ROOT), expected), Collections.emptyList());
+    }
+  }
+
+  private void validateLineage(Long id, LocalDate dateOfBirth, Long parentId, List<String> conflicts) {
+    if (parentId == null) {
+      return;
+    }
+    if (id != null) {
+      if (parentId.equals(id)) {
+        conflicts.add("Horse can not be its own parent");
+      } else if (pedigree.isAncestor(id, parentId)) {
+        conflicts.add("Parent %d is a descendant of the horse".formatted(parentId));
+      }
+    }
+    LocalDate parentDateOfBirth = pedigree.dateOfBirth(parentId);
+    if (dateOfBirth != null && parentDateOfBirth != null && !parentDateOfBirth.isBefore(dateOfBirth)) {
+      conflicts.add("Parent %d is not born before the horse".formatted(parentId));
+    }
+  }
+
+  /**
+   * A horse that is created together with others, as far as it matters for validating its children,
+   * which refer to it by its temporary ID.
+   *
+   * @param sex         the sex of the horse
+   * @param dateOfBirth the date of birth of the horse
+   */
+  public record NewParent(Sex sex, LocalDate dateOfBirth) {
+  }
+
+  /**
+   * Validates a batch of horses before creating them, reporting the problems of all horses at once.
+   * See {@link #validateNewHorse} for the checks of each horse.
+   *
+   * @param items            the horses to create, in the order in which they are created
+   * @param existingOwnerIds the IDs of those owners referenced by the horses that exist
+   * @throws ValidationException if a horse is incomplete, or refers to a missing owner or parent,
+   *                             or to a parent of the wrong sex
+   * @throws ConflictException   if a parent is not born before its child
+   */
+  public void validateForBatchCreate(List<HorseBatchItemDto> items, Set<Long> existingOwnerIds)
+      throws ValidationException, ConflictException {
+    LOG.trace("validateForBatchCreate({} horses)", items == null ? null : items.size());
+    if (items == null || items.isEmpty() || items.size() > MAX_BATCH_CREATE) {
+      throw new ValidationException("Validation of horse batch failed",
+          List.of("Between 1 and %d horses must be given".formatted(MAX_BATCH_CREATE)));
+    }
+    List<String> validationErrors = new ArrayList<>();
+    List<String> conflicts = new ArrayList<>();
+    Map<String, NewParent> earlier = new HashMap<>();
+    for (int i = 0; i < items.size(); i++) {
+      HorseBatchItemDto item = items.get(i);
+      validateNewHorse(item, "Horse %d".formatted(i), existingOwnerIds, earlier, validationErrors, conflicts);
+      if (item != null && item.horse() != null && item.tempId() != null) {
+        earlier.putIfAbsent(item.tempId(), new NewParent(item.horse().sex(), item.horse().dateOfBirth()));
+      }
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of horse batch failed", validationErrors);
+    }
+    if (!conflicts.isEmpty()) {
+      throw new ConflictException("Parents of horses in batch conflict with the family tree", conflicts);
+    }
+  }
+
+  /**
+   * Validates one of many horses that are created together, collecting its problems instead of throwing them.
+   * Every horse needs a name, a date of birth and a sex. Owners have to exist.
+   * Parents are either existing horses, checked against the in-memory {@link PedigreeGraph},
+   * or horses created earlier together with this one, referred to by their temporary ID.
+   * Either way, they must have the sex matching their role and be born before their child.
+   *
+   * @param item             the horse to create
+   * @param label            the label to start the problems of this horse with, e.g. its position
+   * @param existingOwnerIds the IDs of existing owners, containing at least those referenced by the horse
+   * @param earlier          the horses created earlier, by their temporary IDs
+   * @param validationErrors the list to add invalid data to
+   * @param conflicts        the list to add conflicts with the family tree to
+   */
+  public void validateNewHorse(HorseBatchItemDto item, String label, Set<Long> existingOwnerIds,
+                               Map<String, NewParent> earlier, List<String> validationErrors, List<String> conflicts) {
+    if (item == null || item.horse() == null) {
+      validationErrors.add(label + ": no horse given");
+      return;
+    }
+    HorseCreateDto horse = item.horse();
+    if (horse.name() == null || horse.name().isBlank()) {
+      validationErrors.add(label + ": name is missing");
+    } else if (horse.name().length() > 255) {
+      validationErrors.add(label + ": name too long: longer than 255 characters");
+    }
+    if (horse.description() != null && (horse.description().isBlank() || horse.description().length() > 4095)) {
+      validationErrors.add(label + ": description is given but blank, or longer than 4095 characters");
+    }
+    if (horse.dateOfBirth() == null) {
+      validationErrors.add(label + ": date of birth is missing");
+    }
+    if (horse.sex() == null) {
+      validationErrors.add(label + ": sex is missing");
+    }
+    if (horse.ownerId() != null && !existingOwnerIds.contains(horse.ownerId())) {
+      validationErrors.add(label + ": owner %d not found".formatted(horse.ownerId()));
+    }
+    validateNewParent(horse, label, earlier, Sex.FEMALE, horse.parentFemaleId(), item.parentFemaleTempId(),
+        validationErrors, conflicts);
+    validateNewParent(horse, label, earlier, Sex.MALE, horse.parentMaleId(), item.parentMaleTempId(),
+        validationErrors, conflicts);
+    if (item.tempId() != null && earlier.containsKey(item.tempId())) {
+      validationErrors.add(label + ": temporary ID '%s' is used more than once".formatted(item.tempId()));
+    }
+  }
+
+  private void validateNewParent(HorseCreateDto horse, String horseLabel, Map<String, NewParent> earlier,
+                                 Sex expected, Long parentId, String parentTempId,
+                                 List<String> validationErrors, List<String> conflicts) {
+    String label = "%s: %s parent".formatted(horseLabel, expected.name().toLowerCase(Locale.ROOT));
+    Sex sex;
+    LocalDate dateOfBirth;
+    if (parentId != null && parentTempId != null) {
+      validationErrors.add(label + " is given both by ID and by temporary ID");
+      return;
+    }
+    if (parentTempId != null) {
+      // only earlier horses, since parents have to be created before their children
+      NewParent parent = earlier.get(parentTempId);
+      if (parent == null) {
+        validationErrors.add(label + " '%s' is not defined earlier".formatted(parentTempId));
+        return;
+      }
+      sex = parent.sex();
+      dateOfBirth = parent.dateOfBirth();
+    } else if (parentId != null) {
+      sex = pedigree.sex(parentId);
+      if (sex == null) {
+        validationErrors.add(label + " %d not found".formatted(parentId));
+        return;
+      }
+      dateOfBirth = pedigree.dateOfBirth(parentId);
+    } else {
+      return;
+    }
+    if (sex != null && sex != expected) {
+      validationErrors.add(label + " must be of gender " + expected);
+    }
+    if (dateOfBirth != null && horse.dateOfBirth() != null && !dateOfBirth.isBefore(horse.dateOfBirth())) {
+      conflicts.add(label + " is not born before the horse");
+    }
+  }
+
+  /**
+   * Validates the paging parameters of a horse search.
+   *
+   * @param criteria the search criteria
+   * @throws ValidationException if the limit is not positive, or the cursor is malformed or was issued for another order
+   */
+  public void validateForSearch(HorseSearchDto criteria) throws ValidationException {
+    LOG.trace("validateForSearch({})", criteria);
+    List<String> validationErrors = new ArrayList<>();
+
+    if (criteria.limit() != null && criteria.limit() < 1) {
+      validationErrors.add("Limit must be positive");
+    }
+    if (criteria.cursor() != null) {
+      try {
+        PageCursor cursor = PageCursor.decode(criteria.cursor(), criteria.sortOrDefault().name());
+        if (criteria.sortOrDefault() == HorseSort.DATE_OF_BIRTH) {
+          LocalDate.parse(cursor.key());
+        }
+      } catch (IllegalArgumentException | DateTimeParseException e) {
+        validationErrors.add("Cursor is not valid for this search: " + e.getMessage());
+      }
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of horse search failed", validationErrors);
+    }
+  }
+
+  /**
+   * Validates the number of generations requested for a walk through the pedigree,
+   * i.e. when requesting the descendants of a horse or analyzing its ancestry.
+   *
+   * @param generations the number of generations to walk
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  public void validateGenerations(int generations) throws ValidationException {
+    LOG.trace("validateGenerations({})", generations);
+    if (generations < 0 || generations > MAX_GENERATIONS) {
+      throw new ValidationException("Validation of family tree request failed",
+          List.of("Generations must be between 0 and %d".formatted(MAX_GENERATIONS)));
+    }
+  }
+
+  /**
+   * Validates the number of generations requested for a nested family tree.
+   * Fewer generations are allowed than for walks through the pedigree, since every path to a shared ancestor
+   * repeats it in the tree, so the size of the tree grows exponentially with the number of generations.
+   *
+   * @param generations the number of ancestor generations to include
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  public void validateFamilyTreeGenerations(int generations) throws ValidationException {
+    LOG.trace("validateFamilyTreeGenerations({})", generations);
+    if (generations < 0 || generations > MAX_FAMILY_TREE_GENERATIONS) {
+      throw new ValidationException("Validation of family tree request failed",
+          List.of("Generations must be between 0 and %d".formatted(MAX_FAMILY_TREE_GENERATIONS)));
+    }
+  }
+
+  /**
+   * Validates a request for the family trees of many horses at once.
+   *
+   * @param ids         the IDs of the horses whose family trees to get
+   * @param generations the number of ancestor generations to include
+   * @throws ValidationException if there are no or too many IDs, or the number of generations is out of range
+   */
+  public void validateForFamilyTreeBatch(List<Long> ids, int generations) throws ValidationException {
+    LOG.trace("validateForFamilyTreeBatch({} ids, {})", ids == null ? null : ids.size(), generations);
+    List<String> validationErrors = new ArrayList<>();
+
+    if (ids == null || ids.isEmpty()) {
+      validationErrors.add("At least one horse ID must be given");
+    } else if (ids.size() > MAX_FAMILY_TREE_BATCH) {
+      validationErrors.add("At most %d horse IDs may be given".formatted(MAX_FAMILY_TREE_BATCH));
+    } else if (ids.contains(null)) {
+      validationErrors.add("Horse IDs must not be null");
+    }
+    if (generations < 0 || generations > MAX_FAMILY_TREE_GENERATIONS) {
+      validationErrors.add("Generations must be between 0 and %d".formatted(MAX_FAMILY_TREE_GENERATIONS));
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of family tree request failed", validationErrors);
+    }
+  }
+
+  /**
+   * Validates the number of names requested while the user is typing.
+   *
+   * @param limit the maximum number of names to return
+   * @throws ValidationException if the limit is out of the supported range
+   */
+  public void validateForNameSuggestions(int limit) throws ValidationException {
+    LOG.trace("validateForNameSuggestions({})", limit);
+    if (limit < 1 || limit > MAX_NAME_SUGGESTIONS) {
+      throw new ValidationException("Validation of name suggestion request failed",
+          List.of("Limit must be between 1 and %d".formatted(MAX_NAME_SUGGESTIONS)));
+    }
+  }
+
+  /**
+   * Validates the parameters of a request for the counts of the horses matching a search.
+   *
+   * @param yearsPerBucket the number of birth years that are counted together
+   * @param maxOwners      the maximum number of owners to return counts for
+   * @throws ValidationException if any of the parameters is out of the supported range
+   */
+  public void validateForFacets(int yearsPerBucket, int maxOwners) throws ValidationException {
+    LOG.trace("validateForFacets({}, {})", yearsPerBucket, maxOwners);
+    List<String> validationErrors = new ArrayList<>();
+    if (yearsPerBucket < 1 || yearsPerBucket > MAX_YEARS_PER_BUCKET) {
+      validationErrors.add("Years per bucket must be between 1 and %d".formatted(MAX_YEARS_PER_BUCKET));
+    }
+    if (maxOwners < 0 || maxOwners > MAX_OWNER_FACETS) {
+      validationErrors.add("Number of owners must be between 0 and %d".formatted(MAX_OWNER_FACETS));
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of facet request failed", validationErrors);
+    }
+  }
+
+  /**
+   * Validates the parameters of a request for mate suggestions.
+   *
+   * @param limit       the maximum number of suggestions to return
+   * @param generations the number of ancestor generations to consider
+   * @param timeout     the time granted for the computation
+   * @param maxTimeout  the maximum time that may be granted
+   * @throws ValidationException if any of the parameters is out of the supported range
+   */
+  public void validateForMateSuggestions(int limit, int generations, Duration timeout, Duration maxTimeout)
+      throws ValidationException {
+    LOG.trace("validateForMateSuggestions({}, {}, {})", limit, generations, timeout);
+    List<String> validationErrors = new ArrayList<>();
+
+    if (limit < 1 || limit > MAX_MATE_SUGGESTIONS) {
+      validationErrors.add("Limit must be between 1 and %d".formatted(MAX_MATE_SUGGESTIONS));
+    }
+    if (generations < 0 || generations > MAX_GENERATIONS) {
+      validationErrors.add("Generations must be between 0 and %d".formatted(MAX_GENERATIONS));
+    }
+    if (timeout.isNegative() || timeout.isZero() || timeout.compareTo(maxTimeout) > 0) {
+      validationErrors.add("Timeout must be positive and at most %d ms".formatted(maxTimeout.toMillis()));
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of mate suggestion request failed", validationErrors);
+    }
+  }
+
 }
@@ -0,0 +1,82 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.util.Arrays;
+
+import at.ac.tuwien.sepr.assignment.individual.persistence.PedigreeSnapshot;
+import at.ac.tuwien.sepr.assignment.individual.util.LongIntHashMap;
+
+/**
+ * Computes kinship and inbreeding coefficients (after Wright) over a {@link PedigreeSnapshot}.
+ *
+ * <p>
+ * The kinship of two horses is the probability that two alleles, drawn at random from each of them
+ * at the same locus, are identical by descent. It is computed with the recursive tabular method:
+ * the kinship of a horse with itself is {@code (1 + F) / 2}, where {@code F} is its inbreeding coefficient,
+ * i.e. the kinship of its parents. Otherwise the horse, that is not an ancestor of the other one,
+ * is replaced by the average over its parents. Unknown parents count as unrelated founders.
+ * </p>
+ *
+ * <p>
+ * Every computed kinship is memoized, keyed by the pair of snapshot indexes, so that shared ancestors
+ * are only evaluated once and deep pedigrees do not explode exponentially.
+ * An instance is meant to be reused for all computations of one request; it is not thread-safe.
+ * </p>
+ */
+class KinshipCalculator {
+  private static final int NOT_COMPUTED = -1;
+
+  private final PedigreeSnapshot pedigree;
+  private final LongIntHashMap memoIndexes = new LongIntHashMap(256, NOT_COMPUTED);
+  private double[] memoValues = new double[256];
+
+  KinshipCalculator(PedigreeSnapshot pedigree) {
+    this.pedigree = pedigree;
+  }
+
+  PedigreeSnapshot pedigree() {
+    return pedigree;
+  }
+
+  /**
+   * Inbreeding coefficient of the horse with the given snapshot index.
+   */
+  double inbreeding(int horse) {
+    if (horse == PedigreeSnapshot.NONE) {
+      return 0;
+    }
+    return kinship(pedigree.femaleParent(horse), pedigree.maleParent(horse));
+  }
+
+  /**
+   * Kinship coefficient of the horses with the given snapshot indexes.
+   */
+  double kinship(int first, int second) {
+    if (first == PedigreeSnapshot.NONE || second == PedigreeSnapshot.NONE) {
+      return 0;
+    }
+    // ancestors always have a smaller index than their descendants,
+    // so the horse with the larger index can not be an ancestor of the other one
+    int younger = Math.max(first, second);
+    int older = Math.min(first, second);
+    long key = ((long) younger << 32) | older;
+    int memoIndex = memoIndexes.get(key);
+    if (memoIndex != NOT_COMPUTED) {
+      return memoValues[memoIndex];
+    }
+
+    double kinship;
+    if (younger == older) {
+      kinship = 0.5 * (1 + inbreeding(younger));
+    } else {
+      kinship = 0.5 * (kinship(pedigree.femaleParent(younger), older) + kinship(pedigree.maleParent(younger), older));
+    }
+
+    memoIndex = memoIndexes.size();
+    if (memoIndex == memoValues.length) {
+      memoValues = Arrays.copyOf(memoValues, memoIndex * 2);
+    }
+    memoValues[memoIndex] = kinship;
+    memoIndexes.put(key, memoIndex);
+    return kinship;
+  }
+}
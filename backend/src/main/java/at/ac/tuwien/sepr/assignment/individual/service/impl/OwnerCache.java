@@ -0,0 +1,260 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerChangedEvent;
+import at.ac.tuwien.sepr.assignment.individual.util.LongIntHashMap;
+
+/**
+ * Bounded read-through cache of owners, keyed by their primitive IDs, so that mapping listings of horses
+ * does not have to query the owners of the horses over and over again, although owners rarely change.
+ * Only existing owners are cached; IDs of missing owners are looked up every time.
+ *
+ * <p>
+ * The owners are kept in fixed arrays of slots, indexed by a {@link LongIntHashMap} from ID to slot.
+ * When the cache is full, a slot is reclaimed with the clock algorithm: the hand sweeps over the slots,
+ * giving every owner that was read since the last sweep a second chance, and evicts the first one that was not.
+ * This approximates evicting the least recently used owner, without reordering anything on a hit.
+ * </p>
+ *
+ * <p>
+ * Changed and deleted owners are dropped. Like in the {@link SearchResultCache}, every change also starts
+ * a new generation, and owners read from the data store are only cached if no owner changed in between,
+ * since they might have been read before the change.
+ * </p>
+ *
+ * <p>
+ * Hits, misses and evictions are reported as {@code cache.gets} and {@code cache.evictions},
+ * the ratio of hits to all gets as {@code cache.hit.ratio}, all with the tag {@code cache=owner}.
+ * Every requested ID counts as one get.
+ * </p>
+ */
+@Component
+public class OwnerCache {
+  private static final String CACHE_NAME = "owner";
+  private static final int NONE = -1;
+
+  private final int capacity;
+  private final LongIntHashMap slots;
+  private final long[] ids;
+  private final OwnerDto[] owners;
+  private final boolean[] referenced;
+  private int size;
+  private int hand;
+  private long generation;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter sizeEvictions;
+  private final Counter invalidationEvictions;
+
+  /**
+   * Constructs a new OwnerCache.
+   *
+   * @param maxSize the maximum number of cached owners, {@code 0} disables the cache
+   * @param meterRegistry the registry to report hits, misses and evictions to
+   */
+  public OwnerCache(
+      @Value("${app.owner-cache.max-size:10000}") int maxSize,
+      MeterRegistry meterRegistry) {
+    this.capacity = Math.max(maxSize, 0);
+    this.slots = new LongIntHashMap(capacity, NONE);
+    this.ids = new long[capacity];
+    this.owners = new OwnerDto[capacity];
+    this.referenced = new boolean[capacity];
+    this.hits = gets(meterRegistry, "hit");
+    this.misses = gets(meterRegistry, "miss");
+    this.sizeEvictions = evictions(meterRegistry, "size");
+    this.invalidationEvictions = evictions(meterRegistry, "invalidated");
+    Gauge.builder("cache.size", this, OwnerCache::size)
+        .tag("cache", CACHE_NAME)
+        .register(meterRegistry);
+    Gauge.builder("cache.hit.ratio", this, OwnerCache::hitRatio)
+        .tag("cache", CACHE_NAME)
+        .register(meterRegistry);
+  }
+
+  private static Counter gets(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("cache.gets")
+        .tag("cache", CACHE_NAME)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  private static Counter evictions(MeterRegistry meterRegistry, String cause) {
+    return Counter.builder("cache.evictions")
+        .tag("cache", CACHE_NAME)
+        .tag("cause", cause)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Get a cached owner.
+   *
+   * @param id the ID of the owner
+   * @return the cached owner, or {@code null} if it is not cached
+   */
+  public synchronized OwnerDto get(long id) {
+    OwnerDto owner = lookup(id);
+    if (owner == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return owner;
+  }
+
+  /**
+   * Get those of many owners that are cached.
+   *
+   * @param ids the IDs of the owners
+   * @param found the map to add the cached owners to, by their IDs
+   * @return the IDs of the owners that are not cached, to be read from the data store
+   */
+  public synchronized List<Long> getAll(Collection<Long> ids, Map<Long, OwnerDto> found) {
+    List<Long> missing = new ArrayList<>();
+    for (Long id : ids) {
+      OwnerDto owner = id == null ? null : lookup(id);
+      if (owner == null) {
+        missing.add(id);
+      } else {
+        found.put(id, owner);
+      }
+    }
+    hits.increment(found.size());
+    misses.increment(missing.size());
+    return missing;
+  }
+
+  /**
+   * Get the current generation, to pass to {@link #putAll} for owners that are about to be read.
+   *
+   * @return the current generation
+   */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Cache owners read from the data store.
+   *
+   * @param read the owners
+   * @param generation the value of {@link #generation()} before the owners were read
+   */
+  public synchronized void putAll(Collection<OwnerDto> read, long generation) {
+    if (capacity == 0 || generation != this.generation) {
+      return;
+    }
+    for (OwnerDto owner : read) {
+      put(owner);
+    }
+  }
+
+  /**
+   * Drop a changed owner, and start a new generation, so that owners read before the change are not cached.
+   *
+   * @param event the change of an owner
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onOwnerChanged(OwnerChangedEvent event) {
+    generation++;
+    if (remove(event.id())) {
+      invalidationEvictions.increment();
+    }
+  }
+
+  /**
+   * Get the number of cached owners.
+   *
+   * @return the number of cached owners
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private OwnerDto lookup(long id) {
+    if (id == Long.MIN_VALUE) {
+      // reserved by the index, never cached
+      return null;
+    }
+    int slot = slots.get(id);
+    if (slot == NONE) {
+      return null;
+    }
+    referenced[slot] = true;
+    return owners[slot];
+  }
+
+  private void put(OwnerDto owner) {
+    long id = owner.id();
+    if (id == Long.MIN_VALUE) {
+      return;
+    }
+    int slot = slots.get(id);
+    if (slot == NONE) {
+      if (size < capacity) {
+        slot = size++;
+      } else {
+        slot = victim();
+        slots.remove(ids[slot]);
+        sizeEvictions.increment();
+      }
+      ids[slot] = id;
+      slots.put(id, slot);
+    }
+    owners[slot] = owner;
+    referenced[slot] = false;
+  }
+
+  /**
+   * Advance the clock hand to the first slot whose owner was not read since the hand last passed it.
+   */
+  private int victim() {
+    while (referenced[hand]) {
+      referenced[hand] = false;
+      hand = (hand + 1) % capacity;
+    }
+    int slot = hand;
+    hand = (hand + 1) % capacity;
+    return slot;
+  }
+
+  /**
+   * Remove an owner, moving the owner of the last used slot into its slot, so that the used slots stay contiguous.
+   */
+  private boolean remove(long id) {
+    if (capacity == 0 || id == Long.MIN_VALUE) {
+      return false;
+    }
+    int slot = slots.remove(id);
+    if (slot == NONE) {
+      return false;
+    }
+    int last = --size;
+    if (slot != last) {
+      ids[slot] = ids[last];
+      owners[slot] = owners[last];
+      referenced[slot] = referenced[last];
+      slots.put(ids[slot], slot);
+    }
+    owners[last] = null;
+    referenced[last] = false;
+    return true;
+  }
+
+  private double hitRatio() {
+    double gets = hits.count() + misses.count();
+    return gets == 0 ? Double.NaN : hits.count() / gets;
+  }
+}
@@ -2,10 +2,11 @@ package at.ac.tuwien.sepr.assignment.individual.service.impl;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,14 +15,21 @@ import org.springframework.stereotype.Service;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.PageDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import at.ac.tuwien.sepr.assignment.individual.mapper.OwnerMapper;
+import at.ac.tuwien.sepr.assignment.individual.persistence.NameIndex;
 import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
 import at.ac.tuwien.sepr.assignment.individual.service.OwnerService;
+import at.ac.tuwien.sepr.assignment.individual.type.OwnerSort;
+import at.ac.tuwien.sepr.assignment.individual.util.PageCursor;
 
 /**
  * Service implementation for managing owner-related operations.
+ * Owners looked up by ID are read through the {@link OwnerCache}.
  */
 @Service
 public class OwnerServiceImpl implements OwnerService {
@@ -29,16 +37,34 @@ public class OwnerServiceImpl implements OwnerService {
 
   private final OwnerDao dao;
   private final OwnerMapper mapper;
+  private final NameIndex nameIndex;
+  private final OwnerCache cache;
+  private final OwnerValidator validator;
 
+  /**
+   * Constructs a new OwnerServiceImpl.
+   *
+   * @param dao the DAO to read and write owners with
+   * @param mapper the mapper of owners to DTOs
+   * @param nameIndex the in-memory index of owner names, to suggest names with
+   * @param cache the cache owners looked up by ID are read through
+   * @param validator the validator of search and suggestion requests
+   */
   public OwnerServiceImpl(
       OwnerDao dao,
-      OwnerMapper mapper) {
+      OwnerMapper mapper,
+      NameIndex nameIndex,
+      OwnerCache cache,
+      OwnerValidator validator) {
     this.dao = dao;
     this.mapper = mapper;
+    this.nameIndex = nameIndex;
+    this.cache = cache;
+    this.validator = validator;
   }
 
   /**
-   * Retrieves an owner by ID.
+   * Retrieves an owner by ID, from the cache if possible.
    *
    * @param id the ID of the owner
    * @return the {@link OwnerDto} representing the owner
@@ -47,7 +73,13 @@ public class OwnerServiceImpl implements OwnerService {
   @Override
   public OwnerDto getById(long id) throws NotFoundException {
     LOG.trace("getById({})", id);
-    return mapper.entityToDto(dao.getById(id));
+    OwnerDto owner = cache.get(id);
+    if (owner == null) {
+      long generation = cache.generation();
+      owner = mapper.entityToDto(dao.getById(id));
+      cache.putAll(List.of(owner), generation);
+    }
+    return owner;
   }
 
   /**
@@ -60,10 +92,7 @@ public class OwnerServiceImpl implements OwnerService {
   @Override
   public Map<Long, OwnerDto> getAllById(Collection<Long> ids) throws NotFoundException {
     LOG.trace("getAllById({})", ids);
-    Map<Long, OwnerDto> owners =
-        dao.getAllById(ids).stream()
-            .map(mapper::entityToDto)
-            .collect(Collectors.toUnmodifiableMap(OwnerDto::id, Function.identity()));
+    Map<Long, OwnerDto> owners = findAllById(ids);
     for (final var id : ids) {
       if (!owners.containsKey(id)) {
         throw new NotFoundException("Owner with ID %d not found".formatted(id));
@@ -72,17 +101,76 @@ public class OwnerServiceImpl implements OwnerService {
     return owners;
   }
 
+  /**
+   * Retrieves those of multiple owners that exist, by their IDs.
+   * Owners that are cached are taken from the cache, only the others are read from the data store, with one query.
+   *
+   * @param ids the collection of owner IDs to retrieve
+   * @return a map of the IDs of the existing owners to {@link OwnerDto} objects
+   */
+  @Override
+  public Map<Long, OwnerDto> findAllById(Collection<Long> ids) {
+    LOG.trace("findAllById({})", ids);
+    Map<Long, OwnerDto> owners = new HashMap<>();
+    List<Long> missing = cache.getAll(ids, owners);
+    if (!missing.isEmpty()) {
+      long generation = cache.generation();
+      List<OwnerDto> read = dao.getAllById(missing).stream()
+          .map(mapper::entityToDto)
+          .toList();
+      for (OwnerDto owner : read) {
+        owners.put(owner.id(), owner);
+      }
+      cache.putAll(read, generation);
+    }
+    return Collections.unmodifiableMap(owners);
+  }
+
   /**
    * Searches for owners based on search parameters.
+   * One owner more than the maximum amount is fetched, to know whether there is a next page.
    *
    * @param searchParameters the search criteria
-   * @return a stream of matching {@link OwnerDto} objects
+   * @return the page of matching {@link OwnerDto} objects
+   * @throws ValidationException if the maximum amount or the cursor is not valid
    */
   @Override
-  public Stream<OwnerDto> search(OwnerSearchDto searchParameters) {
+  public PageDto<OwnerDto> search(OwnerSearchDto searchParameters) throws ValidationException {
     LOG.trace("search({})", searchParameters);
-    return dao.search(searchParameters).stream()
-        .map(mapper::entityToDto);
+    validator.validateForSearch(searchParameters);
+    Integer maxAmount = searchParameters.maxAmount();
+    List<Owner> owners = dao.search(maxAmount == null ? searchParameters : searchParameters.withMaxAmount(maxAmount + 1));
+    String nextCursor = null;
+    if (maxAmount != null && owners.size() > maxAmount) {
+      owners = owners.subList(0, maxAmount);
+      Owner last = owners.getLast();
+      OwnerSort sort = searchParameters.sortOrDefault();
+      String key = sort == OwnerSort.NAME
+          ? (last.firstName() + " " + last.lastName()).toLowerCase(Locale.ROOT)
+          : "";
+      nextCursor = new PageCursor(sort.name(), key, last.id()).encode();
+    }
+    return new PageDto<>(owners.stream().map(mapper::entityToDto).toList(), nextCursor);
+  }
+
+  /**
+   * Suggests owners whose full name or last name starts with the given text, from the in-memory {@link NameIndex}.
+   *
+   * @param query the beginning of the name, compared case-insensitively
+   * @param limit the maximum number of owners to suggest
+   * @return the suggested owners, with their full names
+   * @throws ValidationException if the limit is out of the supported range
+   */
+  @Override
+  public List<SuggestionDto> suggest(String query, int limit) throws ValidationException {
+    LOG.trace("suggest({}, {})", query, limit);
+    validator.validateForNameSuggestions(limit);
+    if (query == null || query.isBlank()) {
+      return List.of();
+    }
+    return nameIndex.findOwners(query.strip(), limit).stream()
+        .map(entry -> new SuggestionDto(entry.id(), entry.label()))
+        .toList();
   }
 
   /**
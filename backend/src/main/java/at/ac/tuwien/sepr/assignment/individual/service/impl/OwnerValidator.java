@@ -0,0 +1,59 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.util.PageCursor;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Validator for owner-related operations, ensuring that all request parameters meet the required constraints.
+ */
+@Component
+public class OwnerValidator {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int MAX_NAME_SUGGESTIONS = 50;
+
+  /**
+   * Validates the paging parameters of an owner search.
+   *
+   * @param searchParameters the search criteria
+   * @throws ValidationException if the maximum amount is not positive, or the cursor is malformed or was issued for another order
+   */
+  public void validateForSearch(OwnerSearchDto searchParameters) throws ValidationException {
+    LOG.trace("validateForSearch({})", searchParameters);
+    List<String> validationErrors = new ArrayList<>();
+    if (searchParameters.maxAmount() != null && searchParameters.maxAmount() < 1) {
+      validationErrors.add("Maximum amount must be positive");
+    }
+    if (searchParameters.cursor() != null) {
+      try {
+        PageCursor.decode(searchParameters.cursor(), searchParameters.sortOrDefault().name());
+      } catch (IllegalArgumentException e) {
+        validationErrors.add("Cursor is not valid for this search: " + e.getMessage());
+      }
+    }
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of owner search failed", validationErrors);
+    }
+  }
+
+  /**
+   * Validates the number of owner names requested while the user is typing.
+   *
+   * @param limit the maximum number of names to return
+   * @throws ValidationException if the limit is out of the supported range
+   */
+  public void validateForNameSuggestions(int limit) throws ValidationException {
+    LOG.trace("validateForNameSuggestions({})", limit);
+    if (limit < 1 || limit > MAX_NAME_SUGGESTIONS) {
+      throw new ValidationException("Validation of name suggestion request failed",
+          List.of("Limit must be between 1 and %d".formatted(MAX_NAME_SUGGESTIONS)));
+    }
+  }
+}
@@ -0,0 +1,411 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.CommonAncestorDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.InbreedingDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.KinshipDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.MateSuggestionDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.RelationshipDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepr.assignment.individual.persistence.CommonAncestor;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.PedigreeGraph;
+import at.ac.tuwien.sepr.assignment.individual.persistence.PedigreeSnapshot;
+import at.ac.tuwien.sepr.assignment.individual.service.OwnerService;
+import at.ac.tuwien.sepr.assignment.individual.service.PedigreeService;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+/**
+ * Implementation of {@link PedigreeService}.
+ * All computations run on a snapshot of the in-memory {@link PedigreeGraph}, without querying the persistent data store.
+ * Ranking mates is spread over a dedicated pool of worker threads, which is limited to a part of the available cores.
+ */
+@Service
+public class PedigreeServiceImpl implements PedigreeService {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int CANDIDATES_PER_TASK = 256;
+
+  private final PedigreeGraph pedigree;
+  private final HorseValidator validator;
+  private final HorseDao horseDao;
+  private final HorseMapper horseMapper;
+  private final OwnerService ownerService;
+  private final ForkJoinPool matePool;
+  private final Duration defaultTimeout;
+  private final Duration maxTimeout;
+
+  /**
+   * Constructs a new PedigreeServiceImpl.
+   *
+   * @param pedigree the in-memory pedigree of all horses
+   * @param validator the validator for the request parameters
+   * @param horseDao the DAO to search candidate stallions with
+   * @param horseMapper the mapper for converting stallions to DTOs
+   * @param ownerService the service to resolve owners of suggested stallions
+   * @param parallelism the number of threads used for ranking mates, {@code 0} for half of the available cores
+   * @param defaultTimeout the time after which ranking mates is cancelled, if the request does not specify it
+   * @param maxTimeout the maximum time a request may grant for ranking mates
+   */
+  public PedigreeServiceImpl(
+      PedigreeGraph pedigree,
+      HorseValidator validator,
+      HorseDao horseDao,
+      HorseMapper horseMapper,
+      OwnerService ownerService,
+      @Value("${app.pedigree.mate-suggestions.parallelism:0}") int parallelism,
+      @Value("${app.pedigree.mate-suggestions.default-timeout:2s}") Duration defaultTimeout,
+      @Value("${app.pedigree.mate-suggestions.max-timeout:10s}") Duration maxTimeout) {
+    this.pedigree = pedigree;
+    this.validator = validator;
+    this.horseDao = horseDao;
+    this.horseMapper = horseMapper;
+    this.ownerService = ownerService;
+    this.matePool = new ForkJoinPool(parallelism > 0
+        ? parallelism
+        : Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    this.defaultTimeout = defaultTimeout;
+    this.maxTimeout = maxTimeout;
+  }
+
+  /**
+   * Stops the threads ranking mates, cancelling any ranking still in progress.
+   */
+  @PreDestroy
+  public void shutdown() {
+    matePool.shutdownNow();
+  }
+
+  /**
+   * Computes the inbreeding coefficient of a horse from the in-memory pedigree, without querying the data store.
+   *
+   * @param id the ID of the horse
+   * @param generations the number of ancestor generations to consider
+   * @return the inbreeding coefficient of the horse
+   * @throws NotFoundException if the horse is not part of the pedigree
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  @Override
+  public InbreedingDto inbreeding(long id, int generations) throws NotFoundException, ValidationException {
+    LOG.trace("inbreeding({}, {})", id, generations);
+    validator.validateGenerations(generations);
+    KinshipCalculator calculator = calculatorFor(generations, id);
+    PedigreeSnapshot snapshot = calculator.pedigree();
+    return new InbreedingDto(id, generations, calculator.inbreeding(snapshot.indexOf(id)));
+  }
+
+  /**
+   * Computes the kinship coefficient of two horses from the in-memory pedigree, without querying the data store.
+   *
+   * @param id the ID of the first horse
+   * @param otherId the ID of the second horse
+   * @param generations the number of ancestor generations to consider
+   * @return the kinship coefficient of the two horses
+   * @throws NotFoundException if one of the horses is not part of the pedigree
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  @Override
+  public KinshipDto kinship(long id, long otherId, int generations) throws NotFoundException, ValidationException {
+    LOG.trace("kinship({}, {}, {})", id, otherId, generations);
+    validator.validateGenerations(generations);
+    KinshipCalculator calculator = calculatorFor(generations, id, otherId);
+    PedigreeSnapshot snapshot = calculator.pedigree();
+    return new KinshipDto(id, otherId, generations, calculator.kinship(snapshot.indexOf(id), snapshot.indexOf(otherId)));
+  }
+
+  /**
+   * Determines how two horses are related. The common ancestors are found in the in-memory pedigree,
+   * then the two horses and all common ancestors are loaded with a single query, and their owners with another one.
+   *
+   * @param id the ID of the first horse
+   * @param otherId the ID of the second horse
+   * @param generations the number of ancestor generations to consider
+   * @return the nearest common ancestors with the paths to them, and a description of the relationship
+   * @throws NotFoundException if one of the horses is not part of the pedigree
+   * @throws ValidationException if the number of generations is out of the supported range
+   */
+  @Override
+  public RelationshipDto relationship(long id, long otherId, int generations) throws NotFoundException, ValidationException {
+    LOG.trace("relationship({}, {}, {})", id, otherId, generations);
+    validator.validateGenerations(generations);
+    for (long horseId : new long[] {id, otherId}) {
+      if (!pedigree.contains(horseId)) {
+        throw new NotFoundException("No horse with ID %d found".formatted(horseId));
+      }
+    }
+    List<CommonAncestor> commonAncestors = pedigree.commonAncestors(id, otherId, generations);
+
+    // the two horses and all common ancestors are loaded with a single query
+    Set<Long> horseIds = commonAncestors.stream().map(CommonAncestor::id).collect(Collectors.toCollection(HashSet::new));
+    horseIds.add(id);
+    horseIds.add(otherId);
+    Map<Long, Horse> horses = horseDao.getAllById(horseIds).stream()
+        .collect(Collectors.toMap(Horse::id, Function.identity()));
+    Map<Long, OwnerDto> owners = ownersOf(commonAncestors.stream().map(ancestor -> horses.get(ancestor.id())).toList());
+
+    List<CommonAncestorDto> ancestorDtos = commonAncestors.stream()
+        .map(ancestor -> new CommonAncestorDto(
+            horseMapper.entityToListDto(horses.get(ancestor.id()), owners),
+            ancestor.generationsFromFirst(),
+            ancestor.generationsFromSecond(),
+            Arrays.stream(ancestor.pathFromFirst()).boxed().toList(),
+            Arrays.stream(ancestor.pathFromSecond()).boxed().toList()))
+        .toList();
+    return new RelationshipDto(id, otherId, generations,
+        describe(horses.get(id), horses.get(otherId), commonAncestors, horses, generations), ancestorDtos);
+  }
+
+  /**
+   * Ranks the stallions matching the filter as mates for a mare. Only the IDs of the candidates are read,
+   * which are split into chunks and ranked in parallel on a shared snapshot of the pedigree,
+   * until the deadline given by {@code timeout}, which also covers the search for the candidates.
+   * Only the suggested stallions are read completely.
+   *
+   * @param mareId the ID of the mare
+   * @param filter the criteria the stallions have to match
+   * @param limit the maximum number of stallions to return
+   * @param generations the number of ancestor generations to consider
+   * @param timeout the time after which the ranking is cancelled, {@code null} for the configured default
+   * @return the best suggested stallions with the expected inbreeding coefficients, lowest first
+   * @throws NotFoundException if the mare does not exist
+   * @throws ValidationException if the given horse is not a mare, or the parameters are out of the supported range
+   * @throws DeadlineExceededException if the ranking did not finish in time
+   */
+  @Override
+  public List<MateSuggestionDto> suggestMates(long mareId, HorseSearchDto filter, int limit, int generations, Duration timeout)
+      throws NotFoundException, ValidationException, DeadlineExceededException {
+    LOG.trace("suggestMates({}, {}, {}, {}, {})", mareId, filter, limit, generations, timeout);
+    Duration grantedTime = timeout == null ? defaultTimeout : timeout;
+    validator.validateForMateSuggestions(limit, generations, grantedTime, maxTimeout);
+    // the search for the candidates counts against the granted time as well
+    final long deadline = System.nanoTime() + grantedTime.toNanos();
+    Sex sex = pedigree.sex(mareId);
+    if (sex == null) {
+      throw new NotFoundException("No horse with ID %d found".formatted(mareId));
+    }
+    if (sex != Sex.FEMALE) {
+      throw new ValidationException("Mates can only be suggested for mares", List.of("Horse %d is not female".formatted(mareId)));
+    }
+
+    HorseSearchDto stallionFilter = new HorseSearchDto(filter.name(), filter.description(), filter.bornBefore(), Sex.MALE,
+        filter.ownerName(), null, filter.parentFemaleId(), filter.parentMaleId(), filter.substring(), filter.ownerPrefix(), null, null);
+    // sex and date of birth of the stallions are known from the pedigree, so only their IDs are read
+    long[] stallions = horseDao.searchIds(stallionFilter).stream().mapToLong(Long::longValue).toArray();
+    if (System.nanoTime() - deadline > 0) {
+      throw new DeadlineExceededException("Searching candidates for mates did not finish in time");
+    }
+    long[] roots = new long[stallions.length + 1];
+    roots[0] = mareId;
+    System.arraycopy(stallions, 0, roots, 1, stallions.length);
+    // one read-only snapshot is shared by all workers, each of them has its own memo table
+    PedigreeSnapshot snapshot = pedigree.snapshot(roots, generations);
+    int mare = snapshot.indexOf(mareId);
+
+    List<Callable<List<Ranked>>> tasks = new ArrayList<>();
+    for (int from = 0; from < stallions.length; from += CANDIDATES_PER_TASK) {
+      long[] candidates = Arrays.copyOfRange(stallions, from, Math.min(from + CANDIDATES_PER_TASK, stallions.length));
+      tasks.add(() -> rank(new KinshipCalculator(snapshot), mare, candidates, limit, deadline));
+    }
+    List<Ranked> best = collectBest(tasks, limit, deadline);
+
+    // only the suggested stallions are read completely
+    Map<Long, Horse> horses = horseDao.getAllById(best.stream().map(Ranked::stallionId).toList()).stream()
+        .collect(Collectors.toUnmodifiableMap(Horse::id, Function.identity()));
+    Map<Long, OwnerDto> owners = ownersOf(List.copyOf(horses.values()));
+    return best.stream()
+        .filter(ranked -> horses.containsKey(ranked.stallionId()))
+        .map(ranked -> new MateSuggestionDto(horseMapper.entityToListDto(horses.get(ranked.stallionId()), owners),
+            ranked.coefficient()))
+        .toList();
+  }
+
+  /**
+   * Rank a chunk of candidates, keeping only the best {@code limit} of them.
+   * Checks the deadline after every candidate, so that a cancelled request frees its worker quickly.
+   */
+  private static List<Ranked> rank(KinshipCalculator calculator, int mare, long[] candidates, int limit, long deadline) {
+    PriorityQueue<Ranked> best = new PriorityQueue<>(limit + 1, Ranked.ORDER.reversed());
+    PedigreeSnapshot snapshot = calculator.pedigree();
+    for (long candidate : candidates) {
+      if (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted()) {
+        throw new CancellationException("Deadline for ranking mates exceeded");
+      }
+      best.add(new Ranked(candidate, calculator.kinship(mare, snapshot.indexOf(candidate))));
+      if (best.size() > limit) {
+        best.poll();
+      }
+    }
+    return new ArrayList<>(best);
+  }
+
+  /**
+   * Run the ranking tasks on the mate pool and merge their results into the overall best {@code limit} candidates.
+   *
+   * @throws DeadlineExceededException if a task did not finish before the deadline, or the request was interrupted
+   */
+  private List<Ranked> collectBest(List<Callable<List<Ranked>>> tasks, int limit, long deadline)
+      throws DeadlineExceededException {
+    List<Future<List<Ranked>>> futures;
+    try {
+      futures = matePool.invokeAll(tasks, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DeadlineExceededException("Ranking mates was interrupted", e);
+    }
+    List<Ranked> all = new ArrayList<>();
+    try {
+      for (Future<List<Ranked>> future : futures) {
+        all.addAll(future.get());
+      }
+    } catch (CancellationException | ExecutionException e) {
+      if (e instanceof ExecutionException && !(e.getCause() instanceof CancellationException)) {
+        throw new FatalException("Ranking mates failed", e.getCause());
+      }
+      throw new DeadlineExceededException("Ranking mates did not finish in time", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DeadlineExceededException("Ranking mates was interrupted", e);
+    }
+    all.sort(Ranked.ORDER);
+    return all.subList(0, Math.min(limit, all.size()));
+  }
+
+  /**
+   * Get the owners of the given horses with a single call to the owner service.
+   */
+  private Map<Long, OwnerDto> ownersOf(List<Horse> horses) {
+    Set<Long> ownerIds = horses.stream()
+        .map(Horse::ownerId)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toUnmodifiableSet());
+    try {
+      return ownerService.getAllById(ownerIds);
+    } catch (NotFoundException e) {
+      throw new FatalException("Horse, that is already persisted, refers to non-existing owner", e);
+    }
+  }
+
+  /**
+   * Describe the relationship of two horses in the usual terms of breeders, based on their nearest common ancestors.
+   * Two common ancestors at the same distance make a full relation, a single one a half relation.
+   */
+  private static String describe(Horse horse, Horse other, List<CommonAncestor> commonAncestors,
+                                 Map<Long, Horse> horses, int generations) {
+    if (commonAncestors.isEmpty()) {
+      return "%s and %s are not related within %d generations".formatted(horse.name(), other.name(), generations);
+    }
+    CommonAncestor nearest = commonAncestors.getFirst();
+    int up = nearest.generationsFromFirst();
+    int down = nearest.generationsFromSecond();
+    if (up == 0 && down == 0) {
+      return "%s and %s are the same horse".formatted(horse.name(), other.name());
+    }
+    if (up == 0) {
+      return "%s is the %s of %s".formatted(horse.name(), ancestorTerm(down, horse.sex()), other.name());
+    }
+    if (down == 0) {
+      return "%s is the %s of %s".formatted(other.name(), ancestorTerm(up, other.sex()), horse.name());
+    }
+
+    List<Horse> via = commonAncestors.stream()
+        .filter(ancestor -> ancestor.generationsFromFirst() == up && ancestor.generationsFromSecond() == down)
+        .map(ancestor -> horses.get(ancestor.id()))
+        .toList();
+    String half = via.size() > 1 ? "" : "half-";
+    String viaText = via.size() > 1
+        ? via.stream().map(Horse::name).collect(Collectors.joining(" and "))
+        : (via.getFirst().sex() == Sex.FEMALE ? "mare " : "stallion ") + via.getFirst().name();
+    if (up == 1 && down == 1) {
+      return "%s and %s are %s via %s".formatted(horse.name(), other.name(), via.size() > 1 ? "full siblings" : "half-siblings",
+          viaText);
+    }
+    if (up == 1 || down == 1) {
+      Horse sibling = up == 1 ? horse : other;
+      Horse descendant = up == 1 ? other : horse;
+      String term = greatPrefix(Math.max(up, down) - 2) + (sibling.sex() == Sex.FEMALE ? "aunt" : "uncle");
+      return "%s is the %s%s of %s via %s".formatted(sibling.name(), half, term, descendant.name(), viaText);
+    }
+    int degree = Math.min(up, down) - 1;
+    int removed = Math.abs(up - down);
+    String removedText = switch (removed) {
+      case 0 -> "";
+      case 1 -> " once removed";
+      case 2 -> " twice removed";
+      default -> " %d times removed".formatted(removed);
+    };
+    return "%s and %s are %s%s cousins%s via %s".formatted(horse.name(), other.name(), half, ordinal(degree), removedText,
+        viaText);
+  }
+
+  private static String ancestorTerm(int generations, Sex sex) {
+    String parent = sex == Sex.FEMALE ? "dam" : "sire";
+    return generations == 1 ? parent : greatPrefix(generations - 2) + "grand" + parent;
+  }
+
+  private static String greatPrefix(int greats) {
+    return greats <= 2 ? "great-".repeat(greats) : "%dx great-".formatted(greats);
+  }
+
+  private static String ordinal(int number) {
+    return switch (number) {
+      case 1 -> "first";
+      case 2 -> "second";
+      case 3 -> "third";
+      default -> number + "th";
+    };
+  }
+
+  /**
+   * Create a calculator over the pedigree of the given horses.
+   *
+   * @throws NotFoundException if one of the horses does not exist
+   */
+  private KinshipCalculator calculatorFor(int generations, long... ids) throws NotFoundException {
+    for (long id : ids) {
+      if (!pedigree.contains(id)) {
+        throw new NotFoundException("No horse with ID %d found".formatted(id));
+      }
+    }
+    return new KinshipCalculator(pedigree.snapshot(ids, generations));
+  }
+
+  /**
+   * A candidate stallion together with the expected inbreeding coefficient of a foal.
+   */
+  private record Ranked(long stallionId, double coefficient) {
+    static final Comparator<Ranked> ORDER = Comparator
+        .comparingDouble(Ranked::coefficient)
+        .thenComparingLong(Ranked::stallionId);
+  }
+}
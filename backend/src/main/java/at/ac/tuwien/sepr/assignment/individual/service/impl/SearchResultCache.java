@@ -0,0 +1,207 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.PageDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseChangedEvent;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerChangedEvent;
+
+/**
+ * Bounded cache of horse search results, keyed by the {@link HorseSearchDto#normalized() normalized} search criteria.
+ * When the cache holds too many results, or too many horses in all of its results together,
+ * the least recently used results are evicted.
+ * Results with more horses than configured are not cached at all, so that a few huge listings
+ * can not take up the memory of many small ones.
+ *
+ * <p>
+ * Every change of a horse may change the result of any search, so the cache keeps a generation counter
+ * that is incremented on every change. Every result is stored with the generation it was computed in,
+ * and is only returned as long as that generation is current.
+ * Results computed from stale data are therefore never returned,
+ * even if they were computed while a change was in progress.
+ * </p>
+ *
+ * <p>
+ * Hits, misses and evictions are reported as {@code cache.gets} and {@code cache.evictions},
+ * the ratio of hits to all gets as {@code cache.hit.ratio}, all with the tag {@code cache=horsesearch}.
+ * </p>
+ */
+@Component
+public class SearchResultCache {
+  private static final String CACHE_NAME = "horsesearch";
+
+  private final int maxSize;
+  private final int maxResultSize;
+  private final long maxItems;
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long itemCount;
+  private long generation;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter sizeEvictions;
+  private final Counter staleEvictions;
+
+  /**
+   * Constructs a new SearchResultCache.
+   *
+   * @param maxSize the maximum number of cached results
+   * @param maxResultSize the maximum number of horses in a result that is cached
+   * @param maxItems the maximum number of horses in all cached results together
+   * @param meterRegistry the registry to report hits, misses and evictions to
+   */
+  public SearchResultCache(
+      @Value("${app.search-cache.max-size:500}") int maxSize,
+      @Value("${app.search-cache.max-result-size:10000}") int maxResultSize,
+      @Value("${app.search-cache.max-items:50000}") long maxItems,
+      MeterRegistry meterRegistry) {
+    this.maxSize = maxSize;
+    this.maxResultSize = maxResultSize;
+    this.maxItems = maxItems;
+    this.hits = gets(meterRegistry, "hit");
+    this.misses = gets(meterRegistry, "miss");
+    this.sizeEvictions = evictions(meterRegistry, "size");
+    this.staleEvictions = evictions(meterRegistry, "stale");
+    Gauge.builder("cache.size", this, SearchResultCache::size)
+        .tag("cache", CACHE_NAME)
+        .register(meterRegistry);
+    Gauge.builder("cache.hit.ratio", this, SearchResultCache::hitRatio)
+        .tag("cache", CACHE_NAME)
+        .register(meterRegistry);
+  }
+
+  private static Counter gets(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("cache.gets")
+        .tag("cache", CACHE_NAME)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  private static Counter evictions(MeterRegistry meterRegistry, String cause) {
+    return Counter.builder("cache.evictions")
+        .tag("cache", CACHE_NAME)
+        .tag("cause", cause)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Get a cached search result.
+   *
+   * @param criteria the normalized search criteria, or {@code null} for the listing of all horses
+   * @return the cached result, or {@code null} if it is not cached, or not current anymore
+   */
+  public synchronized PageDto<HorseListDto> get(HorseSearchDto criteria) {
+    Key key = new Key(criteria);
+    Entry entry = entries.get(key);
+    if (entry != null && entry.generation() != generation) {
+      remove(key);
+      staleEvictions.increment();
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.result();
+  }
+
+  /**
+   * Get the current generation, to pass to {@link #put} for a result that is about to be computed.
+   *
+   * @return the current generation
+   */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Cache a computed search result.
+   *
+   * @param criteria the normalized search criteria, or {@code null} for the listing of all horses
+   * @param result the result
+   * @param generation the value of {@link #generation()} before the result was computed
+   */
+  public synchronized void put(HorseSearchDto criteria, PageDto<HorseListDto> result, long generation) {
+    int items = result.items().size();
+    if (maxSize <= 0 || generation != this.generation || items > maxResultSize || items > maxItems) {
+      return;
+    }
+    Key key = new Key(criteria);
+    remove(key);
+    entries.put(key, new Entry(result, generation));
+    itemCount += items;
+    Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+    while (entries.size() > maxSize || itemCount > maxItems) {
+      itemCount -= eldest.next().getValue().result().items().size();
+      eldest.remove();
+      sizeEvictions.increment();
+    }
+  }
+
+  /**
+   * Start a new generation, which makes all cached results stale.
+   * They are not dropped right away, but when they are requested next, or pushed out by newer results.
+   *
+   * @param event the change of a horse
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onHorseChanged(HorseChangedEvent event) {
+    generation++;
+  }
+
+  /**
+   * Start a new generation, since the owners of horses are part of the cached results.
+   *
+   * @param event the change of an owner
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onOwnerChanged(OwnerChangedEvent event) {
+    generation++;
+  }
+
+  /**
+   * Start a new generation, e.g. after the stored horses were changed bypassing the DAO.
+   */
+  public synchronized void clear() {
+    generation++;
+  }
+
+  /**
+   * Get the number of cached results.
+   *
+   * @return the number of cached results, including stale ones that have not been evicted yet
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private void remove(Key key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      itemCount -= entry.result().items().size();
+    }
+  }
+
+  private double hitRatio() {
+    double gets = hits.count() + misses.count();
+    return gets == 0 ? Double.NaN : hits.count() / gets;
+  }
+
+  private record Key(HorseSearchDto criteria) {
+  }
+
+  private record Entry(PageDto<HorseListDto> result, long generation) {
+  }
+}
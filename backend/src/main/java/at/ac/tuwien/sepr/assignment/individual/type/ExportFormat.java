@@ -0,0 +1,19 @@
+package at.ac.tuwien.sepr.assignment.individual.type;
+
+/**
+ * Enum representing the formats in which horses can be exported.
+ */
+public enum ExportFormat {
+  /**
+   * Comma-separated values, with a header naming the columns.
+   */
+  CSV,
+  /**
+   * Newline-delimited JSON, one horse per line.
+   */
+  NDJSON,
+  /**
+   * Compact binary format, storing blocks of horses column by column.
+   */
+  BIN
+}
@@ -0,0 +1,11 @@
+package at.ac.tuwien.sepr.assignment.individual.type;
+
+/**
+ * Enum representing the orders in which horses can be listed.
+ * Horses with equal sort keys are ordered by their ID, so that every order is total and stable across pages.
+ */
+public enum HorseSort {
+  ID,
+  NAME,
+  DATE_OF_BIRTH
+}
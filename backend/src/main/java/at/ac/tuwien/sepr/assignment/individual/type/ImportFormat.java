@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepr.assignment.individual.type;
+
+/**
+ * Enum representing the formats in which horses can be imported.
+ */
+public enum ImportFormat {
+  /**
+   * Comma-separated values, with a header naming the columns.
+   */
+  CSV,
+  /**
+   * Newline-delimited JSON, one horse per line.
+   */
+  NDJSON
+}
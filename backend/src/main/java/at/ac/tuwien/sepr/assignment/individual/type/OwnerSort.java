@@ -0,0 +1,10 @@
+package at.ac.tuwien.sepr.assignment.individual.type;
+
+/**
+ * Enum representing the orders in which owners can be listed.
+ * Owners with equal sort keys are ordered by their ID, so that every order is total and stable across pages.
+ */
+public enum OwnerSort {
+  ID,
+  NAME
+}
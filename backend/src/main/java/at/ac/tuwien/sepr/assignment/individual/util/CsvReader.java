@@ -0,0 +1,122 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader for comma-separated values as described in RFC 4180, one record at a time,
+ * so that memory use does not depend on the size of the input.
+ * Fields may be quoted with {@code "}, in which case they may contain commas, line breaks and
+ * quotes written as {@code ""}. Records are separated by {@code \n} or {@code \r\n}.
+ * This class is not thread-safe.
+ */
+public class CsvReader {
+  private static final int NO_LOOKAHEAD = -2;
+
+  private final Reader reader;
+  private final int maxRecordLength;
+  private long line = 1;
+  private long recordLine;
+  private int lookahead = NO_LOOKAHEAD;
+
+  /**
+   * Constructs a new CsvReader.
+   *
+   * @param reader the reader to read from, preferably buffered
+   * @param maxRecordLength the maximum number of characters of a record,
+   *     which keeps e.g. an unterminated quote from pulling the rest of the input into memory
+   */
+  public CsvReader(Reader reader, int maxRecordLength) {
+    this.reader = reader;
+    this.maxRecordLength = maxRecordLength;
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @return the fields of the record, or {@code null} at the end of the input
+   * @throws IOException if reading fails
+   * @throws IllegalArgumentException if the record is malformed or too long
+   */
+  public List<String> next() throws IOException {
+    int c = read();
+    if (c == -1) {
+      return null;
+    }
+    recordLine = line;
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    boolean wasQuoted = false;
+    int length = 0;
+    while (true) {
+      if (++length > maxRecordLength) {
+        throw new IllegalArgumentException("Record is longer than %d characters".formatted(maxRecordLength));
+      }
+      if (quoted) {
+        if (c == -1) {
+          throw new IllegalArgumentException("Quoted field is not terminated");
+        }
+        if (c == '"') {
+          if (peek() == '"') {
+            read();
+            field.append('"');
+          } else {
+            quoted = false;
+          }
+        } else {
+          if (c == '\n') {
+            line++;
+          }
+          field.append((char) c);
+        }
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+        wasQuoted = false;
+      } else if (c == '\n' || c == -1) {
+        if (c == '\n') {
+          line++;
+        }
+        break;
+      } else if (c == '\r' && peek() == '\n') {
+        // the line feed ends the record
+      } else if (c == '"' && field.isEmpty() && !wasQuoted) {
+        quoted = true;
+        wasQuoted = true;
+      } else {
+        field.append((char) c);
+      }
+      c = read();
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  /**
+   * Get the line on which the record last returned by {@link #next()} starts.
+   *
+   * @return the line number, starting at {@code 1}
+   */
+  public long recordLine() {
+    return recordLine;
+  }
+
+  private int read() throws IOException {
+    if (lookahead != NO_LOOKAHEAD) {
+      int c = lookahead;
+      lookahead = NO_LOOKAHEAD;
+      return c;
+    }
+    return reader.read();
+  }
+
+  private int peek() throws IOException {
+    if (lookahead == NO_LOOKAHEAD) {
+      lookahead = reader.read();
+    }
+    return lookahead;
+  }
+}
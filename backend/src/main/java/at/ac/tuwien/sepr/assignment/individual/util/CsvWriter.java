@@ -0,0 +1,55 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer for comma-separated values as described in RFC 4180, the counterpart of {@link CsvReader}.
+ * Fields are only quoted if they contain commas, quotes or line breaks. Records end with {@code \r\n}.
+ * This class is not thread-safe.
+ */
+public class CsvWriter {
+  private final Writer writer;
+
+  /**
+   * Constructs a new CsvWriter.
+   *
+   * @param writer the writer to write to, preferably buffered
+   */
+  public CsvWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Write a record.
+   *
+   * @param fields the fields of the record, {@code null} fields are written as empty ones
+   * @throws IOException if writing fails
+   */
+  public void writeRecord(Object... fields) throws IOException {
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      if (fields[i] != null) {
+        writeField(fields[i].toString());
+      }
+    }
+    writer.write("\r\n");
+  }
+
+  private void writeField(String field) throws IOException {
+    boolean quote = false;
+    for (int i = 0; i < field.length() && !quote; i++) {
+      char c = field.charAt(i);
+      quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+    }
+    if (!quote) {
+      writer.write(field);
+      return;
+    }
+    writer.write('"');
+    writer.write(field.replace("\"", "\"\""));
+    writer.write('"');
+  }
+}
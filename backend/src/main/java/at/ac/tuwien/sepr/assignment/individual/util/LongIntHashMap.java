@@ -0,0 +1,177 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to primitive {@code int} values.
+ * Avoids the boxed {@link Long} and {@link Integer} objects and the entry objects of a {@code HashMap},
+ * which makes it suitable for indexes over large numbers of IDs.
+ *
+ * <p>
+ * Uses linear probing with backward-shift deletion, so no tombstones accumulate.
+ * The key {@link Long#MIN_VALUE} is reserved to mark free slots and can not be stored.
+ * This class is not thread-safe.
+ * </p>
+ */
+public class LongIntHashMap {
+  private static final long FREE = Long.MIN_VALUE;
+  private static final float LOAD_FACTOR = 0.6f;
+
+  private final int missingValue;
+  private long[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+  private int resizeThreshold;
+
+  /**
+   * Creates an empty map.
+   *
+   * @param expectedSize the number of entries the map should hold without resizing
+   * @param missingValue the value returned by {@link #get(long)} for keys that are not contained
+   */
+  public LongIntHashMap(int expectedSize, int missingValue) {
+    this.missingValue = missingValue;
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * Get the value stored for {@code key}.
+   *
+   * @param key the key to look up
+   * @return the stored value, or the missing value given at construction if {@code key} is not contained
+   */
+  public int get(long key) {
+    int index = indexOf(key);
+    return keys[index] == FREE ? missingValue : values[index];
+  }
+
+  /**
+   * Check whether a value is stored for {@code key}.
+   *
+   * @param key the key to look up
+   * @return {@code true} if the map contains {@code key}
+   */
+  public boolean containsKey(long key) {
+    return keys[indexOf(key)] != FREE;
+  }
+
+  /**
+   * Store {@code value} for {@code key}, replacing any previous value.
+   *
+   * @param key the key, must not be {@link Long#MIN_VALUE}
+   * @param value the value to store
+   * @return the previously stored value, or the missing value if there was none
+   */
+  public int put(long key, int value) {
+    if (key == FREE) {
+      throw new IllegalArgumentException("Key %d is reserved".formatted(key));
+    }
+    int index = indexOf(key);
+    if (keys[index] != FREE) {
+      int previous = values[index];
+      values[index] = value;
+      return previous;
+    }
+    keys[index] = key;
+    values[index] = value;
+    if (++size > resizeThreshold) {
+      rehash(keys.length * 2);
+    }
+    return missingValue;
+  }
+
+  /**
+   * Remove the entry for {@code key}, if present.
+   *
+   * @param key the key to remove
+   * @return the removed value, or the missing value if there was none
+   */
+  public int remove(long key) {
+    int index = indexOf(key);
+    if (keys[index] == FREE) {
+      return missingValue;
+    }
+    final int removed = values[index];
+    size--;
+    // shift following entries of the probe sequence back, so that lookups never stop early
+    int gap = index;
+    int next = (gap + 1) & mask;
+    while (keys[next] != FREE) {
+      int home = slotFor(keys[next]);
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        keys[gap] = keys[next];
+        values[gap] = values[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[gap] = FREE;
+    return removed;
+  }
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    Arrays.fill(keys, FREE);
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Approximate number of bytes occupied by the backing arrays of this map.
+   *
+   * @return the size of the backing arrays in bytes
+   */
+  public long footprintBytes() {
+    return (long) keys.length * (Long.BYTES + Integer.BYTES);
+  }
+
+  private int indexOf(long key) {
+    int index = slotFor(key);
+    while (keys[index] != FREE && keys[index] != key) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private int slotFor(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int index = indexOf(oldKeys[i]);
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+        size++;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(keys, FREE);
+    mask = capacity - 1;
+    size = 0;
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private static int capacityFor(int expectedSize) {
+    int capacity = 16;
+    while (capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+}
@@ -0,0 +1,53 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a listing that is paged by keyset, i.e. by the sort key and ID of the last item of the previous page.
+ * The next page starts right after this item, which stays correct even if items are inserted or deleted in between,
+ * and can be found with an index instead of skipping all previous items.
+ *
+ * <p>
+ * Clients only ever see the {@link #encode() encoded} cursor, which they have to treat as opaque.
+ * </p>
+ *
+ * @param sort the name of the order of the listing
+ * @param key the sort key of the last item, as string, or the empty string if the listing is ordered by ID
+ * @param id the ID of the last item
+ */
+public record PageCursor(String sort, String key, long id) {
+  private static final char SEPARATOR = '\0';
+
+  /**
+   * Encode the cursor to a URL-safe string.
+   *
+   * @return the encoded cursor
+   */
+  public String encode() {
+    String plain = sort + SEPARATOR + id + SEPARATOR + key;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode a cursor previously produced by {@link #encode()}.
+   *
+   * @param encoded the encoded cursor
+   * @param expectedSort the name of the order of the listing the cursor is used for
+   * @return the decoded cursor
+   * @throws IllegalArgumentException if the string is not a valid cursor, or belongs to a listing in another order
+   */
+  public static PageCursor decode(String encoded, String expectedSort) {
+    String plain = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+    int first = plain.indexOf(SEPARATOR);
+    int second = first < 0 ? -1 : plain.indexOf(SEPARATOR, first + 1);
+    if (second < 0) {
+      throw new IllegalArgumentException("Malformed cursor");
+    }
+    String sort = plain.substring(0, first);
+    if (!sort.equals(expectedSort)) {
+      throw new IllegalArgumentException("Cursor belongs to a listing ordered by " + sort);
+    }
+    return new PageCursor(sort, plain.substring(second + 1), Long.parseLong(plain.substring(first + 1, second)));
+  }
+}
@@ -0,0 +1,212 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import java.util.Arrays;
+
+/**
+ * Compressed, append-friendly set of {@code long} IDs, as used in the posting lists of an inverted index.
+ *
+ * <p>
+ * IDs added in ascending order are stored as variable-length encoded differences to their predecessor,
+ * which takes a single byte per ID for densely numbered IDs.
+ * IDs that arrive out of order are kept uncompressed on the side, until the list is rewritten by {@link #compact()},
+ * which also happens by itself once they make up more than an eighth of the list.
+ * Removed IDs are likewise only recorded as tombstones, which {@link #toArray()} filters out,
+ * so that a removal does not rewrite the list until enough of them have piled up.
+ * This class is not thread-safe.
+ * </p>
+ */
+public class PostingList {
+  private static final long[] NO_IDS = new long[0];
+
+  private byte[] bytes = new byte[4];
+  private int byteCount;
+  private int count;
+  private long last;
+  private long[] unordered = NO_IDS;
+  private int unorderedCount;
+  private long[] removed = NO_IDS;
+  private int removedCount;
+
+  /**
+   * Add an ID to the list. Adding an ID that is already contained has no effect on the result of {@link #toArray()}.
+   *
+   * @param id the ID to add
+   */
+  public void add(long id) {
+    if (removedCount > 0) {
+      revive(id);
+    }
+    if (count == 0) {
+      writeVarLong((id << 1) ^ (id >> 63));
+    } else if (id > last) {
+      writeVarLong(id - last);
+    } else {
+      if (id != last) {
+        addUnordered(id);
+      }
+      return;
+    }
+    last = id;
+    count++;
+  }
+
+  /**
+   * Remove an ID from the list. The ID is only recorded as removed, and the list is rewritten without the removed IDs
+   * once they make up more than an eighth of it, so that removals take amortized constant time.
+   *
+   * @param id the ID to remove
+   */
+  public void remove(long id) {
+    for (int i = 0; i < removedCount; i++) {
+      if (removed[i] == id) {
+        return;
+      }
+    }
+    if (removedCount == removed.length) {
+      removed = Arrays.copyOf(removed, Math.max(4, removedCount * 2));
+    }
+    removed[removedCount++] = id;
+    if (removedCount > 16 && removedCount > count / 8) {
+      compact();
+    }
+  }
+
+  /**
+   * Get all contained IDs.
+   *
+   * @return the distinct IDs in ascending order
+   */
+  public long[] toArray() {
+    long[] ids = new long[count + unorderedCount];
+    int position = 0;
+    long value = 0;
+    for (int i = 0; i < count; i++) {
+      long varLong = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[position++];
+        varLong |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      value = i == 0 ? (varLong >>> 1) ^ -(varLong & 1) : value + varLong;
+      ids[i] = value;
+    }
+    if (unorderedCount == 0 && removedCount == 0) {
+      return ids;
+    }
+    System.arraycopy(unordered, 0, ids, count, unorderedCount);
+    if (unorderedCount > 0) {
+      Arrays.sort(ids);
+    }
+    long[] tombstones = Arrays.copyOf(removed, removedCount);
+    Arrays.sort(tombstones);
+    int kept = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if ((kept == 0 || ids[i] != ids[kept - 1]) && Arrays.binarySearch(tombstones, ids[i]) < 0) {
+        ids[kept++] = ids[i];
+      }
+    }
+    return kept == ids.length ? ids : Arrays.copyOf(ids, kept);
+  }
+
+  /**
+   * Rewrite the list so that all IDs are stored compressed, and release unused memory.
+   */
+  public void compact() {
+    rewrite(toArray());
+  }
+
+  private void rewrite(long[] ids) {
+    bytes = new byte[Math.max(4, ids.length)];
+    byteCount = 0;
+    count = 0;
+    unordered = NO_IDS;
+    unorderedCount = 0;
+    removed = NO_IDS;
+    removedCount = 0;
+    for (long id : ids) {
+      add(id);
+    }
+    bytes = Arrays.copyOf(bytes, byteCount);
+  }
+
+  /**
+   * Get the number of stored IDs. IDs that were added more than once out of order may be counted multiple times,
+   * and removed IDs are counted until the list is compacted, so this is an upper bound of the contained IDs.
+   *
+   * @return the number of stored IDs
+   */
+  public int size() {
+    return count + unorderedCount;
+  }
+
+  /**
+   * Estimate the memory used by this list.
+   *
+   * @return the approximate number of bytes allocated by this list
+   */
+  public long footprintBytes() {
+    return 64L + bytes.length + (long) (unordered.length + removed.length) * Long.BYTES;
+  }
+
+  /**
+   * Intersect two sorted arrays of distinct IDs.
+   *
+   * @param a the first array, in ascending order
+   * @param b the second array, in ascending order
+   * @return the IDs contained in both arrays, in ascending order
+   */
+  public static long[] intersect(long[] a, long[] b) {
+    long[] result = new long[Math.min(a.length, b.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[size++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  private void writeVarLong(long value) {
+    if (bytes.length - byteCount < 10) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount + 10));
+    }
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      bytes[byteCount++] = (byte) ((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    bytes[byteCount++] = (byte) remaining;
+  }
+
+  /**
+   * Drop the tombstone of an ID that is added again.
+   */
+  private void revive(long id) {
+    for (int i = 0; i < removedCount; i++) {
+      if (removed[i] == id) {
+        removed[i] = removed[--removedCount];
+        return;
+      }
+    }
+  }
+
+  private void addUnordered(long id) {
+    if (unorderedCount == unordered.length) {
+      unordered = Arrays.copyOf(unordered, Math.max(4, unorderedCount * 2));
+    }
+    unordered[unorderedCount++] = id;
+    if (unorderedCount > 16 && unorderedCount > count / 8) {
+      compact();
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Index for finding entries whose key starts with a given prefix, e.g. to suggest names while they are typed.
+ *
+ * <p>
+ * The bulk of the entries is kept in parallel arrays sorted by key, so a lookup is a binary search
+ * followed by a scan of the matching range, without any per-entry objects besides the strings themselves.
+ * Entries added later are kept in a small sorted set on the side, and entries removed later are only marked,
+ * until there are enough changes to merge them into new arrays.
+ * Every entry belongs to an ID, and an ID can have several entries, e.g. for different names of the same thing.
+ * This class is not thread-safe.
+ * </p>
+ */
+public class PrefixIndex {
+  private static final int MIN_CHANGES_BEFORE_MERGE = 1024;
+  private static final Comparator<Entry> ORDER =
+      Comparator.comparing(Entry::key).thenComparingLong(Entry::id);
+
+  private String[] keys = new String[0];
+  private long[] ids = new long[0];
+  private String[] labels = new String[0];
+  private final NavigableSet<Entry> added = new TreeSet<>(ORDER);
+  private final LongIntHashMap removed = new LongIntHashMap(64, 0);
+
+  /**
+   * An entry of the index.
+   *
+   * @param key the lower-cased key that is matched against prefixes
+   * @param id the ID the entry belongs to
+   * @param label the text to show for the entry
+   */
+  public record Entry(String key, long id, String label) {
+  }
+
+  /**
+   * Create an entry. The key is lower-cased, so that it is matched case-insensitively.
+   *
+   * @param key the key to match prefixes against
+   * @param id the ID the entry belongs to
+   * @param label the text to show for the entry
+   * @return the entry
+   */
+  public static Entry entry(String key, long id, String label) {
+    return new Entry(key.toLowerCase(Locale.ROOT), id, label);
+  }
+
+  /**
+   * Replace the content of the index.
+   *
+   * @param entries the new entries, in any order
+   */
+  public void load(List<Entry> entries) {
+    Entry[] sorted = entries.toArray(new Entry[0]);
+    Arrays.sort(sorted, ORDER);
+    store(Arrays.asList(sorted));
+    added.clear();
+    removed.clear();
+  }
+
+  /**
+   * Replace all entries of an ID.
+   *
+   * @param id the ID whose entries to replace
+   * @param entries the new entries of the ID
+   */
+  public void put(long id, List<Entry> entries) {
+    remove(id);
+    added.addAll(entries);
+    mergeIfNeeded();
+  }
+
+  /**
+   * Remove all entries of an ID.
+   *
+   * @param id the ID whose entries to remove
+   */
+  public void remove(long id) {
+    removed.put(id, 1);
+    added.removeIf(entry -> entry.id() == id);
+    mergeIfNeeded();
+  }
+
+  /**
+   * Find entries whose key starts with a prefix.
+   * Every ID is only returned once, with its first matching entry.
+   *
+   * @param prefix the prefix to match, compared case-insensitively
+   * @param limit the maximum number of entries to return
+   * @return the matching entries, ordered by key, so that an exact match comes first
+   */
+  public List<Entry> find(String prefix, int limit) {
+    String lower = prefix.toLowerCase(Locale.ROOT);
+    List<Entry> result = new ArrayList<>(Math.min(limit, 16));
+    LongIntHashMap seen = new LongIntHashMap(limit, 0);
+    int position = lowerBound(lower);
+    Iterator<Entry> fresh = added.tailSet(new Entry(lower, Long.MIN_VALUE, null), true).iterator();
+    Entry nextFresh = next(fresh, lower);
+    while (result.size() < limit) {
+      boolean hasStored = position < keys.length && keys[position].startsWith(lower);
+      Entry candidate;
+      if (hasStored && (nextFresh == null || compare(position, nextFresh) < 0)) {
+        candidate = removed.containsKey(ids[position]) ? null : new Entry(keys[position], ids[position], labels[position]);
+        position++;
+      } else if (nextFresh != null) {
+        candidate = nextFresh;
+        nextFresh = next(fresh, lower);
+      } else {
+        break;
+      }
+      if (candidate != null && !seen.containsKey(candidate.id())) {
+        seen.put(candidate.id(), 1);
+        result.add(candidate);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the number of entries.
+   *
+   * @return the number of entries, including removed ones that have not been merged away yet
+   */
+  public int size() {
+    return keys.length + added.size();
+  }
+
+  private static Entry next(Iterator<Entry> iterator, String prefix) {
+    if (!iterator.hasNext()) {
+      return null;
+    }
+    Entry entry = iterator.next();
+    return entry.key().startsWith(prefix) ? entry : null;
+  }
+
+  private int compare(int position, Entry entry) {
+    int byKey = keys[position].compareTo(entry.key());
+    return byKey != 0 ? byKey : Long.compare(ids[position], entry.id());
+  }
+
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = keys.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (keys[middle].compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private void mergeIfNeeded() {
+    if (added.size() + removed.size() <= Math.max(MIN_CHANGES_BEFORE_MERGE, keys.length / 8)) {
+      return;
+    }
+    List<Entry> merged = new ArrayList<>(keys.length + added.size());
+    Iterator<Entry> fresh = added.iterator();
+    Entry nextFresh = fresh.hasNext() ? fresh.next() : null;
+    for (int i = 0; i < keys.length; i++) {
+      if (removed.containsKey(ids[i])) {
+        continue;
+      }
+      while (nextFresh != null && compare(i, nextFresh) > 0) {
+        merged.add(nextFresh);
+        nextFresh = fresh.hasNext() ? fresh.next() : null;
+      }
+      merged.add(new Entry(keys[i], ids[i], labels[i]));
+    }
+    while (nextFresh != null) {
+      merged.add(nextFresh);
+      nextFresh = fresh.hasNext() ? fresh.next() : null;
+    }
+    store(merged);
+    added.clear();
+    removed.clear();
+  }
+
+  private void store(List<Entry> sorted) {
+    keys = new String[sorted.size()];
+    ids = new long[sorted.size()];
+    labels = new String[sorted.size()];
+    for (int i = 0; i < sorted.size(); i++) {
+      Entry entry = sorted.get(i);
+      keys[i] = entry.key();
+      ids[i] = entry.id();
+      // the same string object for key and label, if they are equal, saves memory
+      labels[i] = entry.label().equals(entry.key()) ? entry.key() : entry.label();
+    }
+  }
+}
@@ -20,4 +20,44 @@ CREATE TABLE IF NOT EXISTS horse
   owner_id BIGINT,
   parent_female_id BIGINT,
   parent_male_id BIGINT
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS horse_parent_female_id_idx ON horse (parent_female_id);
+CREATE INDEX IF NOT EXISTS horse_parent_male_id_idx ON horse (parent_male_id);
+
+-- lower-cased copies for case-insensitive search, so that prefix matches can use an index
+ALTER TABLE horse ADD COLUMN IF NOT EXISTS name_lower VARCHAR(255) GENERATED ALWAYS AS (LOWER(name));
+ALTER TABLE horse ADD COLUMN IF NOT EXISTS description_lower VARCHAR(4095) GENERATED ALWAYS AS (LOWER(description));
+
+CREATE INDEX IF NOT EXISTS horse_name_lower_idx ON horse (name_lower);
+CREATE INDEX IF NOT EXISTS horse_date_of_birth_idx ON horse (date_of_birth);
+CREATE INDEX IF NOT EXISTS horse_sex_idx ON horse (sex);
+CREATE INDEX IF NOT EXISTS horse_owner_id_idx ON horse (owner_id);
+
+-- lower-cased names of owners, so that owners can be found by a prefix of their full or last name with an index
+ALTER TABLE owner ADD COLUMN IF NOT EXISTS full_name_lower VARCHAR(511) GENERATED ALWAYS AS (LOWER(first_name || ' ' || last_name));
+ALTER TABLE owner ADD COLUMN IF NOT EXISTS last_name_lower VARCHAR(255) GENERATED ALWAYS AS (LOWER(last_name));
+
+CREATE INDEX IF NOT EXISTS owner_full_name_lower_idx ON owner (full_name_lower);
+CREATE INDEX IF NOT EXISTS owner_last_name_lower_idx ON owner (last_name_lower);
+
+-- transitive closure of the parent links, with the length of the shortest path;
+-- every horse is its own ancestor at depth 0
+CREATE TABLE IF NOT EXISTS horse_ancestry
+(
+  ancestor_id BIGINT NOT NULL,
+  descendant_id BIGINT NOT NULL,
+  depth INT NOT NULL,
+  PRIMARY KEY (descendant_id, ancestor_id)
+);
+
+CREATE INDEX IF NOT EXISTS horse_ancestry_ancestor_id_idx ON horse_ancestry (ancestor_id, depth);
+
+-- single row locked by every transaction that changes parent links, so that they check for cycles one at a time,
+-- also across processes sharing the database; inserted without touching an existing row, which may be locked
+CREATE TABLE IF NOT EXISTS parent_link_lock
+(
+  id INT PRIMARY KEY
+);
+
+INSERT INTO parent_link_lock (id) SELECT 1 WHERE NOT EXISTS (SELECT 1 FROM parent_link_lock);
@@ -3,6 +3,20 @@
 -- negative IDs are used to not interfere with user-entered data and allow clean deletion of test data
 
 DELETE FROM horse where id < 0;
+DELETE FROM owner where id < 0;
 
-INSERT INTO horse (id, name, description, date_of_birth, sex)
-VALUES (-1, 'Wendy', 'The famous one!', '2012-12-12', 'FEMALE')
\ No newline at end of file
+INSERT INTO owner (id, first_name, last_name, email, description)
+VALUES (-1, 'Hans', 'Huber', 'hans.huber@example.com', 'Runs the stud farm next to Wendy'),
+       (-2, 'Maria', 'Gruber', 'maria.gruber@example.com', NULL);
+
+INSERT INTO horse (id, name, description, date_of_birth, sex, owner_id, parent_female_id, parent_male_id)
+VALUES (-4, 'Daisy', 'Wendy''s grandmother', '1998-04-02', 'FEMALE', NULL, NULL, NULL),
+       (-5, 'Storm', 'Sire of both of Wendy''s parents', '1997-06-21', 'MALE', -1, NULL, NULL),
+       (-6, 'Luna', NULL, '1999-03-15', 'FEMALE', NULL, NULL, NULL),
+       (-2, 'Bella', 'Wendy''s mother', '2005-05-05', 'FEMALE', -1, -4, -5),
+       (-3, 'Thunder', 'Wendy''s father', '2004-08-30', 'MALE', -2, -6, -5),
+       (-1, 'Wendy', 'The famous one!', '2012-12-12', 'FEMALE', NULL, -2, -3),
+       (-8, 'Blaze', NULL, '2010-01-20', 'MALE', -1, NULL, NULL),
+       (-7, 'Spirit', 'Wendy''s first foal', '2018-04-11', 'MALE', -2, -1, -8),
+       (-9, 'Rosie', NULL, '2019-05-23', 'FEMALE', -2, -1, -8),
+       (-10, 'Comet', NULL, '2015-09-09', 'MALE', -2, NULL, NULL);
@@ -1,13 +1,23 @@
 package at.ac.tuwien.sepr.assignment.individual.persistence;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 /**
@@ -20,6 +30,12 @@ public class HorseDaoTest {
   @Autowired
   HorseDao horseDao;
 
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  TrigramIndex trigramIndex;
+
   /**
    * Tests that retrieving all stored horses returns at least one entry
    * and verifies that a specific horse exists in the test dataset.
@@ -32,4 +48,180 @@ public class HorseDaoTest {
         .extracting(Horse::id, Horse::name)
         .contains(tuple(-1L, "Wendy"));
   }
+
+  /**
+   * Tests that names match case-insensitively by prefix, and anywhere only if requested.
+   */
+  @Test
+  public void searchMatchesPrefixUnlessSubstringIsRequested() throws Exception {
+    assertThat(horseDao.search(new HorseSearchDto("THU", null, null, null, null, null, null, null, null, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactly("Thunder");
+    assertThat(horseDao.search(new HorseSearchDto("under", null, null, null, null, null, null, null, null, null, null, null)))
+        .isEmpty();
+    assertThat(horseDao.search(new HorseSearchDto("under", null, null, null, null, null, null, null, true, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactly("Thunder");
+    assertThat(horseDao.search(new HorseSearchDto("%", null, null, null, null, null, null, null, true, null, null, null)))
+        .isEmpty();
+  }
+
+  /**
+   * Tests that horses can be filtered by their parents, alone and together with other criteria.
+   */
+  @Test
+  public void searchFiltersByParents() throws Exception {
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, null, null, null, -5L, null, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactlyInAnyOrder("Bella", "Thunder");
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, null, null, -4L, -5L, null, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactly("Bella");
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, null, null, -1L, null, null, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactlyInAnyOrder("Spirit", "Rosie");
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, Sex.FEMALE, null, null, -1L, null, null, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactly("Rosie");
+  }
+
+  /**
+   * Tests that owners are matched by any part of their full name by default,
+   * and only by a prefix of their full name or of their last name on request, ignoring case.
+   */
+  @Test
+  public void searchMatchesOwnerByPartOfNameOrByPrefixOnRequest() throws Exception {
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, "s hub", null, null, null, null, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactlyInAnyOrder("Storm", "Bella", "Blaze");
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, "HUB", null, null, null, null, true, null, null)))
+        .extracting(Horse::name)
+        .containsExactlyInAnyOrder("Storm", "Bella", "Blaze");
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, "maria g", null, null, null, null, true, null, null)))
+        .extracting(Horse::name)
+        .containsExactlyInAnyOrder("Thunder", "Spirit", "Rosie", "Comet");
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, "uber", null, null, null, null, true, null, null)))
+        .isEmpty();
+  }
+
+  /**
+   * Tests that substring search on name and description finds horses through the trigram index,
+   * including horses created after the index was built.
+   */
+  @Test
+  public void substringSearchFindsNewlyCreatedHorses() throws Exception {
+    assertThat(horseDao.search(new HorseSearchDto(null, "FAMOUS", null, null, null, null, null, null, true, null, null, null)))
+        .extracting(Horse::name)
+        .containsExactly("Wendy");
+
+    Horse created = horseDao.create(new HorseCreateDto("Moonshadow", "A quiet gelding", LocalDate.of(2020, 1, 1),
+        Sex.MALE, null, null, null, null));
+    try {
+      assertThat(horseDao.search(new HorseSearchDto("nsha", "quiet", null, null, null, null, null, null, true, null, null, null)))
+          .extracting(Horse::id)
+          .containsExactly(created.id());
+      assertThat(horseDao.search(new HorseSearchDto("nsha", "loud", null, null, null, null, null, null, true, null, null, null)))
+          .isEmpty();
+    } finally {
+      horseDao.delete(created.id());
+    }
+    assertThat(horseDao.search(new HorseSearchDto("nsha", null, null, null, null, null, null, null, true, null, null, null)))
+        .isEmpty();
+  }
+
+  /**
+   * Tests that an update moves a horse from the posting lists of the trigrams of its old name to those of its new name,
+   * and that a search for a substring no indexed horse contains is answered from the index,
+   * so that a horse written past the DAO is only found once the index is loaded again.
+   */
+  @Test
+  public void substringSearchFollowsUpdatesAndMissesUnindexedHorsesUntilReload() throws Exception {
+    Horse created = horseDao.create(new HorseCreateDto("Moonshadow", null, LocalDate.of(2020, 1, 1),
+        Sex.MALE, null, null, null, null));
+    try {
+      horseDao.update(new HorseUpdateDto(created.id(), "Sunbeam", null, LocalDate.of(2020, 1, 1),
+          Sex.MALE, null, null, null, null));
+      assertThat(trigramIndex.candidates(TrigramIndex.Field.NAME, "nsha", 100)).doesNotContain(created.id());
+      assertThat(trigramIndex.candidates(TrigramIndex.Field.NAME, "nbea", 100)).contains(created.id());
+
+      jdbcTemplate.update("INSERT INTO horse (id, name, date_of_birth, sex) VALUES (-11, 'Zephyr', '2001-01-01', 'MALE')");
+      HorseSearchDto search = new HorseSearchDto("phyr", null, null, null, null, null, null, null, true, null, null, null);
+      assertThat(horseDao.search(search)).isEmpty();
+      trigramIndex.load();
+      assertThat(horseDao.search(search))
+          .extracting(Horse::id)
+          .containsExactly(-11L);
+    } finally {
+      jdbcTemplate.update("DELETE FROM horse WHERE id = -11");
+      horseDao.delete(created.id());
+      trigramIndex.load();
+    }
+  }
+
+  /**
+   * Tests that the stored ancestry follows creating, re-parenting and deleting a horse.
+   */
+  @Test
+  public void ancestryIsMaintainedOnWrites() throws Exception {
+    assertThat(horseDao.isAncestor(-5, -7)).isTrue();
+    assertThat(horseDao.isAncestor(-7, -5)).isFalse();
+    assertThat(horseDao.countDescendants(-5)).isEqualTo(5);
+
+    Horse foal = horseDao.create(new HorseCreateDto("Pebble", null, LocalDate.of(2023, 3, 3), Sex.FEMALE,
+        null, null, -9L, -10L));
+    try {
+      assertThat(horseDao.isAncestor(-5, foal.id())).isTrue();
+      assertThat(horseDao.countDescendants(-5)).isEqualTo(6);
+      assertThat(horseDao.getFamilyTree(foal.id(), 2))
+          .extracting(Horse::id)
+          .containsExactlyInAnyOrder(foal.id(), -9L, -10L, -1L, -8L);
+
+      horseDao.update(new HorseUpdateDto(foal.id(), "Pebble", null, LocalDate.of(2023, 3, 3), Sex.FEMALE,
+          null, null, null, -10L));
+      assertThat(horseDao.isAncestor(-5, foal.id())).isFalse();
+      assertThat(horseDao.isAncestor(-10, foal.id())).isTrue();
+    } finally {
+      horseDao.delete(foal.id());
+    }
+    assertThat(horseDao.countDescendants(-10)).isZero();
+  }
+
+  /**
+   * Tests that an update making a descendant the parent of a horse is rejected by the stored ancestry,
+   * even if it was not caught before, and that nothing is written.
+   */
+  @Test
+  public void updateRejectsDescendantAsParent() throws Exception {
+    assertThatThrownBy(() -> horseDao.update(new HorseUpdateDto(-2L, "Bella", "Wendy's mother", LocalDate.of(2005, 5, 5),
+        Sex.FEMALE, null, -1L, -4L, -7L)))
+        .isInstanceOf(ConflictException.class);
+
+    assertThat(horseDao.getById(-2).parentMaleId()).isEqualTo(-5L);
+    assertThat(horseDao.isAncestor(-2, -7)).isTrue();
+    assertThat(horseDao.isAncestor(-7, -2)).isFalse();
+  }
+
+  /**
+   * Tests that rebuilding the ancestry terminates on parent links that were written past the DAO and form a cycle,
+   * and leaves the cyclic horses out of the ancestry of all other horses.
+   */
+  @Test
+  @Timeout(value = 30, unit = TimeUnit.SECONDS)
+  public void rebuildAncestryLeavesOutCyclicHorses() {
+    jdbcTemplate.update("INSERT INTO horse (id, name, date_of_birth, sex) VALUES"
+        + " (-11, 'Ouro', '2001-01-01', 'MALE'), (-12, 'Boros', '2002-02-02', 'MALE')");
+    jdbcTemplate.update("UPDATE horse SET parent_male_id = -12 WHERE id = -11");
+    jdbcTemplate.update("UPDATE horse SET parent_male_id = -11 WHERE id = -12");
+    try {
+      horseDao.rebuildAncestry();
+
+      assertThat(horseDao.isAncestor(-11, -12)).isFalse();
+      assertThat(horseDao.isAncestor(-12, -11)).isFalse();
+      assertThat(horseDao.isAncestor(-5, -7)).isTrue();
+      assertThat(horseDao.countDescendants(-5)).isEqualTo(5);
+    } finally {
+      jdbcTemplate.update("DELETE FROM horse WHERE id IN (-11, -12)");
+      horseDao.rebuildAncestry();
+    }
+  }
 }
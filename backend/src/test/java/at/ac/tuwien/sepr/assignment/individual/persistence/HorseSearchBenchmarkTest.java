@@ -0,0 +1,102 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Benchmark of the horse search with 10k, 100k and 1M stored horses, comparing prefix and substring matching.
+ * Runs on its own in-memory database, and only with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@ActiveProfiles("test")
+@SpringBootTest(properties =
+    "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:sql/createSchema.sql'")
+public class HorseSearchBenchmarkTest {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+  private static final int WARMUP_QUERIES = 50;
+  private static final int MEASURED_QUERIES = 200;
+
+  // names are the first 12 hex digits of a hash of the row number, so every 3-digit prefix matches ~1/4096 of them
+  private static final String SQL_INSERT_HORSES =
+      """
+      INSERT INTO horse (name, description, date_of_birth, sex)
+      SELECT SUBSTRING(RAWTOHEX(HASH('SHA-256', CAST(X AS VARCHAR))), 1, 12),
+             'Benchmark horse number ' || X,
+             DATEADD(DAY, -MOD(X, 10000), DATE '2024-01-01'),
+             CASE WHEN MOD(X, 2) = 0 THEN 'FEMALE' ELSE 'MALE' END
+        FROM SYSTEM_RANGE(:from, :to)
+      """;
+
+  @Autowired
+  HorseDao horseDao;
+
+  @Autowired
+  JdbcClient jdbcClient;
+
+  @Autowired
+  TrigramIndex trigramIndex;
+
+  /**
+   * Measures search latency by name for growing numbers of horses.
+   */
+  @Test
+  public void searchByNameLatency() throws Exception {
+    Random random = new Random(42);
+    int stored = 0;
+    for (int size : SIZES) {
+      jdbcClient.sql(SQL_INSERT_HORSES)
+          .param("from", stored + 1)
+          .param("to", size)
+          .update();
+      stored = size;
+      // the horses were inserted bypassing the DAO
+      trigramIndex.load();
+
+      for (boolean substring : new boolean[] {false, true}) {
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+          search(randomPrefix(random), substring);
+        }
+        long[] nanos = new long[MEASURED_QUERIES];
+        long matches = 0;
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+          String query = randomPrefix(random);
+          long start = System.nanoTime();
+          matches += search(query, substring);
+          nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        LOG.info("{} horses, {} match: median {} us, p99 {} us, {} matches per query on average",
+            size, substring ? "substring" : "prefix",
+            nanos[MEASURED_QUERIES / 2] / 1000, nanos[MEASURED_QUERIES * 99 / 100] / 1000,
+            matches / MEASURED_QUERIES);
+        assertThat(matches).isPositive();
+      }
+    }
+  }
+
+  private int search(String name, boolean substring) throws NotFoundException {
+    return horseDao.search(
+        new HorseSearchDto(name, null, null, null, null, null, null, null, substring, null, null, null)).size();
+  }
+
+  private static String randomPrefix(Random random) {
+    byte[] bytes = new byte[2];
+    random.nextBytes(bytes);
+    return HexFormat.of().formatHex(bytes).substring(0, 3);
+  }
+}
@@ -0,0 +1,66 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test for {@link PedigreeGraph}, ensuring it reflects the stored horses and their changes.
+ */
+@ActiveProfiles({"test", "datagen"}) // Enables "test" Spring profile to load test data
+@SpringBootTest
+public class PedigreeGraphTest {
+
+  @Autowired
+  PedigreeGraph pedigreeGraph;
+
+  @Autowired
+  HorseDao horseDao;
+
+  /**
+   * Tests that ancestors are found up to the requested generation, each of them only once.
+   */
+  @Test
+  public void ancestorsAreDistinctAndLimitedByGenerations() {
+    assertThat(pedigreeGraph.ancestors(-1, 1)).containsExactlyInAnyOrder(-2L, -3L);
+    assertThat(pedigreeGraph.ancestors(-1, 5)).containsExactlyInAnyOrder(-2L, -3L, -4L, -5L, -6L);
+    assertThat(pedigreeGraph.ancestors(-5, 5)).isEmpty();
+  }
+
+  /**
+   * Tests that descendants are found via both parent links.
+   */
+  @Test
+  public void descendantsFollowBothParents() {
+    assertThat(pedigreeGraph.children(-5)).containsExactlyInAnyOrder(-2L, -3L);
+    assertThat(pedigreeGraph.descendants(-5, 3)).containsExactlyInAnyOrder(-2L, -3L, -1L, -7L, -9L);
+    assertThat(pedigreeGraph.sex(-5)).isEqualTo(Sex.MALE);
+    assertThat(pedigreeGraph.parentFemaleId(-1)).isEqualTo(-2L);
+    assertThat(pedigreeGraph.parentMaleId(-4)).isEqualTo(PedigreeGraph.NO_HORSE);
+  }
+
+  /**
+   * Tests that created and deleted horses are reflected in the graph.
+   */
+  @Test
+  public void createdAndDeletedHorsesAreSynced() throws Exception {
+    Horse created = horseDao.create(new HorseCreateDto(
+        "Foal", null, LocalDate.of(2024, 3, 1), Sex.FEMALE, null, null, -9L, -10L));
+    try {
+      assertThat(pedigreeGraph.contains(created.id())).isTrue();
+      assertThat(pedigreeGraph.children(-10)).containsExactly(created.id());
+      assertThat(pedigreeGraph.ancestors(created.id(), 1)).containsExactlyInAnyOrder(-9L, -10L);
+    } finally {
+      horseDao.delete(created.id());
+    }
+    assertThat(pedigreeGraph.contains(created.id())).isFalse();
+    assertThat(pedigreeGraph.children(-10)).isEmpty();
+  }
+}
@@ -0,0 +1,91 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.QueryShapeStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SlowQueryDto;
+import java.time.Duration;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test for {@link QueryRecorder}, and the data source reporting to it.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest(properties = "app.query-recording.enabled=true")
+public class QueryRecorderTest {
+
+  @Autowired
+  QueryRecorder queryRecorder;
+
+  @Autowired
+  HorseDao horseDao;
+
+  @Autowired
+  DataSource dataSource;
+
+  /**
+   * Tests that statements differing only in literals and in the length of parameter lists have the same shape.
+   */
+  @Test
+  public void shapeIgnoresLiteralsAndLengthOfParameterLists() {
+    assertThat(QueryRecorder.shape("SELECT * FROM horse\n WHERE id IN (?, ?,?) AND name = 'Wendy' AND t1.x > 42"))
+        .isEqualTo("SELECT * FROM horse WHERE id IN (?...) AND name = ? AND t1.x > ?");
+    assertThat(QueryRecorder.shape("SELECT * FROM horse WHERE id IN (?, ?)"))
+        .isEqualTo(QueryRecorder.shape("SELECT * FROM horse WHERE id IN (?, ?, ?, ?)"));
+  }
+
+  /**
+   * Tests that the queries of a search are recorded under their shape.
+   */
+  @Test
+  public void searchesAreRecordedByShape() throws Exception {
+    long before = executionsOfOwnerNameSearches();
+    assertThat(horseDao.search(new HorseSearchDto(null, null, null, null, "gruber", null, null, null, null, true, null, null)))
+        .hasSize(4);
+    assertThat(executionsOfOwnerNameSearches()).isEqualTo(before + 1);
+  }
+
+  /**
+   * Tests that a query over the threshold is kept with the plan H2 captured for it.
+   */
+  @Test
+  public void slowQueriesAreKeptWithTheirPlans() throws Exception {
+    QueryRecorder recorder = new QueryRecorder(Duration.ofMillis(10), 5, 100);
+    try {
+      recorder.record("SELECT * FROM horse WHERE sex = ?", List.of("MALE"), 5_000_000, 5, dataSource);
+      recorder.record("SELECT * FROM horse WHERE sex = ?", List.of("FEMALE"), 20_000_000, 5, dataSource);
+
+      assertThat(recorder.shapeStats())
+          .singleElement()
+          .extracting(QueryShapeStatsDto::executions, QueryShapeStatsDto::maxMillis)
+          .containsExactly(2L, 20.0);
+      SlowQueryDto slowQuery = recorder.slowQueries(10).getFirst();
+      assertThat(slowQuery.shape()).isEqualTo("SELECT * FROM horse WHERE sex = ?");
+      for (int i = 0; i < 50 && recorder.slowQueries(10).getFirst().plan() == null; i++) {
+        Thread.sleep(100);
+      }
+      assertThat(recorder.slowQueries(10))
+          .singleElement()
+          .extracting(SlowQueryDto::plan)
+          .asString()
+          .contains("scanCount");
+    } finally {
+      recorder.shutdown();
+    }
+  }
+
+  private long executionsOfOwnerNameSearches() {
+    return queryRecorder.shapeStats().stream()
+        .filter(stats -> stats.shape().equals("SELECT * FROM horse WHERE ?=? AND owner_id IN (SELECT id FROM owner"
+            + " WHERE full_name_lower LIKE ? ESCAPE ? UNION SELECT id FROM owner WHERE last_name_lower LIKE ? ESCAPE ?)"
+            + " ORDER BY id"))
+        .mapToLong(QueryShapeStatsDto::executions)
+        .sum();
+  }
+}
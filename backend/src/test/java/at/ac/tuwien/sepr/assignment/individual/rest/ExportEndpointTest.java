@@ -0,0 +1,176 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import at.ac.tuwien.sepr.assignment.individual.util.CsvReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+/**
+ * Integration tests for the export REST API endpoint.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest
+@EnableWebMvc
+@WebAppConfiguration
+public class ExportEndpointTest {
+
+  @Autowired
+  private WebApplicationContext webAppContext;
+  private MockMvc mockMvc;
+
+  /**
+   * Sets up the MockMvc instance before each test.
+   */
+  @BeforeEach
+  public void setup() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(webAppContext).build();
+  }
+
+  /**
+   * Tests that the CSV export contains a header and all horses ordered by ID.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void exportingCsvReturnsAllHorsesCompressed() throws Exception {
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders.get("/export/horses").param("format", "csv"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", "application/gzip"))
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(header().string("Content-Disposition", "attachment; filename=\"horses.csv.gz\""))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    CsvReader csv = new CsvReader(new InputStreamReader(
+        new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8), 10_000);
+    assertThat(csv.next()).containsExactly(
+        "id", "name", "description", "dateOfBirth", "sex", "ownerId", "parentFemaleId", "parentMaleId");
+    List<List<String>> records = new ArrayList<>();
+    for (List<String> record = csv.next(); record != null; record = csv.next()) {
+      records.add(record);
+    }
+    assertThat(records).hasSize(10);
+    assertThat(records.getFirst().get(0)).isEqualTo("-10");
+    assertThat(records).anySatisfy(record ->
+        assertThat(record).containsExactly("-1", "Wendy", "The famous one!", "2012-12-12", "FEMALE", "", "-2", "-3"));
+  }
+
+  /**
+   * Tests that the binary export can be decoded as documented, with owners taken from the block's dictionary.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void exportingBinaryReturnsColumnarBlocks() throws Exception {
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders.get("/export/horses").param("format", "bin"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+
+    DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(body)));
+    assertThat(in.readNBytes(4)).isEqualTo("HRSB".getBytes(StandardCharsets.US_ASCII));
+    assertThat(in.readByte()).isEqualTo((byte) 1);
+    int n = in.readInt();
+    assertThat(n).isEqualTo(10);
+    long[] ids = new long[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = in.readLong();
+    }
+    String[] names = new String[n];
+    for (int i = 0; i < n; i++) {
+      names[i] = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+    byte[] descriptions = in.readNBytes((n + 7) / 8);
+    for (int i = 0; i < n; i++) {
+      if ((descriptions[i / 8] & (1 << (i % 8))) != 0) {
+        in.skipNBytes(in.readInt());
+      }
+    }
+    int[] birthDays = new int[n];
+    for (int i = 0; i < n; i++) {
+      birthDays[i] = in.readInt();
+    }
+    final byte[] sexes = in.readNBytes(n);
+    long[] owners = new long[in.readInt()];
+    for (int i = 0; i < owners.length; i++) {
+      owners[i] = in.readLong();
+    }
+    int[] ownerIndexes = new int[n];
+    for (int i = 0; i < n; i++) {
+      ownerIndexes[i] = in.readInt();
+    }
+
+    assertThat(ids[0]).isEqualTo(-10);
+    assertThat(owners).containsExactlyInAnyOrder(-1, -2);
+    int spirit = List.of(names).indexOf("Spirit");
+    assertThat(ids[spirit]).isEqualTo(-7);
+    assertThat(LocalDate.ofEpochDay(birthDays[spirit]).getYear()).isEqualTo(2018);
+    assertThat(sexes[spirit]).isEqualTo((byte) 'M');
+    assertThat(owners[ownerIndexes[spirit]]).isEqualTo(-2);
+    assertThat(ownerIndexes[List.of(names).indexOf("Wendy")]).isEqualTo(-1);
+  }
+
+  /**
+   * Tests that the owner export contains all owners ordered by ID.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void exportingOwnersAsCsvReturnsAllOwners() throws Exception {
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders.get("/export/owners").param("format", "csv"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Disposition", "attachment; filename=\"owners.csv.gz\""))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    CsvReader csv = new CsvReader(new InputStreamReader(
+        new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8), 10_000);
+    assertThat(csv.next()).containsExactly("id", "firstName", "lastName", "email", "description");
+    assertThat(csv.next()).startsWith("-2", "Maria", "Gruber");
+    assertThat(csv.next()).startsWith("-1", "Hans", "Huber");
+  }
+
+  /**
+   * Tests that owners can not be exported in the binary format, which only exists for horses.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void exportingOwnersAsBinaryReturns422() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders.get("/export/owners").param("format", "bin"))
+        .andExpect(status().isUnprocessableEntity());
+  }
+
+  /**
+   * Tests that an unknown format is rejected.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void exportingUnknownFormatReturns422() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders.get("/export/horses").param("format", "xml"))
+        .andExpect(status().isUnprocessableEntity());
+  }
+}
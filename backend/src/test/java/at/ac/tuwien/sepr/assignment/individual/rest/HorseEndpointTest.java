@@ -2,16 +2,29 @@ package at.ac.tuwien.sepr.assignment.individual.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchCreatedDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseBatchItemDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseImportDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
@@ -79,4 +92,326 @@ public class HorseEndpointTest {
             .get("/asdf123")
         ).andExpect(status().isNotFound());
   }
+
+  /**
+   * Tests that the family tree of a horse is returned as a nested structure.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void gettingFamilyTreeReturnsNestedParents() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses/-1/familytree")
+            .param("generations", "2")
+            .accept(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk())
+        .andExpect(jsonPath("$.name").value("Wendy"))
+        .andExpect(jsonPath("$.parentFemale.name").value("Bella"))
+        .andExpect(jsonPath("$.parentFemale.parentFemale.name").value("Daisy"))
+        .andExpect(jsonPath("$.parentMale.parentFemale.name").value("Luna"));
+  }
+
+  /**
+   * Tests that requesting a family tree with a negative or too large number of generations is rejected.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void gettingFamilyTreeWithGenerationsOutOfRangeReturns422() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses/-1/familytree")
+            .param("generations", "-1")
+        ).andExpect(status().isUnprocessableEntity());
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses/-1/familytree")
+            .param("generations", "13")
+        ).andExpect(status().isUnprocessableEntity());
+  }
+
+  /**
+   * Tests that descendants are returned generation by generation.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void gettingDescendantsReturnsThemByGeneration() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses/-5/descendants")
+            .param("generations", "3")
+            .accept(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(5))
+        .andExpect(jsonPath("$[0].generation").value(1))
+        .andExpect(jsonPath("$[0].name").value("Thunder"))
+        .andExpect(jsonPath("$[1].name").value("Bella"))
+        .andExpect(jsonPath("$[2].name").value("Wendy"))
+        .andExpect(jsonPath("$[2].generation").value(2))
+        .andExpect(jsonPath("$[4].name").value("Rosie"))
+        .andExpect(jsonPath("$[4].generation").value(3));
+  }
+
+  /**
+   * Tests that family trees of many horses are streamed as one JSON object per line, in the requested order.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void postingFamilyTreesStreamsNdjson() throws Exception {
+    String body = mockMvc
+        .perform(MockMvcRequestBuilders
+            .post("/horses/familytrees")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"ids\": [-7, -1, -10], \"generations\": 1}")
+        ).andExpect(request().asyncNotStarted())
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+        .andReturn().getResponse().getContentAsString();
+
+    List<HorseFamilyTreeDto> trees = body.lines()
+        .map(line -> {
+          try {
+            return objectMapper.readValue(line, HorseFamilyTreeDto.class);
+          } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+          }
+        })
+        .toList();
+    assertThat(trees)
+        .extracting(HorseFamilyTreeDto::name)
+        .containsExactly("Spirit", "Wendy", "Comet");
+    assertThat(trees.get(0).parentFemale().name()).isEqualTo("Wendy");
+    assertThat(trees.get(0).parentFemale().parentFemale()).isNull();
+    assertThat(trees.get(1).parentMale().name()).isEqualTo("Thunder");
+  }
+
+  /**
+   * Tests that following the next-page cursors of a search lists every horse exactly once, in the requested order.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void searchingWithLimitPagesByCursor() throws Exception {
+    List<HorseListDto> all = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      var request = MockMvcRequestBuilders
+          .get("/horses")
+          .param("sort", "NAME")
+          .param("limit", "3")
+          .accept(MediaType.APPLICATION_JSON);
+      if (cursor != null) {
+        request.param("cursor", cursor);
+      }
+      MockHttpServletResponse response = mockMvc.perform(request)
+          .andExpect(status().isOk())
+          .andReturn().getResponse();
+      List<HorseListDto> page = objectMapper.readerFor(HorseListDto.class)
+          .<HorseListDto>readValues(response.getContentAsByteArray()).readAll();
+      assertThat(page).hasSizeLessThanOrEqualTo(3);
+      all.addAll(page);
+      cursor = response.getHeader("X-Next-Cursor");
+      pages++;
+    } while (cursor != null);
+
+    List<HorseListDto> unpaged = objectMapper.readerFor(HorseListDto.class).<HorseListDto>readValues(mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses").accept(MediaType.APPLICATION_JSON))
+        .andReturn().getResponse().getContentAsByteArray()).readAll();
+    assertThat(pages).isGreaterThan(1);
+    assertThat(all)
+        .extracting(HorseListDto::id)
+        .containsExactlyInAnyOrderElementsOf(unpaged.stream().map(HorseListDto::id).toList());
+    assertThat(all)
+        .extracting(horse -> horse.name().toLowerCase())
+        .isSorted();
+  }
+
+  /**
+   * Tests that a cursor issued for one order is rejected for another.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void searchingWithCursorOfOtherOrderReturns422() throws Exception {
+    String cursor = mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses")
+            .param("sort", "NAME")
+            .param("limit", "1")
+        ).andExpect(status().isOk())
+        .andReturn().getResponse().getHeader("X-Next-Cursor");
+    assertThat(cursor).isNotNull();
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses")
+            .param("sort", "DATE_OF_BIRTH")
+            .param("limit", "1")
+            .param("cursor", cursor)
+        ).andExpect(status().isUnprocessableEntity());
+  }
+
+  /**
+   * Tests that horses requested as newline-delimited JSON are streamed one per line, in the requested order.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void gettingHorsesAsNdjsonStreamsThem() throws Exception {
+    String body = mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses")
+            .param("sex", "MALE")
+            .param("sort", "DATE_OF_BIRTH")
+            .accept(MediaType.APPLICATION_NDJSON)
+        ).andExpect(request().asyncNotStarted())
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+        .andReturn().getResponse().getContentAsString();
+
+    List<HorseListDto> horses = body.lines()
+        .map(line -> {
+          try {
+            return objectMapper.readValue(line, HorseListDto.class);
+          } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+          }
+        })
+        .toList();
+    assertThat(horses)
+        .isNotEmpty()
+        .allMatch(horse -> horse.sex() == Sex.MALE)
+        .extracting(HorseListDto::id)
+        .contains(-3L, -5L);
+    assertThat(horses)
+        .extracting(HorseListDto::dateOfBirth)
+        .isSorted();
+  }
+
+  /**
+   * Tests that horse names are suggested by prefix.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void suggestingHorsesMatchesNamePrefix() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses/suggest")
+            .param("q", "st")
+            .accept(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(1))
+        .andExpect(jsonPath("$[0].id").value(-5))
+        .andExpect(jsonPath("$[0].name").value("Storm"));
+  }
+
+  /**
+   * Tests that a batch of horses is created with generated IDs, with a parent referred to by its temporary ID.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void postingBatchCreatesHorsesWithParentsFromTheBatch() throws Exception {
+    List<HorseBatchItemDto> batch = List.of(
+        new HorseBatchItemDto("mare", new HorseCreateDto("Batch Mare", null, LocalDate.of(2015, 3, 1), Sex.FEMALE,
+            null, -1L, null, null), null, null),
+        new HorseBatchItemDto(null, new HorseCreateDto("Batch Foal", null, LocalDate.of(2021, 6, 1), Sex.MALE,
+            null, null, null, -5L), "mare", null));
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders
+            .post("/horses/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsBytes(batch))
+        ).andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+    List<HorseBatchCreatedDto> created = List.of(objectMapper.readValue(body, HorseBatchCreatedDto[].class));
+    try {
+      assertThat(created).extracting(HorseBatchCreatedDto::tempId).containsExactly("mare", null);
+      assertThat(created).extracting(HorseBatchCreatedDto::id).allMatch(id -> id > 0);
+      mockMvc
+          .perform(MockMvcRequestBuilders.get("/horses/{id}", created.get(1).id()))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.name").value("Batch Foal"))
+          .andExpect(jsonPath("$.parentFemaleId").value(created.get(0).id()))
+          .andExpect(jsonPath("$.parentMaleId").value(-5));
+    } finally {
+      for (HorseBatchCreatedDto horse : created.reversed()) {
+        mockMvc.perform(MockMvcRequestBuilders.delete("/horses/{id}", horse.id()));
+      }
+    }
+  }
+
+  /**
+   * Tests that a batch with a parent that is not defined earlier in it is rejected as a whole.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void postingBatchWithUndefinedParentReturns422() throws Exception {
+    List<HorseBatchItemDto> batch = List.of(
+        new HorseBatchItemDto(null, new HorseCreateDto("Batch Foal", null, LocalDate.of(2021, 6, 1), Sex.MALE,
+            null, null, null, null), "mare", null),
+        new HorseBatchItemDto("mare", new HorseCreateDto("Batch Mare", null, LocalDate.of(2015, 3, 1), Sex.FEMALE,
+            null, -1L, null, null), null, null));
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .post("/horses/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsBytes(batch))
+        ).andExpect(status().isUnprocessableEntity());
+    mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses").param("name", "Batch"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$").isEmpty());
+  }
+
+  /**
+   * Tests that a CSV import creates the valid horses, with parents from earlier lines,
+   * and reports the invalid ones and their children with their lines.
+   *
+   * @throws Exception if a request fails
+   */
+  @Test
+  public void importingCsvCreatesValidHorsesAndReportsInvalidLines() throws Exception {
+    String csv = """
+        tempId,name,dateOfBirth,sex,ownerId,parentMaleId,parentFemaleTempId
+        mare,Import Mare,2015-03-01,female,-1,,
+        ,Import Foal,2021-06-01,MALE,,-5,mare
+        bad,Import Broken,2016-01-01,unicorn,,,
+        ,Import Orphan,2022-01-01,FEMALE,,,bad
+        """;
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders
+            .post("/horses/import")
+            .contentType("text/csv")
+            .content(csv)
+        ).andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+    try {
+      HorseImportDto result = objectMapper.readValue(body, HorseImportDto.class);
+      assertThat(result.completed()).isTrue();
+      assertThat(result.rows()).isEqualTo(4);
+      assertThat(result.imported()).isEqualTo(2);
+      assertThat(result.failed()).isEqualTo(2);
+      assertThat(result.errors()).hasSize(2);
+      assertThat(result.errors().get(0)).startsWith("Line 4:").contains("unicorn");
+      assertThat(result.errors().get(1)).startsWith("Line 5:").contains("'bad'");
+      mockMvc
+          .perform(MockMvcRequestBuilders.get("/horses").param("name", "Import Foal"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$[0].sex").value("MALE"));
+    } finally {
+      for (String name : List.of("Import Foal", "Import Mare")) {
+        String found = mockMvc.perform(MockMvcRequestBuilders.get("/horses").param("name", name))
+            .andReturn().getResponse().getContentAsString();
+        for (HorseListDto horse : objectMapper.readValue(found, HorseListDto[].class)) {
+          mockMvc.perform(MockMvcRequestBuilders.delete("/horses/{id}", horse.id()));
+        }
+      }
+    }
+  }
 }
@@ -1,10 +1,27 @@
 package at.ac.tuwien.sepr.assignment.individual.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.BirthYearCountDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFacetsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseFamilyTreeDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCountDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.PageDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.SexCountDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepr.assignment.individual.type.HorseSort;
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import java.time.LocalDate;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +38,9 @@ public class HorseServiceTest {
   @Autowired
   HorseService horseService;
 
+  @Autowired
+  OwnerService ownerService;
+
   /**
    * Tests whether retrieving all stored horses returns the expected number and specific entries.
    */
@@ -35,4 +55,147 @@ public class HorseServiceTest {
         .map(HorseListDto::id, HorseListDto::sex)
         .contains(tuple(-1L, Sex.FEMALE));
   }
+
+  /**
+   * Tests that the family tree contains the requested generations of ancestors and no more.
+   */
+  @Test
+  public void getFamilyTreeContainsRequestedGenerations() throws Exception {
+    HorseFamilyTreeDto tree = horseService.getFamilyTree(-1, 1);
+
+    assertThat(tree.name()).isEqualTo("Wendy");
+    assertThat(tree.parentFemale().name()).isEqualTo("Bella");
+    assertThat(tree.parentMale().name()).isEqualTo("Thunder");
+    assertThat(tree.parentMale().owner().lastName()).isEqualTo("Gruber");
+    assertThat(tree.parentFemale().parentFemale()).isNull();
+    assertThat(tree.parentFemale().parentMale()).isNull();
+
+    HorseFamilyTreeDto deeperTree = horseService.getFamilyTree(-1, 2);
+    assertThat(deeperTree.parentFemale().parentMale().name()).isEqualTo("Storm");
+    assertThat(deeperTree.parentMale().parentMale().name()).isEqualTo("Storm");
+  }
+
+  /**
+   * Tests that a descendant of a horse can not become its parent.
+   */
+  @Test
+  public void updateRejectsDescendantAsParent() throws Exception {
+    HorseUpdateDto bella = new HorseUpdateDto(-2L, "Bella", "Wendy's mother", LocalDate.of(2005, 5, 5), Sex.FEMALE,
+        null, -1L, -1L, -5L);
+
+    assertThatThrownBy(() -> horseService.update(bella))
+        .isInstanceOf(ConflictException.class)
+        .extracting(e -> ((ConflictException) e).errors())
+        .asList()
+        .contains("Parent -1 is a descendant of the horse", "Parent -1 is not born before the horse");
+    assertThat(horseService.getById(-2).parentFemaleId()).isEqualTo(-4L);
+  }
+
+  /**
+   * Tests that a missing owner is reported as a conflict before the horse is written.
+   */
+  @Test
+  public void updateRejectsMissingOwnerWithoutWriting() throws Exception {
+    HorseUpdateDto bella = new HorseUpdateDto(-2L, "Bella", null, LocalDate.of(2005, 5, 5), Sex.FEMALE,
+        null, 999_999L, -4L, -5L);
+
+    assertThatThrownBy(() -> horseService.update(bella))
+        .isInstanceOf(ConflictException.class)
+        .extracting(e -> ((ConflictException) e).errors())
+        .asList()
+        .containsExactly("Owner 999999 does not exist");
+    assertThat(horseService.getById(-2).owner().id()).isEqualTo(-1L);
+  }
+
+  /**
+   * Tests that cached family trees are reused, and dropped once a horse contained in them changes.
+   */
+  @Test
+  public void getFamilyTreeIsCachedUntilContainedHorseChanges() throws Exception {
+    HorseFamilyTreeDto tree = horseService.getFamilyTree(-1, 2);
+    assertThat(horseService.getFamilyTree(-1, 2)).isSameAs(tree);
+
+    HorseUpdateDto storm = new HorseUpdateDto(-5L, "Storm", "Sire of both of Wendy's parents", LocalDate.of(1997, 6, 21),
+        Sex.MALE, null, -1L, null, null);
+    horseService.update(new HorseUpdateDto(-5L, "Stormy", storm.description(), storm.dateOfBirth(), storm.sex(),
+        null, storm.ownerId(), null, null));
+    try {
+      HorseFamilyTreeDto updatedTree = horseService.getFamilyTree(-1, 2);
+      assertThat(updatedTree).isNotSameAs(tree);
+      assertThat(updatedTree.parentFemale().parentMale().name()).isEqualTo("Stormy");
+    } finally {
+      horseService.update(storm);
+    }
+  }
+
+  /**
+   * Tests that a cached family tree is dropped once the owner of a horse contained in it is deleted,
+   * so that it is computed again and the dangling owner reference is noticed, instead of serving the deleted owner.
+   */
+  @Test
+  public void getFamilyTreeIsCachedUntilContainedOwnerIsDeleted() throws Exception {
+    OwnerDto owner = ownerService.create(new OwnerCreateDto("Tree", "Owner", null, null));
+    HorseDetailDto foal = horseService.create(new HorseCreateDto("Acorn", null, LocalDate.of(2022, 4, 4), Sex.MALE,
+        null, owner.id(), null, -8L));
+    try {
+      HorseFamilyTreeDto tree = horseService.getFamilyTree(foal.id(), 1);
+      assertThat(tree.owner().id()).isEqualTo(owner.id());
+      assertThat(horseService.getFamilyTree(foal.id(), 1)).isSameAs(tree);
+
+      ownerService.delete(owner.id());
+      assertThatThrownBy(() -> horseService.getFamilyTree(foal.id(), 1))
+          .isInstanceOf(FatalException.class);
+    } finally {
+      horseService.delete(foal.id());
+    }
+  }
+
+  /**
+   * Tests that equivalent searches share their cached result, which is dropped once any horse changes.
+   */
+  @Test
+  public void searchIsCachedUntilAnyHorseChanges() throws Exception {
+    PageDto<HorseListDto> page = horseService.search(
+        new HorseSearchDto("Sto", null, null, null, null, null, null, null, null, null, null, null));
+    assertThat(page.items()).extracting(HorseListDto::name).containsExactly("Storm");
+    assertThat(horseService.search(
+        new HorseSearchDto(" sTO ", null, null, null, null, null, null, null, false, null, HorseSort.ID, null)))
+        .isSameAs(page);
+    assertThat(horseService.search(
+        new HorseSearchDto("sto", null, null, null, null, null, null, null, null, null, null, null), true))
+        .isNotSameAs(page);
+
+    HorseUpdateDto storm = new HorseUpdateDto(-5L, "Storm", "Sire of both of Wendy's parents", LocalDate.of(1997, 6, 21),
+        Sex.MALE, null, -1L, null, null);
+    horseService.update(new HorseUpdateDto(-5L, "Stormy", storm.description(), storm.dateOfBirth(), storm.sex(),
+        null, storm.ownerId(), null, null));
+    try {
+      assertThat(horseService.search(
+          new HorseSearchDto("sto", null, null, null, null, null, null, null, null, null, null, null)).items())
+          .extracting(HorseListDto::name)
+          .containsExactly("Stormy");
+    } finally {
+      horseService.update(storm);
+    }
+  }
+
+  /**
+   * Tests that the facets count the matches per sex, per range of birth years and per owner,
+   * with only the owners with the most horses, and the horses without owner as an owner of their own.
+   */
+  @Test
+  public void facetsCountMatchesPerSexBirthYearsAndOwner() throws Exception {
+    HorseFacetsDto facets = horseService.facets(
+        new HorseSearchDto(null, null, LocalDate.of(2006, 1, 1), null, null, 1, null, null, null, null, null, null), 5, 2);
+    assertThat(facets.total()).isEqualTo(5);
+    assertThat(facets.sexes())
+        .extracting(SexCountDto::sex, SexCountDto::count)
+        .containsExactly(tuple(Sex.MALE, 2L), tuple(Sex.FEMALE, 3L));
+    assertThat(facets.birthYears())
+        .extracting(BirthYearCountDto::fromYear, BirthYearCountDto::toYear, BirthYearCountDto::count)
+        .containsExactly(tuple(1995, 1999, 3L), tuple(2000, 2004, 1L), tuple(2005, 2009, 1L));
+    assertThat(facets.owners())
+        .extracting(ownerCount -> ownerCount.owner() == null ? null : ownerCount.owner().id(), OwnerCountDto::count)
+        .containsExactly(tuple(-1L, 2L), tuple(null, 2L));
+  }
 }
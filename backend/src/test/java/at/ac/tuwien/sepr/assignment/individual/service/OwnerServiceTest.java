@@ -0,0 +1,78 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.service.impl.OwnerCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test for {@link OwnerService}, and the {@link OwnerCache} it reads through.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest
+public class OwnerServiceTest {
+
+  @Autowired
+  OwnerService ownerService;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  /**
+   * Tests that owners are served from the cache once they have been read, until they are deleted.
+   */
+  @Test
+  public void ownersAreCachedUntilDeleted() throws Exception {
+    OwnerDto created = ownerService.create(new OwnerCreateDto("Cached", "Owner", null, null));
+    try {
+      ownerService.findAllById(List.of(-1L, created.id()));
+      double hits = hits();
+
+      Map<Long, OwnerDto> owners = ownerService.findAllById(List.of(-1L, -2L, created.id()));
+      assertThat(owners).containsOnlyKeys(-1L, -2L, created.id());
+      assertThat(hits()).isGreaterThanOrEqualTo(hits + 2);
+      assertThat(ownerService.getById(created.id()).lastName()).isEqualTo("Owner");
+    } finally {
+      ownerService.delete(created.id());
+    }
+    assertThatThrownBy(() -> ownerService.getById(created.id()))
+        .isInstanceOf(NotFoundException.class);
+    assertThat(ownerService.findAllById(List.of(created.id()))).isEmpty();
+  }
+
+  /**
+   * Tests that a full cache evicts owners that were not read recently, and keeps those that were.
+   */
+  @Test
+  public void fullCacheEvictsOwnersNotReadRecently() {
+    OwnerCache cache = new OwnerCache(2, new SimpleMeterRegistry());
+    cache.putAll(List.of(owner(1), owner(2)), cache.generation());
+    assertThat(cache.get(1)).isNotNull();
+    cache.putAll(List.of(owner(3)), cache.generation());
+
+    Map<Long, OwnerDto> found = new HashMap<>();
+    assertThat(cache.getAll(List.of(1L, 2L, 3L), found)).containsExactly(2L);
+    assertThat(found).containsOnlyKeys(1L, 3L);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  private double hits() {
+    return meterRegistry.get("cache.gets").tag("cache", "owner").tag("result", "hit").counter().count();
+  }
+
+  private static OwnerDto owner(long id) {
+    return new OwnerDto(id, "First" + id, "Last" + id, null, null);
+  }
+}
@@ -0,0 +1,110 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.CommonAncestorDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.MateSuggestionDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.RelationshipDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test for {@link PedigreeService}.
+ */
+@ActiveProfiles({"test", "datagen"}) // Enables "test" Spring profile during test execution
+@SpringBootTest
+public class PedigreeServiceTest {
+
+  @Autowired
+  PedigreeService pedigreeService;
+
+  /**
+   * Wendy's parents are half-siblings via Storm, which makes her inbred by 1/8.
+   */
+  @Test
+  public void inbreedingOfOffspringOfHalfSiblings() throws Exception {
+    assertThat(pedigreeService.inbreeding(-1, 10).coefficient()).isCloseTo(0.125, within(1e-12));
+    assertThat(pedigreeService.inbreeding(-1, 1).coefficient()).isZero();
+    assertThat(pedigreeService.inbreeding(-7, 10).coefficient()).isZero();
+  }
+
+  /**
+   * Tests kinship of full siblings with an inbred mother, and of a horse with itself.
+   */
+  @Test
+  public void kinshipOfSiblingsAndSelf() throws Exception {
+    // 1/4 * (kinship of Wendy with herself + kinship of Blaze with himself) = 1/4 * (9/16 + 1/2)
+    assertThat(pedigreeService.kinship(-7, -9, 10).coefficient()).isCloseTo(0.265625, within(1e-12));
+    assertThat(pedigreeService.kinship(-1, -1, 10).coefficient()).isCloseTo(0.5625, within(1e-12));
+    assertThat(pedigreeService.kinship(-1, -10, 10).coefficient()).isZero();
+  }
+
+  /**
+   * Tests that unknown horses are reported as not found.
+   */
+  @Test
+  public void kinshipWithUnknownHorseThrowsNotFound() {
+    assertThatThrownBy(() -> pedigreeService.kinship(-1, -999, 10))
+        .isInstanceOf(NotFoundException.class);
+  }
+
+  /**
+   * Tests that relationships are described by the nearest common ancestors, with the connecting paths.
+   */
+  @Test
+  public void relationshipFindsNearestCommonAncestors() throws Exception {
+    RelationshipDto parents = pedigreeService.relationship(-2, -3, 10);
+    assertThat(parents.description()).isEqualTo("Bella and Thunder are half-siblings via stallion Storm");
+    assertThat(parents.commonAncestors())
+        .extracting(ancestor -> ancestor.ancestor().id(), CommonAncestorDto::pathFromHorse, CommonAncestorDto::pathFromOtherHorse)
+        .containsExactly(tuple(-5L, List.of(-2L, -5L), List.of(-3L, -5L)));
+
+    assertThat(pedigreeService.relationship(-7, -9, 10).description())
+        .isEqualTo("Spirit and Rosie are full siblings via Wendy and Blaze");
+    assertThat(pedigreeService.relationship(-1, -7, 10).description()).isEqualTo("Wendy is the dam of Spirit");
+    assertThat(pedigreeService.relationship(-7, -5, 10).description()).isEqualTo("Storm is the great-grandsire of Spirit");
+    assertThat(pedigreeService.relationship(-7, -5, 2).commonAncestors()).isEmpty();
+    assertThat(pedigreeService.relationship(-1, -10, 10).description())
+        .isEqualTo("Wendy and Comet are not related within 10 generations");
+  }
+
+  /**
+   * Tests that unrelated stallions are ranked first, and that the filter is applied.
+   */
+  @Test
+  public void suggestMatesRanksUnrelatedStallionsFirst() throws Exception {
+    HorseSearchDto noFilter = new HorseSearchDto(null, null, null, null, null, null, null, null, null, null, null, null);
+    List<MateSuggestionDto> suggestions = pedigreeService.suggestMates(-1, noFilter, 3, 10, null);
+
+    assertThat(suggestions)
+        .extracting(suggestion -> suggestion.stallion().id())
+        .containsExactly(-10L, -8L, -5L);
+    assertThat(suggestions.get(0).expectedInbreeding()).isZero();
+    // Storm is the sire of both of Wendy's parents
+    assertThat(suggestions.get(2).expectedInbreeding()).isCloseTo(0.25, within(1e-12));
+
+    HorseSearchDto byOwner = new HorseSearchDto(null, null, null, null, "huber", null, null, null, null, null, null, null);
+    assertThat(pedigreeService.suggestMates(-1, byOwner, 10, 10, null))
+        .extracting(suggestion -> suggestion.stallion().name())
+        .containsExactly("Blaze", "Storm");
+  }
+
+  /**
+   * Tests that mates can only be suggested for mares.
+   */
+  @Test
+  public void suggestMatesForStallionThrowsValidationException() {
+    HorseSearchDto noFilter = new HorseSearchDto(null, null, null, null, null, null, null, null, null, null, null, null);
+    assertThatThrownBy(() -> pedigreeService.suggestMates(-5, noFilter, 3, 10, null))
+        .isInstanceOf(ValidationException.class);
+  }
+}
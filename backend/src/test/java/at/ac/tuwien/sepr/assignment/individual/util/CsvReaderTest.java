@@ -0,0 +1,41 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link CsvReader}.
+ */
+public class CsvReaderTest {
+
+  /**
+   * Tests reading quoted fields with commas, escaped quotes and line breaks, and the lines records start on.
+   */
+  @Test
+  public void readQuotedFieldsAndTrackLines() throws Exception {
+    CsvReader csv = new CsvReader(new StringReader("a,b\r\n\"x, y\",\"say \"\"hi\"\"\"\n\"two\nlines\",\nlast,"), 100);
+
+    assertThat(csv.next()).containsExactly("a", "b");
+    assertThat(csv.recordLine()).isEqualTo(1);
+    assertThat(csv.next()).containsExactly("x, y", "say \"hi\"");
+    assertThat(csv.recordLine()).isEqualTo(2);
+    assertThat(csv.next()).containsExactly("two\nlines", "");
+    assertThat(csv.next()).containsExactly("last", "");
+    assertThat(csv.recordLine()).isEqualTo(5);
+    assertThat(csv.next()).isNull();
+  }
+
+  /**
+   * Tests that an unterminated quote and a record over the maximum length are rejected.
+   */
+  @Test
+  public void rejectUnterminatedQuoteAndTooLongRecord() {
+    assertThatThrownBy(() -> new CsvReader(new StringReader("a,\"b\nc"), 100).next())
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new CsvReader(new StringReader("abcdefghijk\n"), 10).next())
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,27 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link CsvWriter}.
+ */
+public class CsvWriterTest {
+
+  /**
+   * Tests that only fields that need it are quoted, and that {@link CsvReader} reads the fields back.
+   */
+  @Test
+  public void quoteOnlyWhereNeededAndReadBack() throws Exception {
+    StringWriter out = new StringWriter();
+    CsvWriter csv = new CsvWriter(out);
+    csv.writeRecord(1, "plain", null, "a, b", "say \"hi\"", "two\nlines");
+
+    assertThat(out.toString()).isEqualTo("1,plain,,\"a, b\",\"say \"\"hi\"\"\",\"two\nlines\"\r\n");
+    assertThat(new CsvReader(new StringReader(out.toString()), 100).next())
+        .containsExactly("1", "plain", "", "a, b", "say \"hi\"", "two\nlines");
+  }
+}
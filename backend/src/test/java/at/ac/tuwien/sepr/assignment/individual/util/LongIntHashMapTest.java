@@ -0,0 +1,31 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link LongIntHashMap}.
+ */
+public class LongIntHashMapTest {
+
+  /**
+   * Tests that entries survive resizing and removal of colliding entries.
+   */
+  @Test
+  public void putGetAndRemoveManyKeys() {
+    LongIntHashMap map = new LongIntHashMap(4, -1);
+    for (int i = -5000; i < 5000; i++) {
+      map.put(i * 1024L, i);
+    }
+    assertThat(map.size()).isEqualTo(10000);
+    for (int i = -5000; i < 5000; i += 2) {
+      assertThat(map.remove(i * 1024L)).isEqualTo(i);
+    }
+    assertThat(map.size()).isEqualTo(5000);
+    for (int i = -5000; i < 5000; i++) {
+      assertThat(map.get(i * 1024L)).isEqualTo(i % 2 == 0 ? -1 : i);
+    }
+    assertThat(map.containsKey(1L)).isFalse();
+  }
+}
@@ -0,0 +1,65 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link PostingList}.
+ */
+public class PostingListTest {
+
+  /**
+   * Tests that IDs added in and out of order, including negative and duplicate ones, come back sorted and distinct.
+   */
+  @Test
+  public void addInAndOutOfOrderAndCompact() {
+    PostingList list = new PostingList();
+    for (long id : new long[] {-10, -3, 1, 200, 100_000, 5, -3, 200, Long.MAX_VALUE / 2}) {
+      list.add(id);
+    }
+    long[] expected = {-10, -3, 1, 5, 200, 100_000, Long.MAX_VALUE / 2};
+    assertThat(list.toArray()).containsExactly(expected);
+
+    list.compact();
+    assertThat(list.toArray()).containsExactly(expected);
+    assertThat(list.size()).isEqualTo(expected.length);
+  }
+
+  /**
+   * Tests intersecting sorted ID arrays.
+   */
+  @Test
+  public void intersectSortedArrays() {
+    assertThat(PostingList.intersect(new long[] {-4, 1, 3, 7, 9}, new long[] {-4, 2, 3, 9, 12}))
+        .containsExactly(-4, 3, 9);
+    assertThat(PostingList.intersect(new long[] {1, 2}, new long[0])).isEmpty();
+  }
+
+  /**
+   * Tests removing IDs, adding removed IDs again, and that many IDs added out of order or removed
+   * are compacted without losing any.
+   */
+  @Test
+  public void removeAndCompactOutOfOrderAdditions() {
+    PostingList list = new PostingList();
+    for (long id = 100; id > 0; id--) {
+      list.add(id);
+    }
+    assertThat(list.toArray()).hasSize(100).startsWith(1, 2, 3).endsWith(99, 100);
+
+    list.remove(50);
+    list.remove(50);
+    list.remove(1000);
+    assertThat(list.toArray()).hasSize(99).doesNotContain(50L);
+
+    list.add(50);
+    assertThat(list.toArray()).hasSize(100).contains(50L);
+
+    for (long id = 1; id <= 40; id++) {
+      list.remove(id);
+    }
+    assertThat(list.size()).isLessThan(100);
+    assertThat(list.toArray()).hasSize(60).startsWith(41, 42).endsWith(100);
+  }
+}
@@ -0,0 +1,62 @@
+package at.ac.tuwien.sepr.assignment.individual.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link PrefixIndex}.
+ */
+public class PrefixIndexTest {
+
+  /**
+   * Tests that loaded and later added entries are found case-insensitively by prefix, in key order,
+   * with every ID at most once, and that replaced and removed entries are not found anymore.
+   */
+  @Test
+  public void findLoadedAndChangedEntriesByPrefix() {
+    PrefixIndex index = new PrefixIndex();
+    index.load(List.of(
+        PrefixIndex.entry("Storm", 1, "Storm"),
+        PrefixIndex.entry("Stormy", 2, "Stormy"),
+        PrefixIndex.entry("Hans Huber", 3, "Hans Huber"),
+        PrefixIndex.entry("Huber", 3, "Hans Huber"),
+        PrefixIndex.entry("Star", 4, "Star")));
+
+    assertThat(index.find("STOR", 10)).extracting(PrefixIndex.Entry::id).containsExactly(1L, 2L);
+    assertThat(index.find("h", 10)).extracting(PrefixIndex.Entry::label).containsExactly("Hans Huber");
+    assertThat(index.find("s", 2)).extracting(PrefixIndex.Entry::label).containsExactly("Star", "Storm");
+
+    index.put(5, List.of(PrefixIndex.entry("Stone", 5, "Stone")));
+    index.put(1, List.of(PrefixIndex.entry("Sturm", 1, "Sturm")));
+    index.remove(4);
+    assertThat(index.find("st", 10)).extracting(PrefixIndex.Entry::label)
+        .containsExactly("Stone", "Stormy", "Sturm");
+  }
+
+  /**
+   * Tests that many changes are merged into the sorted arrays without losing or reviving entries.
+   */
+  @Test
+  public void manyChangesAreMerged() {
+    PrefixIndex index = new PrefixIndex();
+    index.load(List.of());
+    for (int i = 0; i < 3000; i++) {
+      index.put(i, List.of(PrefixIndex.entry("horse " + i, i, "Horse " + i)));
+    }
+    for (int i = 0; i < 3000; i += 2) {
+      index.remove(i);
+    }
+    assertThat(index.size()).isLessThan(3000);
+
+    List<Long> expected = LongStream.range(0, 3000)
+        .filter(id -> id % 2 == 1 && ("horse " + id).startsWith("horse 12"))
+        .boxed()
+        .sorted(Comparator.comparing(id -> "horse " + id))
+        .toList();
+    assertThat(index.find("horse 12", 100)).extracting(PrefixIndex.Entry::id).containsExactlyElementsOf(expected);
+  }
+}